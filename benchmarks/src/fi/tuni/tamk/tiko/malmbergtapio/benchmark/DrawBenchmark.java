@@ -0,0 +1,68 @@
+package fi.tuni.tamk.tiko.malmbergtapio.benchmark;
+
+import fi.tuni.tamk.tiko.malmbergtapio.LottoMachine;
+import fi.tuni.tamk.tiko.malmbergtapio.MultiPoolMachine;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many draws per second the lottery machine makes
+ * with each random number generator.
+ *
+ * @author Tapio Malmberg
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark extends GameState {
+    @Param({ "SplittableRandom", "L64X128MixRandom", "Xoshiro256PlusPlus", "ThreadLocalRandom" })
+    public String random;
+
+    private LottoMachine lottoMachine;
+    private MultiPoolMachine multiPoolMachine;
+
+    @Setup
+    public void setup() {
+        setupGame();
+        lottoMachine = new LottoMachine(settings, RandomSource.create(random, 42));
+        multiPoolMachine = new MultiPoolMachine(settings, RandomSource.create(random, 42));
+    }
+
+    /**
+     * Draws a week into the reused bitmask.
+     */
+    @Benchmark
+    public long drawMask() {
+        lottoMachine.draw();
+        return lottoMachine.getDrawMasks()[0];
+    }
+
+    /**
+     * Draws a week into a new array of numbers.
+     */
+    @Benchmark
+    public int[] drawNumbers() {
+        return lottoMachine.drawNumbers();
+    }
+
+    /**
+     * Draws a week with the bonus numbers packed into one long.
+     */
+    @Benchmark
+    public long drawPacked() {
+        return multiPoolMachine.draw();
+    }
+}
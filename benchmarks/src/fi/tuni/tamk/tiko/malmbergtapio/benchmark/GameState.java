@@ -0,0 +1,69 @@
+package fi.tuni.tamk.tiko.malmbergtapio.benchmark;
+
+import fi.tuni.tamk.tiko.malmbergtapio.LottoSettings;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state that selects one of the games in LottoSettings.txt.
+ *
+ * @author Tapio Malmberg
+ */
+@State(Scope.Thread)
+public class GameState {
+    /**
+     * The name of the game.
+     */
+    @Param({ "Finnish Lotto", "Vikinglotto", "Eurojackpot" })
+    public String game;
+
+    /**
+     * The settings of the selected game.
+     */
+    public LottoSettings settings;
+
+    /**
+     * Selects the settings for the game.
+     *
+     * JMH does not guarantee the order of inherited setup methods,
+     * so the benchmarks call this first in their own setup.
+     */
+    protected void setupGame() {
+        settings = getSettings(game);
+    }
+
+    /**
+     * Returns the settings for a game by name.
+     *
+     * The built-in settings are used so that the results do not depend on
+     * the directory the benchmarks are run from.
+     *
+     * @param name the name of the game.
+     * @return the settings for the game.
+     */
+    public static LottoSettings getSettings(String name) {
+        switch (name) {
+            case "Finnish Lotto": return LottoSettings.FinnishLotto;
+            case "Vikinglotto": return LottoSettings.Vikinglotto;
+            case "Eurojackpot": return LottoSettings.Eurojackpot;
+            default: throw new IllegalArgumentException("Unknown game: " + name);
+        }
+    }
+
+    /**
+     * Returns the numbers 1, 2, ..., numberCount as the player's numbers.
+     *
+     * @param settings the settings used for the lottery.
+     * @return the numbers chosen by the player.
+     */
+    public static int[] getUserNumbers(LottoSettings settings) {
+        int[] userNumbers = new int[settings.numberCount];
+        for (int i = 0; i < userNumbers.length; i++) {
+            userNumbers[i] = i + 1;
+        }
+
+        return userNumbers;
+    }
+}
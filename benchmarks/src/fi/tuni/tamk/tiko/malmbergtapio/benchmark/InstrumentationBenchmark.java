@@ -0,0 +1,103 @@
+package fi.tuni.tamk.tiko.malmbergtapio.benchmark;
+
+import fi.tuni.tamk.tiko.malmbergtapio.JackpotResult;
+import fi.tuni.tamk.tiko.malmbergtapio.ParallelSimulator;
+import fi.tuni.tamk.tiko.malmbergtapio.SimulationMetrics;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Recording;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of the simulation metrics by playing until the jackpot on
+ * a single thread with the metrics off, with the JMX counters on and with the
+ * counters on while the JFR events of the simulator are being recorded.
+ *
+ * The score is jackpots per second, and the weeks counter gives the weeks per second.
+ *
+ * @author Tapio Malmberg
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class InstrumentationBenchmark extends GameState {
+    /**
+     * What is collected while playing.
+     */
+    @Param({ "off", "counters", "recording" })
+    public String metrics;
+
+    private ParallelSimulator simulator;
+    private RandomSource random;
+    private Recording recording;
+    private long lifetimes;
+
+    /**
+     * Counts the weeks played so that JMH reports them per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Weeks {
+        public long weeks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            weeks = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        setupGame();
+        simulator = new ParallelSimulator(settings, getUserNumbers(settings), 1);
+        random = RandomSource.create(RandomSource.DEFAULT_ALGORITHM, 42);
+
+        SimulationMetrics.getDefault().setEnabled(!metrics.equals("off"));
+
+        if(metrics.equals("recording")) {
+            recording = new Recording();
+            recording.enable("fi.tuni.tamk.tiko.malmbergtapio.Milestone");
+            recording.enable("fi.tuni.tamk.tiko.malmbergtapio.Batch");
+            recording.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulator.shutdown();
+
+        if(recording != null) {
+            recording.close();
+        }
+    }
+
+    /**
+     * Plays one lifetime until the jackpot.
+     */
+    @Benchmark
+    public JackpotResult playUntilJackpot(Weeks counter) {
+        JackpotResult result = simulator.playUntilJackpot(random.forStream(lifetimes));
+        lifetimes++;
+
+        counter.weeks += result.getJackpotWeeks();
+        return result;
+    }
+}
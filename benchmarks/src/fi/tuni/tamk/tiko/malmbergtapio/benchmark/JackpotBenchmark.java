@@ -0,0 +1,93 @@
+package fi.tuni.tamk.tiko.malmbergtapio.benchmark;
+
+import fi.tuni.tamk.tiko.malmbergtapio.FastForward;
+import fi.tuni.tamk.tiko.malmbergtapio.JackpotResult;
+import fi.tuni.tamk.tiko.malmbergtapio.ParallelSimulator;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many weeks per second are played when playing until the jackpot
+ * on a single thread.
+ *
+ * The score is jackpots per second, and the weeks counter gives the weeks per second.
+ *
+ * @author Tapio Malmberg
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class JackpotBenchmark extends GameState {
+    private ParallelSimulator simulator;
+    private FastForward fastForward;
+    private RandomSource random;
+    private long lifetimes;
+
+    /**
+     * Counts the weeks played so that JMH reports them per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Weeks {
+        public long weeks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            weeks = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        setupGame();
+        simulator = new ParallelSimulator(settings, getUserNumbers(settings), 1);
+        fastForward = new FastForward(settings);
+        random = RandomSource.create(RandomSource.DEFAULT_ALGORITHM, 42);
+    }
+
+    @TearDown
+    public void tearDown() {
+        simulator.shutdown();
+    }
+
+    /**
+     * Plays one lifetime until the jackpot.
+     */
+    @Benchmark
+    public JackpotResult playUntilJackpot(Weeks counter) {
+        JackpotResult result = simulator.playUntilJackpot(random.forStream(lifetimes));
+        lifetimes++;
+
+        counter.weeks += result.getJackpotWeeks();
+        return result;
+    }
+
+    /**
+     * Plays one lifetime until the jackpot by fast forwarding to the milestones.
+     */
+    @Benchmark
+    public JackpotResult fastForward(Weeks counter) {
+        JackpotResult result = fastForward.playUntilJackpot(random.forStream(lifetimes), null);
+        lifetimes++;
+
+        counter.weeks += result.getJackpotWeeks();
+        return result;
+    }
+}
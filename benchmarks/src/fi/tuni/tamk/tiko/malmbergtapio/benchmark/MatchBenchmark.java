@@ -0,0 +1,86 @@
+package fi.tuni.tamk.tiko.malmbergtapio.benchmark;
+
+import fi.tuni.tamk.tiko.malmbergtapio.LottoMachine;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many draws per second can be matched against the player's numbers.
+ *
+ * The draws are generated beforehand, so only the matching is measured.
+ *
+ * @author Tapio Malmberg
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark extends GameState {
+    private static final int DRAW_COUNT = 1024;
+
+    private int[] userNumbers;
+    private long[] ticket;
+    private int[][] draws;
+    private long[][] drawMasks;
+    private int index;
+
+    @Setup
+    public void setup() {
+        setupGame();
+        LottoMachine lottoMachine = new LottoMachine(settings, RandomSource.create(RandomSource.DEFAULT_ALGORITHM, 42));
+
+        userNumbers = getUserNumbers(settings);
+        ticket = Bitmask.toMasks(userNumbers, settings.maxNumber);
+        draws = new int[DRAW_COUNT][];
+        drawMasks = new long[DRAW_COUNT][];
+
+        for (int i = 0; i < DRAW_COUNT; i++) {
+            draws[i] = lottoMachine.drawNumbers();
+            drawMasks[i] = Bitmask.toMasks(draws[i], settings.maxNumber);
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & (DRAW_COUNT - 1);
+        return index;
+    }
+
+    /**
+     * Sorts both arrays and counts the same values, as the simulator did every week
+     * before the bitmasks.
+     */
+    @Benchmark
+    public int sortAndCountSameValues() {
+        int[] lottoNumbers = Arrays.sort(draws[nextIndex()]);
+        return Arrays.countSameValues(lottoNumbers, Arrays.sort(userNumbers));
+    }
+
+    /**
+     * Counts the same values without sorting.
+     */
+    @Benchmark
+    public int countSameValues() {
+        return Arrays.countSameValues(draws[nextIndex()], userNumbers);
+    }
+
+    /**
+     * Counts the same values from the bitmasks.
+     */
+    @Benchmark
+    public int countMatches() {
+        return Bitmask.countMatches(drawMasks[nextIndex()], ticket);
+    }
+}
@@ -0,0 +1,86 @@
+package fi.tuni.tamk.tiko.malmbergtapio.benchmark;
+
+import fi.tuni.tamk.tiko.malmbergtapio.LottoMachine;
+import fi.tuni.tamk.tiko.malmbergtapio.Syndicate;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many tickets per second a syndicate matcher can check,
+ * with and without the Vector API.
+ *
+ * The forked JVM is started with the jdk.incubator.vector module,
+ * so vectorize=false measures the scalar matcher in the same conditions.
+ *
+ * @author Tapio Malmberg
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class SyndicateMatchBenchmark extends GameState {
+    private static final int DRAW_COUNT = 1024;
+
+    /**
+     * The amount of tickets in the syndicate. Smaller syndicates are never vectorized.
+     */
+    @Param({ "128", "1024", "4096", "16384" })
+    public int tickets;
+
+    /**
+     * If the matcher may use the Vector API.
+     */
+    @Param({ "false", "true" })
+    public boolean vectorize;
+
+    private Syndicate.Matcher matcher;
+    private long[][] draws;
+    private int index;
+
+    @Setup
+    public void setup() {
+        setupGame();
+        RandomSource random = RandomSource.create(RandomSource.DEFAULT_ALGORITHM, 42);
+        LottoMachine lottoMachine = new LottoMachine(settings, random);
+
+        int[][] ticketNumbers = new int[tickets][];
+        for (int i = 0; i < tickets; i++) {
+            ticketNumbers[i] = lottoMachine.drawNumbers();
+        }
+
+        Syndicate syndicate = Syndicate.of(settings, ticketNumbers);
+        if(vectorize && !syndicate.isVectorized()) {
+            throw new IllegalStateException("The Vector API is not available");
+        }
+
+        matcher = syndicate.createMatcher(vectorize);
+        draws = new long[DRAW_COUNT][];
+
+        for (int i = 0; i < DRAW_COUNT; i++) {
+            draws[i] = Bitmask.toMasks(lottoMachine.drawNumbers(), settings.maxNumber);
+        }
+    }
+
+    /**
+     * Matches every ticket against one draw. Divide the score by the ticket count
+     * to compare different syndicate sizes.
+     */
+    @Benchmark
+    public int match() {
+        index = (index + 1) & (DRAW_COUNT - 1);
+        return matcher.match(draws[index]);
+    }
+}
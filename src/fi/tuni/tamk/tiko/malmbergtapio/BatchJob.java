@@ -0,0 +1,208 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Immutable description of a batch of runs that is played without prompts.
+ *
+ * A job is read from a properties file, for example:
+ *
+ * <pre>
+ * game=Finnish Lotto
+ * numbers=2 4 6 8 10 12 14
+ * runs=1000000
+ * engine=fast
+ * seed=42
+ * threads=8
+ * output=results.csv
+ * </pre>
+ *
+ * Instead of numbers, the tickets can be given as a file with tickets=FILE.
+ * The engine is either weekly (draws every week) or fast (see {@link FastForward}).
+ * The format of the output is csv or binary, by default csv. Without an output
+ * file only the statistics of the runs are printed.
+ *
+ * @author Tapio Malmberg
+ */
+public class BatchJob {
+    /**
+     * The engine that draws every week.
+     */
+    public static final String ENGINE_WEEKLY = "weekly";
+
+    /**
+     * The engine that fast forwards to the milestones.
+     */
+    public static final String ENGINE_FAST = "fast";
+
+    /**
+     * The output format with one line of text per run.
+     */
+    public static final String FORMAT_CSV = "csv";
+
+    /**
+     * The output format with one fixed size record per run.
+     */
+    public static final String FORMAT_BINARY = "binary";
+
+    public final LottoSettings settings;
+    public final Syndicate syndicate;
+    public final long runs;
+    public final RandomSource random;
+    public final int threads;
+    public final String engine;
+    public final Path output;
+    public final String format;
+
+    /**
+     * Creates a job.
+     *
+     * @param syndicate the tickets played every week.
+     * @param runs the amount of runs, each lasting until a jackpot within a lifetime.
+     * @param random the random source the streams of the runs are derived from.
+     * @param threads the amount of threads, 0 for one per processor core.
+     * @param engine {@link #ENGINE_WEEKLY} or {@link #ENGINE_FAST}.
+     * @param output the file the results are written to, or null.
+     * @param format {@link #FORMAT_CSV} or {@link #FORMAT_BINARY}.
+     * @throws IllegalArgumentException if a value is not valid.
+     */
+    public BatchJob(Syndicate syndicate, long runs, RandomSource random, int threads, String engine, Path output, String format) {
+        if(runs < 1) {
+            throw new IllegalArgumentException("runs must be positive: " + runs);
+        } else if(!engine.equals(ENGINE_WEEKLY) && !engine.equals(ENGINE_FAST)) {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        } else if(engine.equals(ENGINE_FAST) && syndicate.getTicketCount() > 1) {
+            throw new IllegalArgumentException("The fast engine only supports a single ticket");
+        } else if(!format.equals(FORMAT_CSV) && !format.equals(FORMAT_BINARY)) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+
+        this.settings = syndicate.getSettings();
+        this.syndicate = syndicate;
+        this.runs = runs;
+        this.random = random;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.engine = engine;
+        this.output = output;
+        this.format = format;
+    }
+
+    /**
+     * Reads a job from a properties file.
+     *
+     * Relative paths in the file are resolved against the directory of the file.
+     *
+     * @param file the file to be read.
+     * @return a new job.
+     * @throws IOException if reading the job or the tickets fails.
+     * @throws IllegalArgumentException if a value is missing or not valid.
+     */
+    public static BatchJob load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        String output = properties.getProperty("output");
+
+        String game = getRequired(properties, "game");
+        LottoSettings settings = LottoSettings.getByName(game);
+        if(settings == null) {
+            throw new IllegalArgumentException("Unknown game: " + game);
+        }
+
+        Syndicate syndicate;
+        if(properties.getProperty("tickets") != null) {
+            syndicate = Syndicate.load(directory.resolve(properties.getProperty("tickets")), settings);
+        } else {
+            String[] values = getRequired(properties, "numbers").trim().split("[\\s,;]+");
+            int[] numbers = new int[values.length];
+
+            for (int i = 0; i < values.length; i++) {
+                numbers[i] = Integer.parseInt(values[i]);
+            }
+
+            syndicate = Syndicate.of(settings, numbers);
+        }
+
+        String algorithm = properties.getProperty("random", RandomSource.DEFAULT_ALGORITHM);
+        String seed = properties.getProperty("seed");
+        RandomSource random = seed != null ? RandomSource.create(algorithm, Long.parseLong(seed)) : RandomSource.create(algorithm);
+
+        return new BatchJob(
+            syndicate,
+            Long.parseLong(getRequired(properties, "runs")),
+            random,
+            Integer.parseInt(properties.getProperty("threads", "0")),
+            properties.getProperty("engine", ENGINE_WEEKLY),
+            output != null && !output.isBlank() ? directory.resolve(output.trim()) : null,
+            properties.getProperty("format", FORMAT_CSV));
+    }
+
+    /**
+     * Writes what is needed to play the runs of the job, so that a worker process
+     * can read it back with {@link #read(DataInput)}. The output file is not written.
+     *
+     * @param output the output the job is written to.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput output) throws IOException {
+        settings.write(output);
+        output.writeLong(runs);
+        output.writeUTF(random.getAlgorithm());
+        output.writeLong(random.getSeed());
+        output.writeUTF(engine);
+        output.writeInt(syndicate.getTicketCount());
+
+        for (int t = 0; t < syndicate.getTicketCount(); t++) {
+            for (int number : syndicate.getTicket(t)) {
+                output.writeShort(number);
+            }
+        }
+    }
+
+    /**
+     * Reads a job written with {@link #write(DataOutput)}. The job is played on one
+     * thread and has no output file.
+     *
+     * @param input the input the job is read from.
+     * @return a new job.
+     * @throws IOException if reading fails.
+     * @throws IllegalArgumentException if a value is not valid.
+     */
+    public static BatchJob read(DataInput input) throws IOException {
+        LottoSettings settings = LottoSettings.read(input);
+        long runs = input.readLong();
+        RandomSource random = RandomSource.create(input.readUTF(), input.readLong());
+        String engine = input.readUTF();
+        int[][] tickets = new int[input.readInt()][settings.numberCount];
+
+        for (int[] ticket : tickets) {
+            for (int i = 0; i < ticket.length; i++) {
+                ticket[i] = input.readShort();
+            }
+        }
+
+        return new BatchJob(Syndicate.of(settings, tickets), runs, random, 1, engine, null, FORMAT_CSV);
+    }
+
+    private static String getRequired(Properties properties, String key) {
+        String value = properties.getProperty(key);
+
+        if(value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing value: " + key);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,216 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays the runs of a batch job on several threads and streams the results
+ * into the output file as the runs finish.
+ *
+ * The results are passed to the writer through a bounded queue, so the memory
+ * used does not depend on the amount of runs. The results are written in the
+ * order they finish; the run column tells the original order. Every thread also
+ * records the results into its own {@link RunStatistics}, which are merged
+ * when all the runs are done. With a {@link ResultStore} every thread also stores
+ * the results straight into the rows of their runs.
+ *
+ * Each run uses its own numbered random stream and each lifetime in the run
+ * a stream numbered by the retry, so the results of a run only depend on the
+ * seed and not on the amount of threads.
+ *
+ * @author Tapio Malmberg
+ */
+public class BatchRunner {
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /**
+     * The last week that is still within a lifetime.
+     */
+    static final long MAX_WEEKS = (LottoApp.YEARS_IN_A_LIFETIME + 1L) * LottoApp.WEEKS_IN_A_YEAR - 1;
+
+    private final BatchJob job;
+    private final AtomicLong nextRun = new AtomicLong();
+    private final BlockingQueue<RunResult> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final RunStatistics[] statistics;
+    private final ResultStore store;
+    private final int group;
+    private volatile Throwable failure;
+
+    /**
+     * Creates a runner for a job.
+     *
+     * @param job the job to be run.
+     */
+    public BatchRunner(BatchJob job) {
+        this(job, null, 0);
+    }
+
+    /**
+     * Creates a runner for a job that also stores the result of every run.
+     *
+     * @param job the job to be run.
+     * @param store the store the results are put into, or null.
+     * @param group the group of the job in the store, which has a row for every run.
+     */
+    public BatchRunner(BatchJob job, ResultStore store, int group) {
+        this.job = job;
+        this.statistics = new RunStatistics[job.threads];
+        this.store = store;
+        this.group = group;
+    }
+
+    /**
+     * Plays all the runs of the job and writes the results.
+     *
+     * The results are only written if the job has an output file.
+     *
+     * @return the statistics of all the runs.
+     * @throws IOException if writing the results fails.
+     * @throws InterruptedException if the thread is interrupted while waiting for results.
+     * @throws IllegalStateException if a simulation thread fails.
+     */
+    public RunStatistics run() throws IOException, InterruptedException {
+        SimulationMetrics.getDefault().startRun(job.settings);
+        ExecutorService executor = Executors.newFixedThreadPool(job.threads);
+
+        try (RunResultWriter writer = job.output != null
+                ? new RunResultWriter(job.output, job.format, job.settings.numberCount) : null) {
+            for (int i = 0; i < job.threads; i++) {
+                int thread = i;
+                executor.execute(() -> playRuns(thread));
+            }
+
+            for (long written = 0; written < job.runs; ) {
+                RunResult result = queue.poll(1, TimeUnit.SECONDS);
+
+                if(result != null) {
+                    if(writer != null) {
+                        writer.write(result);
+                    }
+
+                    written++;
+                } else if(failure != null) {
+                    throw new IllegalStateException("Simulation failed", failure);
+                }
+            }
+
+            // The threads stop by themselves once every run has been taken
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        RunStatistics total = new RunStatistics(job.settings.numberCount);
+        for (RunStatistics threadStatistics : statistics) {
+            total.merge(threadStatistics);
+        }
+
+        return total;
+    }
+
+    /**
+     * Plays all the runs of the job on the calling thread without writing them.
+     *
+     * The results are the same as with {@link #run()}, because every run uses its own random stream.
+     *
+     * @return the statistics of all the runs.
+     */
+    public RunStatistics play() {
+        return play(0, job.runs);
+    }
+
+    /**
+     * Plays a range of the runs of the job on the calling thread without writing them.
+     *
+     * The results are the same as for these runs in {@link #run()}, so the ranges
+     * can be played separately, even in different processes.
+     *
+     * @param firstRun the index of the first run.
+     * @param runCount the amount of runs.
+     * @return the statistics of the runs.
+     */
+    public RunStatistics play(long firstRun, long runCount) {
+        FastForward fastForward = job.engine.equals(BatchJob.ENGINE_FAST)
+            ? GameRegistry.getDefault().getTables(job.settings).getFastForward() : null;
+        Syndicate.Matcher matcher = job.syndicate.createMatcher();
+        RunStatistics total = new RunStatistics(job.settings.numberCount);
+
+        for (long run = firstRun; run < firstRun + runCount; run++) {
+            RunResult result = playRun(run, fastForward, matcher);
+
+            total.record(result);
+            if(store != null) {
+                store.put(group, result);
+            }
+        }
+
+        return total;
+    }
+
+    private void playRuns(int thread) {
+        try {
+            FastForward fastForward = job.engine.equals(BatchJob.ENGINE_FAST)
+                ? GameRegistry.getDefault().getTables(job.settings).getFastForward() : null;
+            Syndicate.Matcher matcher = job.syndicate.createMatcher();
+            RunStatistics threadStatistics = new RunStatistics(job.settings.numberCount);
+            statistics[thread] = threadStatistics;
+
+            for (long run = nextRun.getAndIncrement(); run < job.runs; run = nextRun.getAndIncrement()) {
+                RunResult result = playRun(run, fastForward, matcher);
+
+                threadStatistics.record(result);
+                if(store != null) {
+                    // Taking the result from the queue makes the stored row visible to the writer thread
+                    store.put(group, result);
+                }
+
+                queue.put(result);
+            }
+        } catch(InterruptedException e) {
+            // The batch was stopped
+        } catch(RuntimeException | Error e) {
+            failure = e;
+        }
+    }
+
+    private RunResult playRun(long run, FastForward fastForward, Syndicate.Matcher matcher) {
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        RandomSource runRandom = job.random.forStream(run);
+        long retries = 0;
+
+        // The fast engine can draw the retries and the winning lifetime directly
+        if(fastForward != null) {
+            retries = fastForward.getRetries(runRandom, MAX_WEEKS);
+            JackpotResult lifetime = fastForward.playUntilJackpotWithin(runRandom, MAX_WEEKS, null);
+
+            metrics.startLifetime();
+            metrics.addDraws(lifetime.getJackpotWeeks());
+
+            return new RunResult(run, retries, lifetime, job.settings.numberCount);
+        }
+
+        while(true) {
+            RandomSource random = runRandom.forStream(retries);
+            SimulationMetrics.Recorder recorder = metrics.createRecorder(matcher, 0);
+
+            // A lifetime without the jackpot within MAX_WEEKS is given up as soon as it is known
+            metrics.startLifetime();
+            JackpotResult lifetime = new LottoMachine(job.settings, random).playUntilJackpot(matcher, MAX_WEEKS);
+            recorder.flush(lifetime != null ? lifetime.getJackpotWeeks() : MAX_WEEKS);
+
+            if(lifetime != null) {
+                return new RunResult(run, retries, lifetime, job.settings.numberCount);
+            }
+
+            retries++;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable state of a run until the jackpot that can be saved and resumed.
+ *
+ * Every lifetime is played with its own numbered random stream, and inside a lifetime
+ * every chunk of {@link ParallelSimulator#WEEKS_PER_CHUNK} weeks is drawn with a new
+ * lottery machine and stream. The state of the random numbers at the start of a chunk
+ * is therefore fully described by the seed, the lifetime and the week, and nothing
+ * from inside the random generator needs to be saved.
+ *
+ * The file contains the magic bytes LOTTOCKP and the version, the game with its bonus
+ * numbers and prize tiers, the random algorithm and seed, the engine, the lifetime and week, the first week of each amount
+ * of correct numbers, the tier counts and the masks of the tickets. All values are
+ * big-endian and the file ends with a CRC-32 of everything before it. Files of
+ * version 1, which have no bonus numbers or tiers, can still be read.
+ *
+ * @author Tapio Malmberg
+ */
+public class Checkpoint {
+    /**
+     * The first bytes of a checkpoint file.
+     */
+    public static final byte[] MAGIC = "LOTTOCKP".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the file format.
+     */
+    public static final int VERSION = 2;
+
+    private final Syndicate syndicate;
+    private final RandomSource random;
+    private final boolean fast;
+    private final long lifetimes;
+    private final long weeks;
+    private final long[] milestones;
+    private final long[] tierCounts;
+
+    /**
+     * Creates the state at the start of the first lifetime.
+     *
+     * @param syndicate the tickets played every week.
+     * @param random the random source the streams of the lifetimes are derived from.
+     * @param fast if the lifetimes are played with {@link FastForward}.
+     */
+    public Checkpoint(Syndicate syndicate, RandomSource random, boolean fast) {
+        this(syndicate, random, fast, 0, 0, null, null);
+    }
+
+    private Checkpoint(Syndicate syndicate, RandomSource random, boolean fast, long lifetimes, long weeks,
+            long[] milestones, long[] tierCounts) {
+        int numberCount = syndicate.getSettings().numberCount;
+
+        this.syndicate = syndicate;
+        this.random = random;
+        this.fast = fast;
+        this.lifetimes = lifetimes;
+        this.weeks = weeks;
+        this.milestones = milestones != null ? milestones : new long[numberCount + 1];
+        this.tierCounts = tierCounts != null ? tierCounts : new long[numberCount + 1];
+
+        if(milestones == null) {
+            java.util.Arrays.fill(this.milestones, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Creates the state at the start of a lifetime.
+     *
+     * @param lifetimes the amount of lifetimes already played.
+     * @return a new checkpoint.
+     */
+    public Checkpoint startLifetime(long lifetimes) {
+        return new Checkpoint(syndicate, random, fast, lifetimes, 0, null, null);
+    }
+
+    /**
+     * Creates the state after some weeks of the same lifetime.
+     *
+     * @param weeks the amount of weeks played, a multiple of {@link ParallelSimulator#WEEKS_PER_CHUNK}.
+     * @param milestones the first week of each amount of correct numbers, Long.MAX_VALUE if not reached.
+     * @param tierCounts how many tickets got each amount of numbers right.
+     * @return a new checkpoint with copies of the arrays.
+     */
+    public Checkpoint withProgress(long weeks, long[] milestones, long[] tierCounts) {
+        return new Checkpoint(syndicate, random, fast, lifetimes, weeks, milestones.clone(), tierCounts.clone());
+    }
+
+    /**
+     * Gets the tickets.
+     *
+     * @return the tickets played every week.
+     */
+    public Syndicate getSyndicate() {
+        return syndicate;
+    }
+
+    /**
+     * Gets the random source the streams of the lifetimes are derived from.
+     *
+     * @return the random source.
+     */
+    public RandomSource getRandom() {
+        return random;
+    }
+
+    /**
+     * Tells if the lifetimes are played with {@link FastForward}.
+     *
+     * @return true if fast forwarding.
+     */
+    public boolean isFast() {
+        return fast;
+    }
+
+    /**
+     * Gets the amount of lifetimes played before the current one.
+     *
+     * @return the amount of lifetimes.
+     */
+    public long getLifetimes() {
+        return lifetimes;
+    }
+
+    /**
+     * Gets the amount of weeks already played in the current lifetime.
+     *
+     * @return the amount of weeks.
+     */
+    public long getWeeks() {
+        return weeks;
+    }
+
+    /**
+     * Gets the first week of the current lifetime with the given amount of correct numbers.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the week starting from 1, or Long.MAX_VALUE if it has not been reached.
+     */
+    public long getWeeks(int correct) {
+        return milestones[correct];
+    }
+
+    /**
+     * Gets the smallest amount of correct numbers that has not been reached yet.
+     *
+     * @return the next milestone.
+     */
+    public int getTarget() {
+        int target = 1;
+
+        while(target < milestones.length && milestones[target] != Long.MAX_VALUE) {
+            target++;
+        }
+
+        return target;
+    }
+
+    /**
+     * Gets how many tickets got each amount of numbers right in the current lifetime.
+     *
+     * @return a copy of the tier counts.
+     */
+    public long[] getTierCounts() {
+        return tierCounts.clone();
+    }
+
+    /**
+     * Writes the checkpoint into a file.
+     *
+     * The file is first written next to the target and then moved over it,
+     * so the previous checkpoint stays intact if writing fails.
+     *
+     * @param file the file to be written.
+     * @throws IOException if writing the file fails.
+     */
+    public void write(Path file) throws IOException {
+        LottoSettings settings = syndicate.getSettings();
+        byte[] name = settings.name.getBytes(StandardCharsets.UTF_8);
+        byte[] algorithm = random.getAlgorithm().getBytes(StandardCharsets.US_ASCII);
+        long[] ticket = new long[Bitmask.wordCount(settings.maxNumber)];
+
+        int size = MAGIC.length + 4 + 2 + name.length + 8 + 12 + 8 * settings.getTierCount() + 2 + algorithm.length
+            + 8 + 1 + 16 + 16 * (settings.numberCount + 1) + 4 + 8 * ticket.length * syndicate.getTicketCount() + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.put(MAGIC).putInt(VERSION);
+        buffer.putShort((short) name.length).put(name).putInt(settings.maxNumber).putInt(settings.numberCount);
+        buffer.putInt(settings.bonusMaxNumber).putInt(settings.bonusCount).putInt(settings.getTierCount());
+
+        for (int tier = 0; tier < settings.getTierCount(); tier++) {
+            buffer.putInt(settings.getTier(tier).mainHits).putInt(settings.getTier(tier).bonusHits);
+        }
+
+        buffer.putShort((short) algorithm.length).put(algorithm).putLong(random.getSeed());
+        buffer.put((byte) (fast ? 1 : 0)).putLong(lifetimes).putLong(weeks);
+
+        for (int correct = 0; correct <= settings.numberCount; correct++) {
+            buffer.putLong(milestones[correct]).putLong(tierCounts[correct]);
+        }
+
+        buffer.putInt(syndicate.getTicketCount());
+        for (int t = 0; t < syndicate.getTicketCount(); t++) {
+            for (long word : syndicate.getTicketMasks(t, ticket)) {
+                buffer.putLong(word);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, buffer.array());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint from a file.
+     *
+     * @param file the file to be read.
+     * @return the checkpoint.
+     * @throws IOException if reading the file fails.
+     * @throws IllegalArgumentException if the file is not a valid checkpoint.
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, java.lang.Math.max(0, bytes.length - 4));
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte[] magic = new byte[MAGIC.length];
+
+        try {
+            buffer.get(magic);
+
+            if(!java.util.Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Not a checkpoint: " + file);
+            }
+
+            int version = buffer.getInt();
+
+            if(version != 1 && version != VERSION) {
+                throw new IllegalArgumentException("Unsupported checkpoint version: " + file);
+            } else if(buffer.getInt(bytes.length - 4) != (int) crc.getValue()) {
+                throw new IllegalArgumentException("Checkpoint is damaged: " + file);
+            }
+
+            LottoSettings settings = readSettings(buffer, version);
+            RandomSource random = RandomSource.create(readString(buffer, StandardCharsets.US_ASCII), buffer.getLong());
+            boolean fast = buffer.get() != 0;
+            long lifetimes = buffer.getLong();
+            long weeks = buffer.getLong();
+
+            long[] milestones = new long[settings.numberCount + 1];
+            long[] tierCounts = new long[settings.numberCount + 1];
+            for (int correct = 0; correct <= settings.numberCount; correct++) {
+                milestones[correct] = buffer.getLong();
+                tierCounts[correct] = buffer.getLong();
+            }
+
+            int[][] tickets = new int[buffer.getInt()][];
+            long[] ticket = new long[Bitmask.wordCount(settings.maxNumber)];
+
+            for (int t = 0; t < tickets.length; t++) {
+                for (int i = 0; i < ticket.length; i++) {
+                    ticket[i] = buffer.getLong();
+                }
+
+                tickets[t] = Bitmask.toArray(ticket);
+            }
+
+            return new Checkpoint(Syndicate.of(settings, tickets), random, fast, lifetimes, weeks,
+                milestones, tierCounts);
+        } catch(BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Checkpoint is truncated: " + file, e);
+        }
+    }
+
+    private static LottoSettings readSettings(ByteBuffer buffer, int version) {
+        String name = readString(buffer, StandardCharsets.UTF_8);
+        int maxNumber = buffer.getInt();
+        int numberCount = buffer.getInt();
+
+        if(version == 1) {
+            return new LottoSettings(name, maxNumber, numberCount);
+        }
+
+        int bonusMaxNumber = buffer.getInt();
+        int bonusCount = buffer.getInt();
+        PrizeTier[] tiers = new PrizeTier[buffer.getInt()];
+
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new PrizeTier(buffer.getInt(), buffer.getInt());
+        }
+
+        return new LottoSettings(name, maxNumber, numberCount, bonusMaxNumber, bonusCount, tiers);
+    }
+
+    private static String readString(ByteBuffer buffer, Charset charset) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,130 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes checkpoints into a file in the background.
+ *
+ * The simulation only hands the latest {@link Checkpoint} over, which is a single
+ * volatile write. A background thread writes the latest checkpoint at most once per
+ * interval, so the checkpoints offered in between are simply replaced. The latest
+ * checkpoint is also written when the writer is closed and when the program is
+ * stopped, for example with Ctrl+C.
+ *
+ * @author Tapio Malmberg
+ */
+public class CheckpointWriter implements Closeable {
+    /**
+     * The default time between two writes in seconds.
+     */
+    public static final int DEFAULT_INTERVAL = 10;
+
+    private final Path file;
+    private final long intervalNanos;
+    private final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * Creates a writer and starts its background thread.
+     *
+     * @param file the file the checkpoints are written into.
+     * @param intervalSeconds the minimum time between two writes in seconds.
+     */
+    public CheckpointWriter(Path file, int intervalSeconds) {
+        this.file = file;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+
+        this.writerThread = new Thread(this::writeInBackground, "CheckpointWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        this.shutdownHook = new Thread(this::writePending, "CheckpointWriter shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Replaces the checkpoint waiting to be written. Does not wait for the file.
+     *
+     * @param checkpoint the latest state of the run.
+     */
+    public void offer(Checkpoint checkpoint) {
+        pending.set(checkpoint);
+    }
+
+    /**
+     * Gets the error from the latest failed write.
+     *
+     * @return the error, or null if every write has succeeded.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Writes the latest checkpoint and stops the background thread.
+     *
+     * @throws IOException if a write has failed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch(IllegalStateException e) {
+            // The program is already stopping and the hook writes the checkpoint
+        }
+
+        writePending();
+
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Closes the writer and removes the file because the run is finished.
+     *
+     * @throws IOException if a write has failed or the file cannot be removed.
+     */
+    public void finish() throws IOException {
+        pending.set(null);
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    private void writeInBackground() {
+        while(!closed) {
+            writePending();
+            LockSupport.parkNanos(intervalNanos);
+        }
+    }
+
+    private synchronized void writePending() {
+        Checkpoint checkpoint = pending.getAndSet(null);
+
+        if(checkpoint != null) {
+            try {
+                checkpoint.write(file);
+            } catch(IOException e) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+
+/**
+ * Immutable result of searching for the set of tickets that covers the most draws.
+ *
+ * @author Tapio Malmberg
+ */
+public class CoverageResult {
+    private final LottoSettings settings;
+    private final int hits;
+    private final long[] tickets;
+    private final long covered;
+    private final long drawCount;
+    private final long moves;
+    private final int chains;
+
+    /**
+     * Creates a result.
+     *
+     * @param settings the settings of the game.
+     * @param hits how many numbers of a ticket have to be correct to cover a draw.
+     * @param tickets the best tickets found as bitmasks.
+     * @param covered the amount of draws the best tickets cover.
+     * @param drawCount the amount of different draws in the game.
+     * @param moves the amount of swaps tried by all the searches.
+     * @param chains the amount of searches run in parallel.
+     */
+    public CoverageResult(LottoSettings settings, int hits, long[] tickets, long covered, long drawCount, long moves,
+            int chains) {
+        this.settings = settings;
+        this.hits = hits;
+        this.tickets = tickets.clone();
+        this.covered = covered;
+        this.drawCount = drawCount;
+        this.moves = moves;
+        this.chains = chains;
+    }
+
+    /**
+     * Gets the settings of the game.
+     *
+     * @return the settings.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets how many numbers of a ticket have to be correct to cover a draw.
+     *
+     * @return the amount of correct numbers.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the amount of tickets.
+     *
+     * @return the amount of tickets.
+     */
+    public int getTicketCount() {
+        return tickets.length;
+    }
+
+    /**
+     * Gets the numbers of a ticket.
+     *
+     * @param index the index of the ticket.
+     * @return the numbers in ascending order.
+     */
+    public int[] getTicket(int index) {
+        return Bitmask.toArray(tickets[index]);
+    }
+
+    /**
+     * Gets the tickets as bitmasks.
+     *
+     * @return a copy of the tickets, number n in bit n - 1.
+     */
+    public long[] getTicketMasks() {
+        return tickets.clone();
+    }
+
+    /**
+     * Gets the amount of draws where at least one of the tickets gets enough numbers right.
+     *
+     * @return the amount of covered draws.
+     */
+    public long getCovered() {
+        return covered;
+    }
+
+    /**
+     * Gets the amount of different draws in the game.
+     *
+     * @return the amount of draws.
+     */
+    public long getDrawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Gets the probability that at least one of the tickets gets enough numbers right in a week.
+     *
+     * @return the probability.
+     */
+    public double getProbability() {
+        return (double) covered / drawCount;
+    }
+
+    /**
+     * Gets the amount of swaps tried by all the searches.
+     *
+     * @return the amount of swaps.
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the amount of searches run in parallel.
+     *
+     * @return the amount of searches.
+     */
+    public int getChains() {
+        return chains;
+    }
+}
@@ -0,0 +1,220 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads a draw log written by {@link DrawLogWriter}.
+ *
+ * The file is mapped into memory in read-only segments of at most 1 GB, so logs
+ * of billions of weeks can be read without copying them onto the heap. The queries
+ * read the values straight from the mapped segments.
+ *
+ * @author Tapio Malmberg
+ */
+public class DrawLogReader {
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final int maxNumber;
+    private final int numberCount;
+    private final int wordCount;
+    private final int recordSize;
+    private final long recordCount;
+    private final long recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens a log file.
+     *
+     * @param file the file to be read.
+     * @throws IOException if reading the file fails.
+     * @throws IllegalArgumentException if the file is not a draw log.
+     */
+    public DrawLogReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(DrawLogWriter.HEADER_SIZE);
+            while(header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is full or the file ends
+            }
+
+            header.flip();
+            if(header.remaining() < DrawLogWriter.HEADER_SIZE) {
+                throw new IllegalArgumentException("Not a draw log: " + file);
+            }
+
+            byte[] magic = new byte[DrawLogWriter.MAGIC.length];
+            header.get(magic);
+
+            if(!java.util.Arrays.equals(magic, DrawLogWriter.MAGIC)) {
+                throw new IllegalArgumentException("Not a draw log: " + file);
+            } else if(header.getInt() != DrawLogWriter.VERSION) {
+                throw new IllegalArgumentException("Unsupported draw log version: " + file);
+            }
+
+            this.maxNumber = header.getInt();
+            this.numberCount = header.getInt();
+            this.wordCount = header.getInt();
+            this.recordCount = header.getLong();
+            this.recordSize = DrawLogWriter.getRecordSize(wordCount);
+            this.recordsPerSegment = SEGMENT_SIZE / recordSize;
+
+            if(DrawLogWriter.HEADER_SIZE + recordCount * recordSize > channel.size()) {
+                throw new IllegalArgumentException("Draw log is truncated: " + file);
+            }
+
+            // The mappings stay valid after the channel is closed
+            int segmentCount = (int) ((recordCount + recordsPerSegment - 1) / recordsPerSegment);
+            this.segments = new MappedByteBuffer[segmentCount];
+
+            for (int i = 0; i < segmentCount; i++) {
+                long first = i * recordsPerSegment;
+                long records = java.lang.Math.min(recordsPerSegment, recordCount - first);
+
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    DrawLogWriter.HEADER_SIZE + first * recordSize, records * recordSize);
+            }
+        }
+    }
+
+    /**
+     * Gets the largest number of the logged game.
+     *
+     * @return the largest number.
+     */
+    public int getMaxNumber() {
+        return maxNumber;
+    }
+
+    /**
+     * Gets how many numbers are drawn in the logged game.
+     *
+     * @return the amount of numbers drawn.
+     */
+    public int getNumberCount() {
+        return numberCount;
+    }
+
+    /**
+     * Gets the amount of draws in the log.
+     *
+     * @return the amount of records.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets the week of a draw.
+     *
+     * @param index the index of the record, starting from 0.
+     * @return the week of the draw.
+     */
+    public long getWeek(long index) {
+        return getSegment(index).getLong(getOffset(index));
+    }
+
+    /**
+     * Copies the mask of a draw into an array.
+     *
+     * @param index the index of the record, starting from 0.
+     * @param output an array with room for the mask of one draw.
+     * @return the output array.
+     */
+    public long[] getDrawMasks(long index, long[] output) {
+        ByteBuffer segment = getSegment(index);
+        int offset = getOffset(index) + Long.BYTES;
+
+        for (int i = 0; i < wordCount; i++) {
+            output[i] = segment.getLong(offset + i * Long.BYTES);
+        }
+
+        return output;
+    }
+
+    /**
+     * Calls the action with the week of every draw that contains the number, in the order of the log.
+     *
+     * Only the mask word containing the number is read from each record.
+     *
+     * @param number the number to be searched.
+     * @param action the action called with each week.
+     */
+    public void forEachWeekWithNumber(int number, LongConsumer action) {
+        int wordOffset = Long.BYTES + (number - 1) / Bitmask.BITS_PER_WORD * Long.BYTES;
+        long bit = 1L << ((number - 1) % Bitmask.BITS_PER_WORD);
+
+        for (MappedByteBuffer segment : segments) {
+            int end = segment.limit();
+
+            for (int offset = 0; offset < end; offset += recordSize) {
+                if((segment.getLong(offset + wordOffset) & bit) != 0) {
+                    action.accept(segment.getLong(offset));
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the draws that contain the number.
+     *
+     * @param number the number to be searched.
+     * @return the amount of draws.
+     */
+    public long countWeeksWithNumber(int number) {
+        long[] count = new long[1];
+        forEachWeekWithNumber(number, week -> count[0]++);
+
+        return count[0];
+    }
+
+    /**
+     * Plays the tickets against every draw in the log.
+     *
+     * The tier counts of the matcher include all the draws in the log.
+     *
+     * @param matcher a matcher for the tickets.
+     * @return the first week in the log each amount of correct numbers was reached.
+     * @throws IllegalArgumentException if the tickets are for a different game.
+     */
+    public JackpotResult replay(Syndicate.Matcher matcher) {
+        LottoSettings settings = matcher.getSyndicate().getSettings();
+
+        if(settings.maxNumber != maxNumber || settings.numberCount != numberCount) {
+            throw new IllegalArgumentException("The log is for a game with " + numberCount + " numbers out of " + maxNumber);
+        }
+
+        JackpotResult result = new JackpotResult(settings);
+        long[] draw = new long[wordCount];
+        int target = 1;
+
+        for (long index = 0; index < recordCount; index++) {
+            int correct = matcher.match(getDrawMasks(index, draw));
+
+            while(correct >= target) {
+                result.record(target, getWeek(index), Bitmask.toArray(draw), matcher.getBestTicket());
+                target++;
+            }
+        }
+
+        return result;
+    }
+
+    private ByteBuffer getSegment(long index) {
+        if(index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+        }
+
+        return segments[(int) (index / recordsPerSegment)];
+    }
+
+    private int getOffset(long index) {
+        return (int) (index % recordsPerSegment) * recordSize;
+    }
+}
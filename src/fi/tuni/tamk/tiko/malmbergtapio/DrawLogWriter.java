@@ -0,0 +1,158 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes every draw into a log file that can be replayed later with {@link DrawLogReader}.
+ *
+ * The file starts with a header of 32 bytes: the magic bytes LOTTODRW, the version,
+ * the largest number, the number count and the amount of mask words of the game as
+ * ints, and the amount of records as a long. Each draw is then a fixed size record
+ * of the week as a long followed by the mask of the drawn numbers (see
+ * {@link Bitmask}). All values are big-endian.
+ *
+ * The records are written into large memory-mapped segments of the file, so writing
+ * a draw is just a few stores into memory. The record count in the header is
+ * updated whenever a new segment is started and when the log is closed.
+ *
+ * @author Tapio Malmberg
+ */
+public class DrawLogWriter implements Closeable {
+    /**
+     * The first bytes of a draw log.
+     */
+    public static final byte[] MAGIC = "LOTTODRW".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the file format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * The position of the record count in the header.
+     */
+    static final int RECORD_COUNT_OFFSET = 24;
+
+    private static final long SEGMENT_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final int wordCount;
+    private final int recordSize;
+    private final long segmentSize;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer segment;
+    private long recordCount;
+
+    /**
+     * Creates a log file. An existing file is replaced.
+     *
+     * @param file the file to be written.
+     * @param settings the settings of the game that is logged.
+     * @throws IOException if creating the file fails.
+     */
+    public DrawLogWriter(Path file, LottoSettings settings) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.wordCount = Bitmask.wordCount(settings.maxNumber);
+        this.recordSize = getRecordSize(wordCount);
+
+        // A record never crosses the end of a segment
+        this.segmentSize = SEGMENT_SIZE / recordSize * recordSize;
+
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(settings.maxNumber);
+        header.putInt(settings.numberCount);
+        header.putInt(wordCount);
+        header.putLong(0);
+    }
+
+    /**
+     * Gets the size of a record.
+     *
+     * @param wordCount the amount of mask words in a draw.
+     * @return the size in bytes.
+     */
+    static int getRecordSize(int wordCount) {
+        return Long.BYTES * (1 + wordCount);
+    }
+
+    /**
+     * Writes a draw.
+     *
+     * @param week the week of the draw.
+     * @param drawMasks the mask of the drawn numbers.
+     * @throws UncheckedIOException if a new segment cannot be mapped.
+     */
+    public void write(long week, long[] drawMasks) {
+        if(segment == null || !segment.hasRemaining()) {
+            nextSegment();
+        }
+
+        segment.putLong(week);
+        for (int i = 0; i < wordCount; i++) {
+            segment.putLong(drawMasks[i]);
+        }
+
+        recordCount++;
+    }
+
+    /**
+     * Gets the amount of draws written.
+     *
+     * @return the amount of records.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void nextSegment() {
+        header.putLong(RECORD_COUNT_OFFSET, recordCount);
+
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + recordCount * recordSize, segmentSize);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the record count and closes the file.
+     *
+     * The file is truncated to the last record.
+     *
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        header.putLong(RECORD_COUNT_OFFSET, recordCount);
+        header.force();
+
+        if(segment != null) {
+            segment.force();
+        }
+
+        try {
+            channel.truncate(HEADER_SIZE + recordCount * recordSize);
+        } catch(IOException e) {
+            // Some systems do not allow truncating a mapped file, the header has the real length
+        }
+
+        channel.close();
+    }
+}
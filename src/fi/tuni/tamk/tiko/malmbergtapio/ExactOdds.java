@@ -0,0 +1,105 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Combinations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates the exact odds of the tickets by going through every possible draw.
+ *
+ * The draws are enumerated by their colexicographic rank (see {@link Combinations}).
+ * The ranks are split into chunks that are matched on several threads.
+ *
+ * @author Tapio Malmberg
+ */
+public class ExactOdds {
+    private static final long RANKS_PER_CHUNK = 1 << 20;
+
+    /**
+     * Calculates the exact tier table for the tickets of a syndicate.
+     *
+     * @param syndicate the tickets.
+     * @param threads the amount of threads, 0 for one per processor core.
+     * @return the tier table.
+     * @throws InterruptedException if the thread is interrupted while waiting for the result.
+     * @throws IllegalStateException if a calculation thread fails.
+     * @throws ArithmeticException if the game has more than Long.MAX_VALUE different draws.
+     */
+    public static TierTable calculate(Syndicate syndicate, int threads) throws InterruptedException {
+        return enumerate(syndicate, threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    private static TierTable enumerate(Syndicate syndicate, int threads) throws InterruptedException {
+        LottoSettings settings = syndicate.getSettings();
+        Combinations combinations = GameRegistry.getDefault().getTables(settings).getCombinations();
+        long drawCount = combinations.getCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<long[][]>> chunks = new ArrayList<>();
+
+            for (long start = 0; start < drawCount; start += RANKS_PER_CHUNK) {
+                long chunkStart = start;
+                long chunkEnd = java.lang.Math.min(drawCount, start + RANKS_PER_CHUNK);
+
+                chunks.add(executor.submit(() -> countChunk(syndicate, combinations, chunkStart, chunkEnd)));
+            }
+
+            long[] draws = new long[settings.numberCount + 1];
+            long[] tickets = new long[settings.numberCount + 1];
+
+            for (Future<long[][]> chunk : chunks) {
+                long[][] counts = chunk.get();
+
+                for (int correct = 0; correct <= settings.numberCount; correct++) {
+                    draws[correct] += counts[0][correct];
+                    tickets[correct] += counts[1][correct];
+                }
+            }
+
+            return new TierTable(drawCount, draws, tickets);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Calculation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long[][] countChunk(Syndicate syndicate, Combinations combinations, long start, long end) {
+        LottoSettings settings = syndicate.getSettings();
+        Syndicate.Matcher matcher = syndicate.createMatcher();
+        long[] draws = new long[settings.numberCount + 1];
+        long[] draw = new long[Bitmask.wordCount(settings.maxNumber)];
+        int[] combination = combinations.unrank(start, new int[settings.numberCount]);
+
+        if(draw.length == 1) {
+            // The masks of the draws in rank order are the ascending masks with k bits
+            long mask = Bitmask.toMask(combination);
+
+            for (long rank = start; rank < end; rank++) {
+                draw[0] = mask;
+                draws[matcher.match(draw)]++;
+                mask = Combinations.nextMask(mask);
+            }
+        } else {
+            for (long rank = start; rank < end; rank++) {
+                java.util.Arrays.fill(draw, 0);
+                for (int number : combination) {
+                    Bitmask.set(draw, number);
+                }
+
+                draws[matcher.match(draw)]++;
+                combinations.next(combination);
+            }
+        }
+
+        return new long[][] { draws, matcher.getTierCounts() };
+    }
+}
@@ -0,0 +1,177 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+import fi.tuni.tamk.tiko.malmbergtapio.util.StripedCounters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Draws a large amount of weeks with {@link LottoMachine} and counts how the numbers
+ * fall, so that the draws can be tested for bias with {@link FairnessReport}.
+ *
+ * Every draw counts the number drawn at each position, every pair of numbers drawn
+ * together, how many numbers the draw shares with the previous draw and the sums
+ * needed for the correlation between the first numbers of consecutive draws. The
+ * amount of draws of each number is the sum of its positions.
+ *
+ * The draws are split into chunks with their own random streams like in
+ * {@link ParallelSimulator}. Each thread takes chunks until all are drawn and counts
+ * into its own stripe of {@link StripedCounters}, so the threads share nothing while
+ * counting. The counts are integers, so the result only depends on the seed.
+ *
+ * @author Tapio Malmberg
+ */
+public class FairnessAudit {
+    private static final long DRAWS_PER_CHUNK = 1 << 20;
+
+    private static final int FIRST_SUM = 0;
+    private static final int FIRST_SQUARE_SUM = 1;
+    private static final int PRODUCT_SUM = 2;
+    private static final int SERIAL_PAIRS = 3;
+
+    private final LottoSettings settings;
+    private final int stride;
+    private final int pairsOffset;
+    private final int overlapsOffset;
+    private final int serialOffset;
+    private final int counterCount;
+
+    /**
+     * Creates an audit for a game.
+     *
+     * @param settings the settings of the game.
+     */
+    public FairnessAudit(LottoSettings settings) {
+        this.settings = settings;
+
+        // The numbers start from 1, so every row has an unused counter for 0
+        this.stride = settings.maxNumber + 1;
+        this.pairsOffset = settings.numberCount * stride;
+        this.overlapsOffset = pairsOffset + stride * stride;
+        this.serialOffset = overlapsOffset + settings.numberCount + 1;
+        this.counterCount = serialOffset + 4;
+    }
+
+    /**
+     * Draws the weeks and tests the counts.
+     *
+     * @param draws the amount of draws.
+     * @param random the random source the streams of the chunks are derived from.
+     * @param threads the amount of threads, 0 for one per processor core.
+     * @return the tests of the draws.
+     * @throws InterruptedException if the thread is interrupted while waiting for the draws.
+     * @throws IllegalStateException if a drawing thread fails.
+     */
+    public FairnessReport audit(long draws, RandomSource random, int threads) throws InterruptedException {
+        threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        StripedCounters counters = new StripedCounters(counterCount, threads);
+        AtomicLong nextChunk = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> stripes = new ArrayList<>();
+
+            for (int i = 0; i < threads; i++) {
+                int stripe = i;
+
+                stripes.add(executor.submit(() -> {
+                    for (long chunk = nextChunk.getAndIncrement(); chunk * DRAWS_PER_CHUNK < draws;
+                            chunk = nextChunk.getAndIncrement()) {
+                        long chunkDraws = java.lang.Math.min(DRAWS_PER_CHUNK, draws - chunk * DRAWS_PER_CHUNK);
+                        drawChunk(random.forStream(chunk), chunkDraws, counters.getArray(), counters.offset(stripe));
+                    }
+                }));
+            }
+
+            // Waiting for the threads also makes their counts visible here
+            for (Future<?> stripe : stripes) {
+                stripe.get();
+            }
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Drawing failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return createReport(draws, counters.sums());
+    }
+
+    private void drawChunk(RandomSource random, long draws, long[] counts, int offset) {
+        int numberCount = settings.numberCount;
+        LottoMachine machine = new LottoMachine(settings, random);
+        int[] drawn = new int[numberCount];
+        long[] previous = new long[Bitmask.wordCount(settings.maxNumber)];
+        int pairs = offset + pairsOffset;
+        int previousFirst = 0;
+
+        for (long week = 0; week < draws; week++) {
+            machine.draw();
+
+            for (int p = 0; p < numberCount; p++) {
+                drawn[p] = machine.getDrawnNumber(p);
+                counts[offset + p * stride + drawn[p]]++;
+            }
+
+            for (int i = 0; i < numberCount; i++) {
+                int a = drawn[i];
+
+                for (int j = i + 1; j < numberCount; j++) {
+                    int b = drawn[j];
+                    counts[pairs + java.lang.Math.min(a, b) * stride + java.lang.Math.max(a, b)]++;
+                }
+            }
+
+            long[] masks = machine.getDrawMasks();
+            int first = drawn[0];
+            counts[offset + serialOffset + FIRST_SUM] += first;
+            counts[offset + serialOffset + FIRST_SQUARE_SUM] += first * first;
+
+            // The first draw of a chunk has no previous draw in the same stream
+            if(week > 0) {
+                int overlap = masks.length == 1
+                    ? Long.bitCount(masks[0] & previous[0]) : Bitmask.countMatches(masks, previous);
+
+                counts[offset + overlapsOffset + overlap]++;
+                counts[offset + serialOffset + PRODUCT_SUM] += (long) first * previousFirst;
+                counts[offset + serialOffset + SERIAL_PAIRS]++;
+            }
+
+            System.arraycopy(masks, 0, previous, 0, masks.length);
+            previousFirst = first;
+        }
+    }
+
+    private FairnessReport createReport(long draws, long[] sums) {
+        int maxNumber = settings.maxNumber;
+        int numberCount = settings.numberCount;
+        long[][] positionCounts = new long[numberCount][maxNumber + 1];
+        long[][] pairCounts = new long[maxNumber + 1][maxNumber + 1];
+        long[] overlapCounts = new long[numberCount + 1];
+
+        for (int p = 0; p < numberCount; p++) {
+            System.arraycopy(sums, p * stride, positionCounts[p], 0, stride);
+        }
+
+        for (int a = 1; a <= maxNumber; a++) {
+            System.arraycopy(sums, pairsOffset + a * stride, pairCounts[a], 0, stride);
+        }
+
+        System.arraycopy(sums, overlapsOffset, overlapCounts, 0, overlapCounts.length);
+
+        long serialPairs = sums[serialOffset + SERIAL_PAIRS];
+        double mean = (double) sums[serialOffset + FIRST_SUM] / draws;
+        double variance = (double) sums[serialOffset + FIRST_SQUARE_SUM] / draws - mean * mean;
+        double covariance = serialPairs > 0 ? (double) sums[serialOffset + PRODUCT_SUM] / serialPairs - mean * mean : 0;
+
+        return new FairnessReport(settings, draws, positionCounts, pairCounts, overlapCounts,
+            variance > 0 ? covariance / variance : 0, serialPairs);
+    }
+}
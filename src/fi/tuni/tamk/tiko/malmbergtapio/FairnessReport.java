@@ -0,0 +1,324 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
+
+import java.util.List;
+
+/**
+ * Immutable counts of a {@link FairnessAudit} and the statistical tests calculated from them.
+ *
+ * The counts of a single draw are not independent, because a number cannot be drawn
+ * twice. The tests take this into account, so each statistic follows the chi-square
+ * distribution with the given degrees of freedom when the draws are fair:
+ *
+ * <ul>
+ * <li>Numbers: every number is drawn equally often.</li>
+ * <li>Positions: the numbers are drawn equally often at every position of the draw.
+ *     Only the differences between the positions are tested, so the test does not
+ *     repeat the numbers test.</li>
+ * <li>Pairs: every pair of numbers is drawn together equally often. The part that
+ *     follows from the counts of the single numbers is removed, so the test does not
+ *     repeat the numbers test either.</li>
+ * <li>Overlaps: the amounts of numbers shared by consecutive draws follow the
+ *     hypergeometric distribution, as they do when the draws are independent.</li>
+ * <li>Serial correlation: the first numbers of consecutive draws are not correlated.</li>
+ * </ul>
+ *
+ * The chi-square distribution is only accurate when every count is expected to be
+ * at least about five, so the pairs need a few thousand draws in a typical game.
+ *
+ * @author Tapio Malmberg
+ */
+public class FairnessReport {
+    /**
+     * Immutable result of one chi-square test.
+     */
+    public static class Test {
+        private final String name;
+        private final double statistic;
+        private final int degreesOfFreedom;
+
+        /**
+         * Creates a result.
+         *
+         * @param name the name of the test.
+         * @param statistic the chi-square statistic.
+         * @param degreesOfFreedom the degrees of freedom.
+         */
+        public Test(String name, double statistic, int degreesOfFreedom) {
+            this.name = name;
+            this.statistic = statistic;
+            this.degreesOfFreedom = degreesOfFreedom;
+        }
+
+        /**
+         * Gets the name of the test.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the chi-square statistic.
+         *
+         * @return the statistic.
+         */
+        public double getStatistic() {
+            return statistic;
+        }
+
+        /**
+         * Gets the degrees of freedom.
+         *
+         * @return the degrees of freedom, 0 if there were too few draws for the test.
+         */
+        public int getDegreesOfFreedom() {
+            return degreesOfFreedom;
+        }
+
+        /**
+         * Gets the probability of a statistic at least this large when the draws are fair.
+         *
+         * @return the p-value, NaN if there were too few draws for the test.
+         */
+        public double getPValue() {
+            return degreesOfFreedom > 0 ? Math.chiSquarePValue(statistic, degreesOfFreedom) : Double.NaN;
+        }
+    }
+
+    /**
+     * The smallest amount of draws expected in a group of the overlaps test.
+     */
+    private static final double MIN_EXPECTED = 5;
+
+    private final LottoSettings settings;
+    private final long draws;
+    private final long[] numberCounts;
+    private final long[][] positionCounts;
+    private final long[][] pairCounts;
+    private final long[] overlapCounts;
+    private final double serialCorrelation;
+    private final long serialPairs;
+
+    /**
+     * Creates a report.
+     *
+     * @param settings the settings of the game.
+     * @param draws the amount of draws.
+     * @param positionCounts how many times each number was drawn at each position, indexed by position and number.
+     * @param pairCounts how many times each pair was drawn together, indexed by the smaller and the larger number.
+     * @param overlapCounts how many times consecutive draws shared each amount of numbers.
+     * @param serialCorrelation the correlation between the first numbers of consecutive draws.
+     * @param serialPairs the amount of consecutive draws compared.
+     */
+    public FairnessReport(LottoSettings settings, long draws, long[][] positionCounts, long[][] pairCounts,
+            long[] overlapCounts, double serialCorrelation, long serialPairs) {
+        this.settings = settings;
+        this.draws = draws;
+        this.positionCounts = positionCounts;
+        this.pairCounts = pairCounts;
+        this.overlapCounts = overlapCounts.clone();
+        this.serialCorrelation = serialCorrelation;
+        this.serialPairs = serialPairs;
+        this.numberCounts = new long[settings.maxNumber + 1];
+
+        for (long[] position : positionCounts) {
+            for (int number = 1; number <= settings.maxNumber; number++) {
+                numberCounts[number] += position[number];
+            }
+        }
+    }
+
+    /**
+     * Gets the settings of the game.
+     *
+     * @return the settings.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets the amount of draws.
+     *
+     * @return the amount of draws.
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets how many times a number was drawn.
+     *
+     * @param number the number.
+     * @return the amount of draws that contained the number.
+     */
+    public long getNumberCount(int number) {
+        return numberCounts[number];
+    }
+
+    /**
+     * Gets the largest difference between the amount of draws of a number and the
+     * expected amount, relative to the expected amount.
+     *
+     * @return the largest relative difference.
+     */
+    public double getMaxDeviation() {
+        double expected = (double) draws * settings.numberCount / settings.maxNumber;
+        double deviation = 0;
+
+        for (int number = 1; number <= settings.maxNumber; number++) {
+            deviation = java.lang.Math.max(deviation, java.lang.Math.abs(numberCounts[number] - expected) / expected);
+        }
+
+        return deviation;
+    }
+
+    /**
+     * Gets the correlation between the first numbers of consecutive draws.
+     *
+     * @return the correlation coefficient.
+     */
+    public double getSerialCorrelation() {
+        return serialCorrelation;
+    }
+
+    /**
+     * Gets all the tests.
+     *
+     * @return the tests in the order they are described in this class.
+     */
+    public List<Test> getTests() {
+        return List.of(getNumberTest(), getPositionTest(), getPairTest(), getOverlapTest(), getSerialCorrelationTest());
+    }
+
+    /**
+     * Tests if every number is drawn equally often.
+     *
+     * @return the test.
+     */
+    public Test getNumberTest() {
+        int n = settings.maxNumber;
+        int k = settings.numberCount;
+        double expected = (double) draws * k / n;
+        double sum = 0;
+
+        for (int number = 1; number <= n; number++) {
+            double difference = numberCounts[number] - expected;
+            sum += difference * difference;
+        }
+
+        // The variance of a count is only (n - k) / (n - 1) of a Poisson count, and the
+        // counts always add up to the same total
+        double variance = (double) draws * k * (n - k) / ((double) n * (n - 1));
+
+        return new Test("Numbers", k < n ? sum / variance : 0, k < n ? n - 1 : 0);
+    }
+
+    /**
+     * Tests if the numbers are drawn equally often at every position.
+     *
+     * @return the test.
+     */
+    public Test getPositionTest() {
+        int n = settings.maxNumber;
+        int k = settings.numberCount;
+        double sum = 0;
+
+        // Comparing every position to the average of the positions leaves out the
+        // differences between the numbers
+        for (long[] position : positionCounts) {
+            for (int number = 1; number <= n; number++) {
+                double difference = position[number] - (double) numberCounts[number] / k;
+                sum += difference * difference;
+            }
+        }
+
+        return new Test("Positions", sum * (n - 1) / draws, (k - 1) * (n - 1));
+    }
+
+    /**
+     * Tests if every pair of numbers is drawn together equally often.
+     *
+     * @return the test.
+     */
+    public Test getPairTest() {
+        int n = settings.maxNumber;
+        int k = settings.numberCount;
+
+        if(n < 4 || k < 2) {
+            return new Test("Pairs", 0, 0);
+        }
+
+        double pair = (double) k * (k - 1) / ((double) n * (n - 1));
+        double triple = pair * (k - 2) / (n - 2);
+        double quadruple = triple * (k - 3) / (n - 3);
+        double expected = draws * pair;
+        double[] rowSums = new double[n + 1];
+        double sum = 0;
+
+        for (int a = 1; a <= n; a++) {
+            for (int b = a + 1; b <= n; b++) {
+                double difference = pairCounts[a][b] - expected;
+                sum += difference * difference;
+                rowSums[a] += difference;
+                rowSums[b] += difference;
+            }
+        }
+
+        // The part of the differences that every pair with the same number has in common
+        // is the difference in the count of the number
+        for (int number = 1; number <= n; number++) {
+            sum -= rowSums[number] * rowSums[number] / (n - 2);
+        }
+
+        // The variance of the rest, from the covariances of pairs sharing one or no number
+        double variance = pair * (1 - pair) - 2 * (triple - pair * pair) + (quadruple - pair * pair);
+        int degreesOfFreedom = n * (n - 3) / 2;
+
+        return new Test("Pairs", variance > 0 ? sum / (draws * variance) : 0, variance > 0 ? degreesOfFreedom : 0);
+    }
+
+    /**
+     * Tests if consecutive draws share the amounts of numbers expected from independent draws.
+     *
+     * @return the test.
+     */
+    public Test getOverlapTest() {
+        int k = settings.numberCount;
+        double sum = 0;
+        int groups = 0;
+        double observed = 0;
+        double expected = 0;
+
+        // The rare large overlaps are grouped together until enough draws are expected
+        for (int overlap = k; overlap >= 0; overlap--) {
+            observed += overlapCounts[overlap];
+            expected += serialPairs * Math.hypergeometric(settings.maxNumber, k, k, overlap);
+
+            if(expected >= MIN_EXPECTED || overlap == 0) {
+                if(expected > 0) {
+                    sum += (observed - expected) * (observed - expected) / expected;
+                    groups++;
+                }
+
+                observed = 0;
+                expected = 0;
+            }
+        }
+
+        return new Test("Overlaps", sum, java.lang.Math.max(0, groups - 1));
+    }
+
+    /**
+     * Tests if the first numbers of consecutive draws are correlated.
+     *
+     * @return the test.
+     */
+    public Test getSerialCorrelationTest() {
+        // The correlation of independent values times the square root of their amount is normally distributed
+        return new Test("Serial correlation", serialPairs * serialCorrelation * serialCorrelation, serialPairs > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,283 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+/**
+ * Plays a lottery until the jackpot without drawing every week.
+ *
+ * The probability of getting at least k numbers right is the same every week,
+ * so the first week with at least k correct follows the geometric distribution.
+ * The simulator jumps straight to that week, picks how many numbers were actually
+ * correct on it and continues from there with the next missing amount. One lifetime
+ * takes at most one step per amount of correct numbers instead of one per week.
+ *
+ * The result has the same distribution as playing week by week with a single ticket.
+ *
+ * Games with bonus numbers are fast forwarded tier by tier with
+ * {@link #playTiersWithin(RandomSource, long)} in the same way.
+ *
+ * @author Tapio Malmberg
+ */
+public class FastForward {
+    private final LottoSettings settings;
+    private final double[] probabilities;
+    private final double[] probabilitiesAtLeast;
+    private final double[] tierProbabilities;
+
+    /**
+     * Creates a simulator and calculates the probabilities for the given settings.
+     *
+     * @param settings the settings used for the lottery.
+     */
+    public FastForward(LottoSettings settings) {
+        this.settings = settings;
+        this.probabilities = new double[settings.numberCount + 1];
+        this.probabilitiesAtLeast = new double[settings.numberCount + 2];
+
+        for (int correct = settings.numberCount; correct >= 0; correct--) {
+            probabilities[correct] = Math.hypergeometric(settings.maxNumber, settings.numberCount, settings.numberCount, correct);
+            probabilitiesAtLeast[correct] = probabilitiesAtLeast[correct + 1] + probabilities[correct];
+        }
+
+        this.tierProbabilities = new double[settings.getTierCount()];
+        for (int tier = 0; tier < tierProbabilities.length; tier++) {
+            tierProbabilities[tier] = settings.getTierProbability(tier);
+        }
+    }
+
+    /**
+     * Gets the probability of getting exactly the given amount of numbers right in a week.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the probability.
+     */
+    public double getProbability(int correct) {
+        return probabilities[correct];
+    }
+
+    /**
+     * Gets the probability of getting at least the given amount of numbers right in a week.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the probability.
+     */
+    public double getProbabilityAtLeast(int correct) {
+        return probabilitiesAtLeast[correct];
+    }
+
+    /**
+     * Plays the lottery until the jackpot.
+     *
+     * The winning numbers of each milestone are drawn so that exactly the
+     * recorded amount of the ticket's numbers is correct.
+     *
+     * @param random the random source for the lifetime.
+     * @param userNumbers the numbers chosen by the player.
+     * @return the first week for each amount of correct numbers.
+     */
+    public JackpotResult playUntilJackpot(RandomSource random, int[] userNumbers) {
+        JackpotResult result = new JackpotResult(settings);
+        long week = 0;
+        int target = 1;
+
+        while(target <= settings.numberCount) {
+            week += Math.getGeometric(random, probabilitiesAtLeast[target]);
+
+            int correct = getCorrect(random, target);
+
+            int[] numbers = userNumbers != null ? drawWithCorrect(random, userNumbers, correct) : null;
+            while(target <= correct) {
+                result.record(target, week, numbers, 0);
+                target++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns only the week of the jackpot.
+     *
+     * This is the fastest way to simulate a lifetime when only
+     * the jackpot matters.
+     *
+     * @param random the random source for the lifetime.
+     * @return the week when all the numbers were correct.
+     */
+    public long getJackpotWeek(RandomSource random) {
+        return Math.getGeometric(random, probabilities[settings.numberCount]);
+    }
+
+    /**
+     * Returns how many lifetimes are played before the first one where the jackpot
+     * is won within the given amount of weeks.
+     *
+     * @param random the random source.
+     * @param maxWeeks the last week that still counts as within the lifetime.
+     * @return the amount of lifetimes that took too long.
+     */
+    public long getRetries(RandomSource random, long maxWeeks) {
+        return Math.getGeometric(random, getProbabilityWithin(maxWeeks)) - 1;
+    }
+
+    /**
+     * Plays a lifetime where the jackpot is known to be won within the given amount of weeks.
+     *
+     * The result has the same distribution as playing lifetimes until one of them
+     * wins within maxWeeks, but only one lifetime is needed. The jackpot week is drawn
+     * first, then the other milestones from the weeks before it, which are all known
+     * to have fewer than all numbers correct.
+     *
+     * @param random the random source for the lifetime.
+     * @param maxWeeks the last week that still counts as within the lifetime.
+     * @param userNumbers the numbers chosen by the player, or null if the winning
+     *                    numbers are not needed.
+     * @return the first week for each amount of correct numbers.
+     */
+    public JackpotResult playUntilJackpotWithin(RandomSource random, long maxWeeks, int[] userNumbers) {
+        JackpotResult result = new JackpotResult(settings);
+        int numberCount = settings.numberCount;
+        double jackpot = probabilities[numberCount];
+
+        // Invert the distribution function of the jackpot week limited to [1, maxWeeks]
+        double u = random.nextDouble() * getProbabilityWithin(maxWeeks);
+        long jackpotWeek = (long) java.lang.Math.ceil(java.lang.Math.log1p(-u) / java.lang.Math.log1p(-jackpot));
+        jackpotWeek = java.lang.Math.max(1, java.lang.Math.min(jackpotWeek, maxWeeks));
+
+        long week = 0;
+        int target = 1;
+
+        while(target < numberCount) {
+            // The weeks before the jackpot are known to have fewer than all numbers correct
+            double probability = (probabilitiesAtLeast[target] - jackpot) / (1 - jackpot);
+            week += Math.getGeometric(random, probability);
+
+            if(week >= jackpotWeek) {
+                break;
+            }
+
+            double v = random.nextDouble() * (probabilitiesAtLeast[target] - jackpot);
+            int correct = target;
+
+            while(correct < numberCount - 1 && v >= probabilities[correct]) {
+                v -= probabilities[correct];
+                correct++;
+            }
+
+            int[] numbers = userNumbers != null ? drawWithCorrect(random, userNumbers, correct) : null;
+            while(target <= correct) {
+                result.record(target, week, numbers, 0);
+                target++;
+            }
+        }
+
+        int[] numbers = userNumbers != null ? Arrays.sort(userNumbers) : null;
+        while(target <= numberCount) {
+            result.record(target, jackpotWeek, numbers, 0);
+            target++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Plays the prize tiers of a single ticket until the jackpot or the given amount of weeks.
+     *
+     * The tiers are exclusive, so the first week that wins any of the tiers not won
+     * yet follows the geometric distribution with the sum of their probabilities.
+     * The simulator jumps to that week, picks which of those tiers was won and
+     * continues with the rest, so a lifetime takes at most one step per tier. The
+     * first weeks have the same distribution as with {@link MultiPoolMachine}, but
+     * the wins are not counted.
+     *
+     * @param random the random source for the lifetime.
+     * @param maxWeeks the last week that is played.
+     * @return the first week of each tier.
+     */
+    public TierResult playTiersWithin(RandomSource random, long maxWeeks) {
+        long[] firstWeeks = new long[tierProbabilities.length];
+        long week = 0;
+
+        while(firstWeeks[0] == 0) {
+            // Summing again every time keeps the rounding errors from adding up
+            double remaining = 0;
+            for (int tier = 0; tier < tierProbabilities.length; tier++) {
+                remaining += firstWeeks[tier] == 0 ? tierProbabilities[tier] : 0;
+            }
+
+            week += Math.getGeometric(random, remaining);
+            if(week > maxWeeks) {
+                return new TierResult(settings, firstWeeks, null, maxWeeks);
+            }
+
+            double u = random.nextDouble() * remaining;
+            int won = 0;
+
+            for (int tier = 0; tier < tierProbabilities.length; tier++) {
+                if(firstWeeks[tier] == 0) {
+                    won = tier;
+                    u -= tierProbabilities[tier];
+
+                    if(u < 0) {
+                        break;
+                    }
+                }
+            }
+
+            firstWeeks[won] = week;
+        }
+
+        return new TierResult(settings, firstWeeks, null, week);
+    }
+
+    /**
+     * Returns the probability of winning the jackpot within the given amount of weeks.
+     */
+    private double getProbabilityWithin(long maxWeeks) {
+        return -java.lang.Math.expm1(maxWeeks * java.lang.Math.log1p(-probabilities[settings.numberCount]));
+    }
+
+    /**
+     * Picks the amount of correct numbers in a week that had at least the minimum amount.
+     */
+    private int getCorrect(RandomSource random, int minimum) {
+        double u = random.nextDouble() * probabilitiesAtLeast[minimum];
+
+        for (int correct = minimum; correct < settings.numberCount; correct++) {
+            u -= probabilities[correct];
+
+            if(u < 0) {
+                return correct;
+            }
+        }
+
+        return settings.numberCount;
+    }
+
+    /**
+     * Draws random numbers so that exactly the given amount of the user's numbers are correct.
+     */
+    private int[] drawWithCorrect(RandomSource random, int[] userNumbers, int correct) {
+        int[] hits = userNumbers.clone();
+        int[] misses = new int[settings.maxNumber - userNumbers.length];
+        int index = 0;
+
+        for (int number = 1; number <= settings.maxNumber; number++) {
+            if(!Arrays.contains(number, userNumbers)) {
+                misses[index] = number;
+                index++;
+            }
+        }
+
+        random.sample(hits, correct);
+        random.sample(misses, settings.numberCount - correct);
+
+        int[] numbers = new int[settings.numberCount];
+        System.arraycopy(hits, 0, numbers, 0, correct);
+        System.arraycopy(misses, 0, numbers, correct, numbers.length - correct);
+
+        return Arrays.sort(numbers);
+    }
+}
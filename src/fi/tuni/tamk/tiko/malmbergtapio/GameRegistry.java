@@ -0,0 +1,364 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread-safe registry of the games in the settings file.
+ *
+ * The file is read and validated once, and the {@link GameTables} of every game are
+ * calculated at the same time. Everything is stored in an immutable snapshot that is
+ * replaced as a whole, so a reader always sees either the old or the new games.
+ *
+ * The registry can watch the file and load it again when it changes. If the changed
+ * file is not valid, the previous snapshot is kept.
+ *
+ * The tables of games that are not in the file, like the points of a parameter sweep,
+ * are calculated when they are first needed and kept in a bounded cache that evicts
+ * the least recently used tables, so the simulations of the same game share them as well.
+ *
+ * The file format is one game per line: name;largest number;how many numbers are drawn.
+ * A game with bonus numbers continues with ;largest bonus number;how many bonus numbers
+ * are drawn and optionally ;the prize tiers from the jackpot down, like 5+2, 5+1, 4+2.
+ * Empty lines and lines starting with # are skipped.
+ *
+ * @author Tapio Malmberg
+ */
+public class GameRegistry {
+    /**
+     * The settings file read from the working directory by default.
+     */
+    public static final String DEFAULT_FILE = "LottoSettings.txt";
+
+    /**
+     * The largest amount of games not in the file whose tables are kept.
+     */
+    public static final int MAX_OTHER_TABLES = 1024;
+
+    private final Path file;
+    private final Map<LottoSettings, GameTables> otherTables;
+    private volatile Snapshot snapshot;
+    private WatchService watchService;
+
+    /**
+     * Creates a registry and loads the games from a file.
+     *
+     * If the file cannot be loaded, the built-in games are used until it can.
+     *
+     * @param file the settings file.
+     */
+    public GameRegistry(Path file) {
+        this.file = file;
+
+        // Access order makes the eldest entry the least recently used one
+        this.otherTables = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LottoSettings, GameTables> eldest) {
+                return size() > MAX_OTHER_TABLES;
+            }
+        };
+
+        try {
+            this.snapshot = new Snapshot(load(file), null);
+        } catch(IOException | IllegalArgumentException e) {
+            this.snapshot = new Snapshot(List.of(LottoSettings.FinnishLotto, LottoSettings.Vikinglotto,
+                LottoSettings.Eurojackpot), describe(e));
+        }
+    }
+
+    private static class Holder {
+        private static final GameRegistry DEFAULT = new GameRegistry(Paths.get(DEFAULT_FILE));
+    }
+
+    /**
+     * Gets the registry of the settings file in the working directory.
+     *
+     * The file is loaded when this is called for the first time.
+     *
+     * @return the default registry.
+     */
+    public static GameRegistry getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    /**
+     * Reads and validates the games in a settings file.
+     *
+     * @param file the file to be read.
+     * @return the games in the order of the file.
+     * @throws IOException if reading the file fails.
+     * @throws IllegalArgumentException if a line is not valid.
+     */
+    public static List<LottoSettings> load(Path file) throws IOException {
+        List<LottoSettings> games = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+
+            if(line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                LottoSettings settings = parse(line);
+
+                for (LottoSettings game : games) {
+                    if(game.name.equalsIgnoreCase(settings.name)) {
+                        throw new IllegalArgumentException("Duplicate game: " + settings.name);
+                    }
+                }
+
+                games.add(settings);
+            } catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+
+        if(games.isEmpty()) {
+            throw new IllegalArgumentException("No games in " + file);
+        }
+
+        return games;
+    }
+
+    private static LottoSettings parse(String line) {
+        String[] properties = line.split(";");
+        if(properties.length != 3 && properties.length != 5 && properties.length != 6) {
+            throw new IllegalArgumentException("Expected name;largest number;number count"
+                + "[;largest bonus number;bonus number count[;prize tiers]]");
+        }
+
+        String name = properties[0].trim();
+        int maxNumber;
+        int numberCount;
+        int bonusMaxNumber = 0;
+        int bonusCount = 0;
+
+        try {
+            maxNumber = Integer.parseInt(properties[1].trim());
+            numberCount = Integer.parseInt(properties[2].trim());
+
+            if(properties.length > 3) {
+                bonusMaxNumber = Integer.parseInt(properties[3].trim());
+                bonusCount = Integer.parseInt(properties[4].trim());
+            }
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + e.getMessage());
+        }
+
+        if(name.isEmpty()) {
+            throw new IllegalArgumentException("Missing name");
+        } else if(numberCount < 1 || numberCount > maxNumber) {
+            throw new IllegalArgumentException("Cannot draw " + numberCount + " numbers out of " + maxNumber);
+        } else if(properties.length > 3 && (bonusCount < 1 || bonusCount > bonusMaxNumber)) {
+            throw new IllegalArgumentException("Cannot draw " + bonusCount + " bonus numbers out of " + bonusMaxNumber);
+        }
+
+        PrizeTier[] tiers = properties.length > 5 ? LottoSettings.parseTiers(properties[5]) : null;
+
+        return new LottoSettings(name, maxNumber, numberCount, bonusMaxNumber, bonusCount, tiers);
+    }
+
+    /**
+     * Gets the current games and their tables.
+     *
+     * @return the current snapshot.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the tables for a game.
+     *
+     * The tables of the games in the registry have already been calculated.
+     * The tables for any other game are calculated the first time they are
+     * needed and then reused. When the cache is full, the tables used the
+     * longest time ago are evicted.
+     *
+     * @param settings the settings of the game.
+     * @return the tables for the game.
+     */
+    public GameTables getTables(LottoSettings settings) {
+        GameTables tables = snapshot.tables.get(settings);
+
+        if(tables != null) {
+            return tables;
+        }
+
+        synchronized(otherTables) {
+            tables = otherTables.get(settings);
+        }
+
+        if(tables == null) {
+            // Calculated outside the lock; another thread may calculate the same tables, both are correct
+            GameTables created = new GameTables(settings);
+
+            synchronized(otherTables) {
+                tables = otherTables.putIfAbsent(settings, created);
+            }
+
+            tables = tables != null ? tables : created;
+        }
+
+        return tables;
+    }
+
+    /**
+     * Loads the settings file again and replaces the snapshot if the file is valid.
+     *
+     * @return an error message, or null if the games were loaded.
+     */
+    public String reload() {
+        try {
+            snapshot = new Snapshot(load(file), null);
+            return null;
+        } catch(IOException | IllegalArgumentException e) {
+            return describe(e);
+        }
+    }
+
+    private static String describe(Exception e) {
+        if(e instanceof NoSuchFileException) {
+            return "File not found: " + e.getMessage();
+        }
+
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    /**
+     * Starts a background thread that loads the file again whenever it changes.
+     *
+     * @throws IOException if the directory of the file cannot be watched.
+     */
+    public synchronized void startWatching() throws IOException {
+        if(watchService != null) {
+            return;
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        WatchService service = FileSystems.getDefault().newWatchService();
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchService = service;
+
+        Thread thread = new Thread(() -> watch(service), "GameRegistry");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    public synchronized void stopWatching() {
+        if(watchService != null) {
+            try {
+                watchService.close();
+            } catch(IOException e) {
+                // The thread stops anyway
+            }
+
+            watchService = null;
+        }
+    }
+
+    private void watch(WatchService service) {
+        Path fileName = file.getFileName();
+
+        try {
+            while(true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= fileName.equals(event.context());
+                }
+
+                if(changed) {
+                    String error = reload();
+
+                    if(error == null) {
+                        System.out.println("Loaded " + snapshot.games.size() + " games from " + file);
+                    } else {
+                        System.out.println("ERROR: Keeping the previous games, " + file + " is not valid: " + error);
+                    }
+                }
+
+                key.reset();
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            // Stopped watching
+        }
+    }
+
+    /**
+     * Immutable set of games and their tables.
+     */
+    public static class Snapshot {
+        private final List<LottoSettings> games;
+        private final Map<LottoSettings, GameTables> tables;
+        private final String error;
+
+        private Snapshot(List<LottoSettings> games, String error) {
+            Map<LottoSettings, GameTables> tables = new HashMap<>();
+
+            for (LottoSettings settings : games) {
+                tables.put(settings, new GameTables(settings));
+            }
+
+            this.games = Collections.unmodifiableList(new ArrayList<>(games));
+            this.tables = tables;
+            this.error = error;
+        }
+
+        /**
+         * Gets the games in the order of the settings file.
+         *
+         * @return an unmodifiable list of the games.
+         */
+        public List<LottoSettings> getGames() {
+            return games;
+        }
+
+        /**
+         * Finds a game by name.
+         *
+         * @param name the name of the game, not case sensitive.
+         * @return the settings for the game, or null if the game was not found.
+         */
+        public LottoSettings getByName(String name) {
+            for (LottoSettings settings : games) {
+                if(settings.name.equalsIgnoreCase(name)) {
+                    return settings;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Gets the reason the settings file could not be loaded.
+         *
+         * @return the error message, or null if the games are from the file.
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Combinations;
+
+/**
+ * Immutable tables calculated once for a game and shared by all the simulations.
+ *
+ * The tables are created by {@link GameRegistry} when the settings file is loaded,
+ * so the simulations do not need to calculate them again. The ranking of the draws
+ * is only needed by the exact calculations and it does not exist for games with more
+ * than Long.MAX_VALUE draws, so it is calculated the first time it is used.
+ *
+ * @author Tapio Malmberg
+ */
+public class GameTables {
+    private final LottoSettings settings;
+    private final FastForward fastForward;
+    private volatile Combinations combinations;
+
+    /**
+     * Calculates the tables for a game.
+     *
+     * @param settings the settings of the game.
+     */
+    public GameTables(LottoSettings settings) {
+        this.settings = settings;
+        this.fastForward = new FastForward(settings);
+    }
+
+    /**
+     * Gets the settings of the game.
+     *
+     * @return the settings used for the lottery.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets the fast forward simulator, which holds the probabilities of each amount
+     * of correct numbers. It can be shared by any amount of threads.
+     *
+     * @return the simulator for the game.
+     */
+    public FastForward getFastForward() {
+        return fastForward;
+    }
+
+    /**
+     * Gets the ranking of the draws, which holds the binomial coefficients of the game.
+     *
+     * The ranking is calculated when this is called for the first time.
+     *
+     * @return the ranking of the draws.
+     * @throws ArithmeticException if the game has more than Long.MAX_VALUE different draws.
+     */
+    public Combinations getCombinations() {
+        Combinations result = combinations;
+
+        if(result == null) {
+            synchronized(this) {
+                result = combinations;
+
+                if(result == null) {
+                    result = new Combinations(settings.maxNumber, settings.numberCount);
+                    combinations = result;
+                }
+            }
+        }
+
+        return result;
+    }
+}
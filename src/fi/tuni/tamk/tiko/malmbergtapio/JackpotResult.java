@@ -0,0 +1,94 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * Stores the first week each amount of correct numbers was reached
+ * when playing a lottery until the jackpot.
+ *
+ * @author Tapio Malmberg
+ */
+public class JackpotResult {
+    private final long[] weeks;
+    private final int[][] winningNumbers;
+    private final int[] winningTickets;
+
+    /**
+     * Creates an empty result where no amount of correct numbers has been reached.
+     *
+     * @param settings the settings used for the lottery.
+     */
+    public JackpotResult(LottoSettings settings) {
+        this.weeks = new long[settings.numberCount + 1];
+        this.winningNumbers = new int[settings.numberCount + 1][];
+        this.winningTickets = new int[settings.numberCount + 1];
+
+        java.util.Arrays.fill(weeks, Long.MAX_VALUE);
+    }
+
+    /**
+     * Records a week where the given amount of numbers was correct, if it is
+     * earlier than the week already recorded.
+     *
+     * @param correct the amount of correct numbers.
+     * @param week the week when the numbers were drawn, starting from 1.
+     * @param numbers the drawn numbers in ascending order.
+     * @param ticket the index of the ticket that got the numbers right.
+     */
+    public void record(int correct, long week, int[] numbers, int ticket) {
+        if(week < weeks[correct]) {
+            weeks[correct] = week;
+            winningNumbers[correct] = numbers;
+            winningTickets[correct] = ticket;
+        }
+    }
+
+    /**
+     * Combines another result into this one, keeping the earliest weeks.
+     *
+     * @param other the result to be combined.
+     */
+    public void merge(JackpotResult other) {
+        for (int correct = 1; correct < weeks.length; correct++) {
+            record(correct, other.weeks[correct], other.winningNumbers[correct], other.winningTickets[correct]);
+        }
+    }
+
+    /**
+     * Gets the first week when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the week starting from 1, or Long.MAX_VALUE if it was never reached.
+     */
+    public long getWeeks(int correct) {
+        return weeks[correct];
+    }
+
+    /**
+     * Gets the numbers that were drawn on the week returned by {@link #getWeeks(int)}.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the drawn numbers in ascending order, or null if it was never reached.
+     */
+    public int[] getWinningNumbers(int correct) {
+        return winningNumbers[correct];
+    }
+
+    /**
+     * Gets the index of the ticket that got the numbers right on the week
+     * returned by {@link #getWeeks(int)}.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the index of the ticket in the syndicate.
+     */
+    public int getWinningTicket(int correct) {
+        return winningTickets[correct];
+    }
+
+    /**
+     * Gets the week when all the numbers were correct.
+     *
+     * @return the week starting from 1, or Long.MAX_VALUE if the jackpot was not won.
+     */
+    public long getJackpotWeeks() {
+        return weeks[weeks.length - 1];
+    }
+}
@@ -1,8 +1,20 @@
 package fi.tuni.tamk.tiko.malmbergtapio;
 
-import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
 import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.CommandLine;
 import fi.tuni.tamk.tiko.malmbergtapio.util.Console;
+import fi.tuni.tamk.tiko.malmbergtapio.util.FastWriter;
+import fi.tuni.tamk.tiko.malmbergtapio.util.LogHistogram;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * Contains the main program for the lottery simulation program.
@@ -10,8 +22,12 @@ import fi.tuni.tamk.tiko.malmbergtapio.util.Console;
  * @author Tapio Malmberg
  */
 public class LottoApp {
-    private static final int WEEKS_IN_A_YEAR = 365 / 7;
-    private static final int YEARS_IN_A_LIFETIME = 120;
+    static final int WEEKS_IN_A_YEAR = 365 / 7;
+    static final int YEARS_IN_A_LIFETIME = 120;
+    static final long DEFAULT_ESTIMATE_SAMPLES = 10_000_000L;
+    static final long DEFAULT_FAIRNESS_DRAWS = 1_000_000_000L;
+    static final int DEFAULT_OPTIMIZE_SECONDS = 10;
+    static final int DEFAULT_THRESHOLD_YEARS = 10;
 
     /**
      * Main program.
@@ -19,34 +35,1052 @@ public class LottoApp {
      * @param args command line arguments.
      */
     public static void main(String [] args) {
+        // Run a batch job without any prompts if one was given
+        if(CommandLine.hasOption(args, "batch")) {
+            runBatch(CommandLine.getOption(args, "batch"), CommandLine.getInt(args, "workers", 0),
+                CommandLine.getLong(args, "shard-size", ShardCoordinator.DEFAULT_SHARD_SIZE),
+                CommandLine.getOption(args, "store"), CommandLine.getInt(args, "years", DEFAULT_THRESHOLD_YEARS));
+            return;
+        } else if(CommandLine.hasOption(args, "query")) {
+            queryStore(CommandLine.getOption(args, "query"), CommandLine.getInt(args, "years", DEFAULT_THRESHOLD_YEARS));
+            return;
+        } else if(CommandLine.hasOption(args, "fairness")) {
+            auditFairness(args, CommandLine.getLong(args, "fairness", DEFAULT_FAIRNESS_DRAWS));
+            return;
+        } else if(CommandLine.hasOption(args, "sweep")) {
+            runSweep(CommandLine.getOption(args, "sweep"));
+            return;
+        } else if(CommandLine.hasOption(args, ShardWorker.OPTION)) {
+            runWorker(CommandLine.getInt(args, ShardWorker.OPTION, 0));
+            return;
+        } else if(CommandLine.hasOption(args, "serve")) {
+            startServer(CommandLine.getInt(args, "serve", 8080), CommandLine.getInt(args, "threads", 0));
+            return;
+        }
+
+        // A resumed run continues with the game, the tickets and the random numbers of the checkpoint
+        Checkpoint resumed = null;
+        if(CommandLine.hasOption(args, "resume")) {
+            resumed = readCheckpoint(CommandLine.getOption(args, "resume"));
+            if(resumed == null) {
+                return;
+            }
+        }
+
         // Get the settings for the lotto game
-        LottoSettings lottoSettings = getLottoSettings();
+        LottoSettings lottoSettings = resumed != null ? resumed.getSyndicate().getSettings() : getLottoSettings();
+
+        // The optimizer chooses the tickets itself
+        if(resumed == null && CommandLine.hasOption(args, "optimize")) {
+            optimizeTickets(lottoSettings, CommandLine.getInt(args, "optimize", 0), args);
+            return;
+        }
+
+        // Load the tickets from a file if one was given
+        Syndicate syndicate = resumed != null ? resumed.getSyndicate() : null;
+        String ticketFile = CommandLine.getOption(args, "tickets");
+
+        if(syndicate == null && ticketFile != null) {
+            syndicate = loadSyndicate(lottoSettings, ticketFile);
+            if(syndicate == null) {
+                return;
+            }
+        }
 
         // Try to get the user numbers from command line arguments
-        int[] userNumbers = getUserNumbersFromArgs(lottoSettings, args);
+        int[] userNumbers = null;
+        if(syndicate == null) {
+            userNumbers = getUserNumbersFromArgs(lottoSettings, CommandLine.getOperands(args));
+        }
 
         // Prompt the user for how much info they want to see
         InfoAmount infoAmount = getInfoAmount();
         
         // Prompt the user for the lottery numbers
         // if the command line arguments were not given or were invalid
-        if(userNumbers == null) {
-            userNumbers = getUserNumbers(lottoSettings);
+        if(syndicate == null) {
+            if(userNumbers == null) {
+                userNumbers = getUserNumbers(lottoSettings);
+            }
+
+            syndicate = Syndicate.of(lottoSettings, userNumbers);
+        }
+
+        // The exact odds do not need any random numbers
+        if(CommandLine.hasOption(args, "exact")) {
+            printExactOdds(syndicate, CommandLine.getInt(args, "threads", 0));
+            return;
+        } else if(CommandLine.hasOption(args, "replay")) {
+            replayDrawLog(syndicate, args);
+            return;
+        }
+
+        // Every lifetime gets its own random stream so that the whole run can be repeated
+        RandomSource random = resumed != null ? resumed.getRandom() : getRandomSource(args);
+        if(random == null) {
+            return;
+        } else if(resumed != null) {
+            System.out.println("Resuming lifetime " + (resumed.getLifetimes() + 1) + " from week " + resumed.getWeeks()
+                + ": " + random.getAlgorithm() + ", seed " + random.getSeed());
+        }
+
+        // The bonus numbers are only played by their own engines
+        if(lottoSettings.hasBonusNumbers() && CommandLine.hasOption(args, "bonus")) {
+            playBonusGame(syndicate, CommandLine.getOption(args, "bonus"), random, CommandLine.hasOption(args, "fast"),
+                infoAmount, args);
+            return;
+        } else if(lottoSettings.hasBonusNumbers()) {
+            System.out.println("Playing only the main numbers. Give the bonus numbers with --bonus to play the prize tiers.");
+        }
+
+        ParallelSimulator simulator = null;
+        PipelinedSimulator pipeline = null;
+        FastForward fastForward = null;
+        int threads = CommandLine.getInt(args, "threads", 1);
+
+        if(CommandLine.hasOption(args, "estimate")) {
+            long samples = CommandLine.getLong(args, "estimate", DEFAULT_ESTIMATE_SAMPLES);
+            printEstimate(syndicate, random, samples, CommandLine.getInt(args, "threads", 0));
+            return;
+        } else if(CommandLine.hasOption(args, "verify")) {
+            if(syndicate.getTicketCount() > 1) {
+                System.out.println("ERROR: Fast forward only supports a single ticket.");
+                return;
+            }
+
+            int lifetimeCount = CommandLine.getInt(args, "verify", 1000);
+            verifyFastForward(syndicate, random, lifetimeCount, threads);
+            return;
+        } else if(resumed != null ? resumed.isFast() : CommandLine.hasOption(args, "fast")) {
+            if(syndicate.getTicketCount() > 1) {
+                System.out.println("ERROR: Fast forward only supports a single ticket.");
+                return;
+            } else if(infoAmount == InfoAmount.EVERYWEEK) {
+                System.out.println("Printing the numbers for every week is not supported when fast forwarding.");
+            }
+
+            fastForward = GameRegistry.getDefault().getTables(lottoSettings).getFastForward();
+        } else if(CommandLine.hasOption(args, "pipeline")) {
+            pipeline = new PipelinedSimulator(syndicate);
+            System.out.println("Drawing, matching and printing on separate threads.");
+        } else if(threads != 1) {
+            if(infoAmount == InfoAmount.EVERYWEEK) {
+                System.out.println("Printing the numbers for every week is only supported with one thread.");
+            } else {
+                simulator = new ParallelSimulator(syndicate, threads);
+                System.out.println("Using " + simulator.getThreads() + " threads.");
+            }
         }
 
+        // Everything printed while playing goes through a buffer
+        FastWriter output = getOutput(args);
+        if(output == null) {
+            return;
+        }
+
+        DrawLogWriter drawLog = null;
+        if(CommandLine.hasOption(args, "record")) {
+            if(fastForward != null || simulator != null) {
+                System.out.println("Recording the draws is only supported with one thread.");
+            } else if(resumed != null) {
+                System.out.println("Recording the draws is not supported when resuming.");
+            } else {
+                drawLog = createDrawLog(lottoSettings, CommandLine.getOption(args, "record"));
+                if(drawLog == null) {
+                    output.close();
+                    return;
+                }
+            }
+        }
+
+        Checkpoint state = resumed != null ? resumed : new Checkpoint(syndicate, random, fastForward != null);
+        CheckpointWriter checkpoints = createCheckpointWriter(args, random);
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long lifetimes = state.getLifetimes();
         long yearsToJackpot = 0;
         boolean keepTrying = true;
 
+        metrics.startRun(lottoSettings);
+
         while(keepTrying) {
-            yearsToJackpot = playUntilJackpot(lottoSettings, userNumbers, infoAmount);
+            if(checkpoints != null) {
+                checkpoints.offer(state);
+            }
+
+            metrics.startLifetime();
+
+            if(fastForward != null) {
+                JackpotResult result = fastForward.playUntilJackpot(random.forStream(lifetimes), syndicate.getTicket(0));
+                metrics.addDraws(result.getJackpotWeeks());
+                metrics.recordMilestones(lottoSettings, result);
+                yearsToJackpot = printResult(result, syndicate, infoAmount, output);
+            } else if(pipeline != null) {
+                yearsToJackpot = playPipelined(pipeline, random.forStream(lifetimes), state, infoAmount, output,
+                    drawLog, checkpoints);
+            } else if(simulator != null && state.getWeeks() == 0) {
+                JackpotResult result = simulator.playUntilJackpot(random.forStream(lifetimes));
+                yearsToJackpot = printResult(result, syndicate, infoAmount, output);
+            } else {
+                // A lifetime resumed from the middle is finished week by week
+                yearsToJackpot = playUntilJackpot(syndicate, random.forStream(lifetimes), state, infoAmount, output,
+                    drawLog, checkpoints);
+            }
+
+            lifetimes++;
+            state = state.startLifetime(lifetimes);
 
             if(yearsToJackpot > YEARS_IN_A_LIFETIME) {
-                System.out.println("It took more than a lifetime so let's try that again.");
+                output.println("It took more than a lifetime so let's try that again.");
             } else {
-                System.out.println("Congratulations, you might still be alive to use your money!");
+                output.println("Congratulations, you might still be alive to use your money!");
                 keepTrying = false;
             }
-        } 
+
+            // Show the progress after every lifetime unless printing every week
+            if(infoAmount != InfoAmount.EVERYWEEK) {
+                output.flush();
+            }
+        }
+
+        output.close();
+
+        if(simulator != null) {
+            simulator.shutdown();
+        }
+
+        if(pipeline != null) {
+            pipeline.shutdown();
+        }
+
+        if(drawLog != null) {
+            closeDrawLog(drawLog);
+        }
+
+        if(checkpoints != null) {
+            finishCheckpoints(checkpoints);
+        }
+    }
+
+    /**
+     * Plays the main and bonus numbers of a ticket lifetime by lifetime until the
+     * jackpot is won within a lifetime, and prints the first week of each prize tier.
+     *
+     * @param syndicate the ticket with the main numbers.
+     * @param bonusOption the bonus numbers separated by commas.
+     * @param random the random source the streams of the lifetimes are derived from.
+     * @param fast true to fast forward tier by tier instead of drawing every week.
+     * @param infoAmount how much information is printed.
+     * @param args command line arguments for the output.
+     */
+    private static void playBonusGame(Syndicate syndicate, String bonusOption, RandomSource random, boolean fast,
+            InfoAmount infoAmount, String[] args) {
+        LottoSettings settings = syndicate.getSettings();
+        long ticket;
+
+        if(syndicate.getTicketCount() > 1) {
+            System.out.println("ERROR: The bonus numbers are only supported with a single ticket.");
+            return;
+        }
+
+        try {
+            String[] values = bonusOption.trim().split("[\\s,;]+");
+            int[] bonusNumbers = new int[values.length];
+
+            for (int i = 0; i < values.length; i++) {
+                bonusNumbers[i] = Integer.parseInt(values[i]);
+            }
+
+            ticket = MultiPoolMachine.pack(settings, syndicate.getTicket(0), bonusNumbers);
+        } catch(NumberFormatException e) {
+            System.out.println("ERROR: Could not convert all the bonus numbers to integers.");
+            return;
+        } catch(IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            return;
+        }
+
+        if(infoAmount != InfoAmount.NONE) {
+            System.out.println("Only the years are printed when playing the bonus numbers.");
+        }
+
+        FastWriter output = getOutput(args);
+        if(output == null) {
+            return;
+        }
+
+        FastForward fastForward = fast ? GameRegistry.getDefault().getTables(settings).getFastForward() : null;
+        TierResult result;
+        long lifetimes = 0;
+
+        do {
+            RandomSource lifetimeRandom = random.forStream(lifetimes);
+
+            // Every lifetime ends at the jackpot or after the last week of the lifetime
+            result = fastForward != null
+                ? fastForward.playTiersWithin(lifetimeRandom, BatchRunner.MAX_WEEKS)
+                : new MultiPoolMachine(settings, lifetimeRandom).playUntilJackpot(ticket, BatchRunner.MAX_WEEKS);
+            lifetimes++;
+
+            // The smallest prizes first
+            for (int tier = settings.getTierCount() - 1; tier >= 0; tier--) {
+                if(result.getFirstWeek(tier) > 0) {
+                    printTier(result, tier, output);
+                }
+            }
+
+            if(result.isJackpot()) {
+                output.println("You won!");
+                output.println("Congratulations, you might still be alive to use your money!");
+            } else {
+                output.println("No jackpot in a lifetime so let's try that again.");
+            }
+
+            output.flush();
+        } while(!result.isJackpot());
+
+        output.close();
+    }
+
+    /**
+     * Prints the first week a prize tier was won.
+     *
+     * @param result the result of a lifetime.
+     * @param tier the index of the tier.
+     * @param output the output to print to.
+     */
+    private static void printTier(TierResult result, int tier, FastWriter output) {
+        long weeks = result.getFirstWeek(tier);
+        long years = weeks / WEEKS_IN_A_YEAR;
+
+        output.print("Got ").print(result.getSettings().getTier(tier).toString()).print(" right! Took ").print(years)
+            .print(years == 1 ? " year" : " years");
+
+        if(years == 0) {
+            output.print(" (").print(weeks).print(weeks == 1 ? " week" : " weeks").print(")");
+        }
+
+        if(result.hasCounts()) {
+            output.print(", won ").print(result.getCount(tier)).print(result.getCount(tier) == 1 ? " time" : " times");
+        }
+
+        output.println();
+    }
+
+    /**
+     * Reads the checkpoint of a run given with --resume.
+     *
+     * Returns null if the file cannot be read.
+     *
+     * @param fileName the name of the checkpoint file.
+     * @return the checkpoint or null if an error occurred.
+     */
+    private static Checkpoint readCheckpoint(String fileName) {
+        try {
+            return Checkpoint.read(Paths.get(fileName));
+        } catch(IOException | IllegalArgumentException e) {
+            System.out.println("ERROR: Reading the checkpoint failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the writer for the checkpoints given with --checkpoint, or for the file
+     * given with --resume so that a resumed run can be resumed again.
+     *
+     * Returns null if the run is not checkpointed.
+     *
+     * @param args the command line arguments given to the program.
+     * @param random the random source of the run.
+     * @return the writer or null.
+     */
+    private static CheckpointWriter createCheckpointWriter(String[] args, RandomSource random) {
+        String fileName = CommandLine.hasOption(args, "checkpoint")
+            ? CommandLine.getOption(args, "checkpoint") : CommandLine.getOption(args, "resume");
+
+        if(fileName == null || fileName.isEmpty()) {
+            return null;
+        } else if(random.getAlgorithm().equals(RandomSource.THREAD_LOCAL)) {
+            System.out.println("Runs with " + RandomSource.THREAD_LOCAL + " cannot be resumed, no checkpoints are written.");
+            return null;
+        }
+
+        int interval = CommandLine.getInt(args, "checkpoint-interval", CheckpointWriter.DEFAULT_INTERVAL);
+        return new CheckpointWriter(Paths.get(fileName), java.lang.Math.max(1, interval));
+    }
+
+    /**
+     * Removes the checkpoint of a finished run.
+     *
+     * @param checkpoints the writer to be closed.
+     */
+    private static void finishCheckpoints(CheckpointWriter checkpoints) {
+        try {
+            checkpoints.finish();
+        } catch(IOException e) {
+            System.out.println("ERROR: Writing the checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the log the draws are recorded into.
+     *
+     * Returns null if the file cannot be created.
+     *
+     * @param settings the settings used for the lottery.
+     * @param fileName the name of the log file.
+     * @return the log or null if an error occurred.
+     */
+    private static DrawLogWriter createDrawLog(LottoSettings settings, String fileName) {
+        try {
+            return new DrawLogWriter(Paths.get(fileName), settings);
+        } catch(IOException e) {
+            System.out.println("ERROR: Creating the draw log failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Closes the draw log and prints how many draws were recorded.
+     *
+     * @param drawLog the log to be closed.
+     */
+    private static void closeDrawLog(DrawLogWriter drawLog) {
+        try {
+            drawLog.close();
+            System.out.println("Recorded " + drawLog.getRecordCount() + " draws.");
+        } catch(IOException e) {
+            System.out.println("ERROR: Writing the draw log failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Plays the tickets against the draws recorded with --record.
+     *
+     * With --drawn=N the weeks where the number N was drawn are printed instead.
+     *
+     * @param syndicate the tickets chosen by the player.
+     * @param args the command line arguments given to the program.
+     */
+    private static void replayDrawLog(Syndicate syndicate, String[] args) {
+        DrawLogReader drawLog;
+
+        try {
+            drawLog = new DrawLogReader(Paths.get(CommandLine.getOption(args, "replay")));
+        } catch(IOException | IllegalArgumentException e) {
+            System.out.println("ERROR: Reading the draw log failed: " + e.getMessage());
+            return;
+        }
+
+        FastWriter output = getOutput(args);
+        if(output == null) {
+            return;
+        }
+
+        if(CommandLine.hasOption(args, "drawn")) {
+            int number = CommandLine.getInt(args, "drawn", 0);
+
+            if(number < 1 || number > drawLog.getMaxNumber()) {
+                System.out.println("ERROR: Invalid number: " + number);
+            } else {
+                output.print("Weeks where ").print(number).println(" was drawn:");
+                drawLog.forEachWeekWithNumber(number, week -> output.print(week).println());
+            }
+        } else {
+            Syndicate.Matcher matcher;
+            JackpotResult result;
+
+            try {
+                matcher = syndicate.createMatcher();
+                result = drawLog.replay(matcher);
+            } catch(IllegalArgumentException e) {
+                System.out.println("ERROR: " + e.getMessage());
+                output.close();
+                return;
+            }
+
+            output.print("Replayed ").print(drawLog.getRecordCount()).println(" draws.");
+
+            for (int correct = 1; correct <= syndicate.getSettings().numberCount; correct++) {
+                if(result.getWeeks(correct) != Long.MAX_VALUE) {
+                    output.print("Got ").print(correct).print(" right in week ").print(result.getWeeks(correct)).println();
+                }
+            }
+
+            printTierCounts(matcher.getTierCounts(), output);
+        }
+
+        output.close();
+    }
+
+    /**
+     * Creates the writer chosen with the command line options.
+     * 
+     * The text is written into the file given with --output, or into the standard
+     * output stream. With --async the text is written by a background thread.
+     * Returns null if the file cannot be created.
+     * 
+     * @param args the command line arguments given to the program.
+     * @return the writer or null if an error occurred.
+     */
+    private static FastWriter getOutput(String[] args) {
+        String outputFile = CommandLine.getOption(args, "output");
+        boolean background = CommandLine.hasOption(args, "async");
+
+        if(outputFile == null || outputFile.isEmpty()) {
+            return FastWriter.toStandardOutput(background);
+        }
+
+        try {
+            return FastWriter.toFile(Paths.get(outputFile), background);
+        } catch(IOException e) {
+            System.out.println("ERROR: Creating the output file failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts the simulation service. The program keeps running until it is stopped.
+     *
+     * @param port the port the service listens on.
+     * @param threads the amount of simulation threads, 0 for one per processor core.
+     */
+    private static void startServer(int port, int threads) {
+        try {
+            SimulationServer server = new SimulationServer(port, threads);
+            server.start();
+
+            System.out.println("Listening on http://localhost:" + server.getPort() + "/simulate");
+        } catch(IOException e) {
+            System.out.println("ERROR: Starting the server failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs batch jobs and prints how long they took.
+     *
+     * With a store the result of every run is also kept off the heap, one group per
+     * job, and the exact percentiles of each group are printed after all the jobs.
+     * 
+     * @param fileNames the names of the job files separated by commas.
+     * @param workers the amount of worker processes, 0 to run the jobs in this process.
+     * @param shardSize the amount of runs given to a worker process at a time.
+     * @param storeFile the file the results are stored in, an empty string to store
+     *                  them in memory or null to not store them.
+     * @param years the years within which the jackpot is counted in the store report.
+     */
+    private static void runBatch(String fileNames, int workers, long shardSize, String storeFile, int years) {
+        try {
+            List<BatchJob> jobs = new ArrayList<>();
+            for (String fileName : fileNames.split(",")) {
+                jobs.add(BatchJob.load(Paths.get(fileName.trim())));
+            }
+
+            if(workers > 0 && storeFile != null) {
+                System.out.println("The results of single runs are not stored when using worker processes.");
+                storeFile = null;
+            }
+
+            try (ResultStore store = storeFile != null ? createStore(jobs, storeFile) : null) {
+                for (BatchJob job : jobs) {
+                    if(workers > 0) {
+                        runShards(job, workers, shardSize);
+                        continue;
+                    }
+
+                    System.out.println("Running " + job.runs + " runs of " + job.settings.name + " on " + job.threads
+                        + " threads, seed " + job.random.getSeed() + ".");
+
+                    int group = store != null ? store.addGroup(getGroupName(job), job.runs, job.settings.numberCount) : 0;
+                    long start = System.nanoTime();
+                    RunStatistics statistics = new BatchRunner(job, store, group).run();
+                    double seconds = (System.nanoTime() - start) / 1e9;
+
+                    if(job.output != null) {
+                        System.out.printf("Wrote the results to %s in %.1f seconds.%n", job.output, seconds);
+                    } else {
+                        System.out.printf("Played the runs in %.1f seconds.%n", seconds);
+                    }
+
+                    printStatistics(statistics);
+                }
+
+                if(store != null) {
+                    printStore(store, years);
+                }
+            }
+        } catch(IOException e) {
+            System.out.println("ERROR: " + e.getMessage());
+        } catch(IllegalArgumentException e) {
+            System.out.println("ERROR: Invalid job: " + e.getMessage());
+        } catch(IllegalStateException e) {
+            System.out.println("ERROR: " + e.getMessage() + ": " + e.getCause());
+        } catch(InterruptedException e) {
+            System.out.println("ERROR: The batch was interrupted.");
+        }
+    }
+
+    /**
+     * Creates a store with room for all the runs of the jobs.
+     *
+     * @param jobs the jobs.
+     * @param fileName the file of the store, or an empty string for a store in memory.
+     * @return the store.
+     * @throws IOException if creating the file fails.
+     */
+    private static ResultStore createStore(List<BatchJob> jobs, String fileName) throws IOException {
+        long runs = 0;
+        int numberCount = 1;
+
+        for (BatchJob job : jobs) {
+            runs += job.runs;
+            numberCount = java.lang.Math.max(numberCount, job.settings.numberCount);
+        }
+
+        return fileName.isEmpty() ? ResultStore.allocate(numberCount, runs)
+            : ResultStore.create(Paths.get(fileName), numberCount, runs);
+    }
+
+    /**
+     * Gets the name of the group of a job in the store: the game and the ticket.
+     *
+     * @param job the job.
+     * @return the name of the group.
+     */
+    private static String getGroupName(BatchJob job) {
+        if(job.syndicate.getTicketCount() > 1) {
+            return job.settings.name + ", " + job.syndicate.getTicketCount() + " tickets";
+        }
+
+        StringBuilder name = new StringBuilder(job.settings.name).append(',');
+        for (int number : job.syndicate.getTicket(0)) {
+            name.append(' ').append(number);
+        }
+
+        return name.toString();
+    }
+
+    /**
+     * Opens a store file and prints the report of its groups.
+     *
+     * @param fileName the file of the store.
+     * @param years the years within which the jackpot is counted.
+     */
+    private static void queryStore(String fileName, int years) {
+        try (ResultStore store = ResultStore.open(Paths.get(fileName))) {
+            printStore(store, years);
+        } catch(IOException e) {
+            System.out.println("ERROR: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the exact percentiles of the weeks and the retries of every group in a store,
+     * how many runs won in the first lifetime and how many won within the given years.
+     *
+     * @param store the store.
+     * @param years the years within which the jackpot is counted.
+     */
+    private static void printStore(ResultStore store, int years) {
+        System.out.println();
+        System.out.println("Stored " + store.getGroupCount() + " groups, " + store.getBytesPerRun() + " bytes per run.");
+
+        for (int group = 0; group < store.getGroupCount(); group++) {
+            long runs = store.getRunCount(group);
+            int numberCount = store.getNumberCount(group);
+
+            System.out.println();
+            System.out.println(store.getName(group) + ": " + runs + " runs");
+            System.out.printf("%-8s %12s %12s %12s %12s %12s%n", "Correct", "Median", "90 %", "99 %", "99.9 %", "Max");
+
+            for (int correct = 1; correct <= numberCount; correct++) {
+                printStoreRow(store, group, Integer.toString(correct), correct);
+            }
+
+            printStoreRow(store, group, "Retries", ResultStore.RETRIES);
+
+            long firstLifetime = store.countAtMost(group, ResultStore.RETRIES, 0);
+            long withinYears = store.countAtMost(group, numberCount, (long) years * WEEKS_IN_A_YEAR);
+
+            System.out.printf("Won in the first lifetime: %d runs (%.3f %%)%n", firstLifetime, 100.0 * firstLifetime / runs);
+            System.out.printf("Won within %d years of the winning lifetime: %d runs (%.3f %%)%n", years, withinYears,
+                100.0 * withinYears / runs);
+        }
+    }
+
+    /**
+     * Prints one row of the store report.
+     *
+     * @param store the store.
+     * @param group the index of the group.
+     * @param label the name of the row.
+     * @param column the column of the values.
+     */
+    private static void printStoreRow(ResultStore store, int group, String label, int column) {
+        System.out.printf("%-8s %12d %12d %12d %12d %12d%n", label,
+            store.getValueAtPercentile(group, column, 50), store.getValueAtPercentile(group, column, 90),
+            store.getValueAtPercentile(group, column, 99), store.getValueAtPercentile(group, column, 99.9),
+            store.getValueAtPercentile(group, column, 100));
+    }
+
+    /**
+     * Runs a batch job in worker processes and prints how long it took.
+     *
+     * @param job the job to be run.
+     * @param workers the amount of worker processes.
+     * @param shardSize the amount of runs given to a worker process at a time.
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers.
+     */
+    private static void runShards(BatchJob job, int workers, long shardSize) throws InterruptedException {
+        ShardCoordinator coordinator = new ShardCoordinator(job, workers, shardSize);
+        System.out.println("Running " + job.runs + " runs of " + job.settings.name + " in " + coordinator.getShardCount()
+            + " shards on " + workers + " worker processes, seed " + job.random.getSeed() + ".");
+
+        if(job.output != null) {
+            System.out.println("The results of single runs are not written when using worker processes.");
+        }
+
+        long start = System.nanoTime();
+        RunStatistics statistics = coordinator.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Played the runs in %.1f seconds.%n", seconds);
+        if(coordinator.getRetries() > 0) {
+            System.out.println("Played " + coordinator.getRetries() + " shards again after a worker failed.");
+        }
+
+        printStatistics(statistics);
+    }
+
+    /**
+     * Plays the shards of a coordinator until it has no more of them.
+     *
+     * @param port the port the coordinator listens on.
+     */
+    private static void runWorker(int port) {
+        try {
+            new ShardWorker(port).run();
+        } catch(IOException e) {
+            // The output of a worker is discarded, but the errors are shown by the coordinator
+            System.err.println("ERROR: Lost the connection to the coordinator: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Plays a parameter sweep and prints a row for every point of the grid.
+     *
+     * The cache file of the sweep is loaded first and saved after the sweep. A cache
+     * file that cannot be read is reported and the sweep starts with an empty cache.
+     *
+     * @param fileName the name of the sweep file.
+     */
+    private static void runSweep(String fileName) {
+        try {
+            SweepJob job = SweepJob.load(Paths.get(fileName));
+            SweepCache cache = loadSweepCache(job);
+
+            System.out.println("Sweeping " + job.points.size() + " points of " + job.points.get(0).getRuns()
+                + " runs on " + job.threads + " threads.");
+            System.out.println();
+            System.out.printf("%6s %6s %-12s %16s %14s %14s %14s %12s%n",
+                "Max", "Drawn", "Tickets", "Jackpot 1 in", "Mean years", "Median years", "90 % years", "Retries");
+
+            long start = System.nanoTime();
+            SweepRunner runner = new SweepRunner(job, cache);
+            runner.run(LottoApp::printSweepPoint);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println();
+            System.out.printf("Played %d points in %.1f seconds, %d found in the cache.%n",
+                runner.getPlayed(), seconds, cache.getHits());
+
+            if(job.cache != null) {
+                cache.save(job.cache);
+                System.out.println("Saved " + cache.size() + " results to " + job.cache + ".");
+            }
+        } catch(IOException e) {
+            System.out.println("ERROR: " + e.getMessage());
+        } catch(IllegalArgumentException e) {
+            System.out.println("ERROR: Invalid sweep: " + e.getMessage());
+        } catch(IllegalStateException e) {
+            System.out.println("ERROR: " + e.getMessage() + ": " + e.getCause());
+        } catch(InterruptedException e) {
+            System.out.println("ERROR: The sweep was interrupted.");
+        }
+    }
+
+    /**
+     * Loads the cache of a sweep, or creates an empty one.
+     *
+     * @param job the sweep.
+     * @return the cache.
+     */
+    private static SweepCache loadSweepCache(SweepJob job) {
+        if(job.cache == null || !Files.exists(job.cache)) {
+            return new SweepCache(job.cacheSize);
+        }
+
+        try {
+            SweepCache cache = SweepCache.load(job.cache, job.cacheSize);
+            System.out.println("Loaded " + cache.size() + " results from " + job.cache + ".");
+            return cache;
+        } catch(IOException | IllegalArgumentException e) {
+            System.out.println("ERROR: Reading the cache failed, starting with an empty cache: " + e.getMessage());
+            return new SweepCache(job.cacheSize);
+        }
+    }
+
+    /**
+     * Prints one row of the sweep table.
+     *
+     * @param point the point of the sweep.
+     * @param result the result of the point, or null if it failed.
+     * @param cached true if the result was found in the cache.
+     * @param error the reason the point failed, or null.
+     */
+    private static void printSweepPoint(SweepPoint point, SweepResult result, boolean cached, RuntimeException error) {
+        LottoSettings settings = point.getSettings();
+        String tickets = point.getStrategy() + " x" + point.getTicketCount();
+        double odds = Math.binomial(settings.maxNumber, settings.numberCount) / point.getTicketCount();
+
+        // Huge games would not fit into the column
+        System.out.printf("%6d %6d %-12s %16s ", settings.maxNumber, settings.numberCount, tickets,
+            String.format(odds < 1e15 ? "%.0f" : "%.3e", odds));
+
+        if(result == null) {
+            System.out.println("ERROR: " + error);
+            return;
+        }
+
+        System.out.printf("%14.1f %14.1f %14.1f %12.2f%s%n",
+            result.getMeanWeeks(settings.numberCount) / WEEKS_IN_A_YEAR,
+            (double) result.getMedianWeeks(settings.numberCount) / WEEKS_IN_A_YEAR,
+            (double) result.get90thPercentileWeeks(settings.numberCount) / WEEKS_IN_A_YEAR,
+            result.getMeanRetries(), cached ? " (cached)" : "");
+    }
+
+    /**
+     * Draws every game in the settings file and prints the results of the fairness tests.
+     *
+     * @param args command line arguments for the random numbers and the threads.
+     * @param draws the amount of draws of each game.
+     */
+    private static void auditFairness(String[] args, long draws) {
+        LottoSettings[] games = LottoSettings.getAllSettings();
+        RandomSource random = getRandomSource(args);
+        if(games == null || random == null) {
+            return;
+        }
+
+        int threads = CommandLine.getInt(args, "threads", 0);
+
+        for (int i = 0; i < games.length; i++) {
+            LottoSettings settings = games[i];
+            System.out.println();
+            System.out.println(settings.name + ": " + draws + " draws of " + settings.numberCount + " numbers from "
+                + settings.maxNumber);
+
+            long start = System.nanoTime();
+            FairnessReport report;
+
+            // Every game gets its own streams, so adding a game does not change the others
+            try {
+                report = new FairnessAudit(settings).audit(draws, random.forStream(i), threads);
+            } catch(InterruptedException e) {
+                System.out.println("ERROR: The audit was interrupted.");
+                return;
+            } catch(IllegalStateException e) {
+                System.out.println("ERROR: " + e.getMessage() + ": " + e.getCause());
+                return;
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Drew the numbers in %.1f seconds (%.0f draws per second).%n", seconds, draws / seconds);
+            System.out.printf("Largest difference of a number from the expected count: %.4f %%%n",
+                report.getMaxDeviation() * 100);
+            System.out.printf("Serial correlation of the first numbers: %.6f%n", report.getSerialCorrelation());
+            System.out.printf("%-20s %14s %8s %10s%n", "Test", "Chi-square", "df", "p-value");
+
+            for (FairnessReport.Test test : report.getTests()) {
+                System.out.printf("%-20s %14.2f %8d %10.4f%n", test.getName(), test.getStatistic(),
+                    test.getDegreesOfFreedom(), test.getPValue());
+            }
+        }
+
+        System.out.println();
+        System.out.println("A p-value below 0.001 in a repeated audit with another seed would suggest a biased draw.");
+    }
+
+    /**
+     * Searches for the set of tickets that most likely gets at least the given amount
+     * of numbers right and prints it in the format of the tickets file.
+     *
+     * The tickets are written to the output of --output, so they can be played with
+     * --tickets. The coverage is checked against every draw with the exact odds.
+     *
+     * @param settings the settings used for the lottery.
+     * @param ticketCount the amount of tickets.
+     * @param args command line arguments for the correct numbers, the time, the random
+     *             numbers, the threads and the output.
+     */
+    private static void optimizeTickets(LottoSettings settings, int ticketCount, String[] args) {
+        int hits = CommandLine.getInt(args, "hits", java.lang.Math.min(3, settings.numberCount));
+        int seconds = CommandLine.getInt(args, "time", DEFAULT_OPTIMIZE_SECONDS);
+        int threads = CommandLine.getInt(args, "threads", 0);
+        TicketOptimizer optimizer;
+
+        try {
+            optimizer = new TicketOptimizer(settings, ticketCount, hits);
+        } catch(IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            return;
+        }
+
+        if(seconds < 1) {
+            System.out.println("ERROR: Invalid time: " + seconds);
+            return;
+        }
+
+        RandomSource random = getRandomSource(args);
+        if(random == null) {
+            return;
+        }
+
+        System.out.println("Searching for " + ticketCount + " tickets with at least " + hits + " right for "
+            + seconds + " seconds...");
+
+        CoverageResult result;
+        TierTable table;
+
+        try {
+            result = optimizer.optimize(random, threads, seconds * 1_000_000_000L);
+
+            int[][] tickets = new int[result.getTicketCount()][];
+            for (int i = 0; i < tickets.length; i++) {
+                tickets[i] = result.getTicket(i);
+            }
+
+            table = ExactOdds.calculate(Syndicate.of(settings, tickets), threads);
+        } catch(InterruptedException e) {
+            System.out.println("ERROR: The search was interrupted.");
+            return;
+        }
+
+        FastWriter output = getOutput(args);
+        if(output == null) {
+            return;
+        }
+
+        output.println("# " + settings.name + ", at least " + hits + " right in " + result.getCovered() + " of "
+            + result.getDrawCount() + " draws");
+        for (int i = 0; i < result.getTicketCount(); i++) {
+            int[] ticket = result.getTicket(i);
+
+            for (int j = 0; j < ticket.length; j++) {
+                output.print(j == 0 ? "" : " ").print(ticket[j]);
+            }
+
+            output.println();
+        }
+        output.close();
+
+        // Tickets played without a plan may share their winning draws
+        double single = GameRegistry.getDefault().getTables(settings).getFastForward().getProbabilityAtLeast(hits);
+        double separate = -java.lang.Math.expm1(ticketCount * java.lang.Math.log1p(-single));
+
+        System.out.printf("Tried %d swaps on %d threads.%n", result.getMoves(), result.getChains());
+        System.out.printf("At least one ticket gets %d right in %d of %d draws: %.6g %%, once every %.2f weeks.%n",
+            hits, result.getCovered(), result.getDrawCount(), result.getProbability() * 100, 1 / result.getProbability());
+        System.out.printf("Independent random tickets would get it %.6g %% of the weeks.%n", separate * 100);
+
+        if(table.getDrawsAtLeast(hits) != result.getCovered()) {
+            System.out.println("ERROR: The exact odds give " + table.getDrawsAtLeast(hits) + " draws.");
+        }
+    }
+
+    /**
+     * Prints the distributions of the weeks to each tier and of the retries.
+     *
+     * @param statistics the statistics of a batch.
+     */
+    private static void printStatistics(RunStatistics statistics) {
+        System.out.println();
+        System.out.printf("%-8s %14s %14s %12s %12s %12s %12s %12s%n",
+            "Correct", "Mean", "Std dev", "Median", "90 %", "99 %", "99.9 %", "Max");
+
+        for (int correct = 1; correct <= statistics.getNumberCount(); correct++) {
+            printHistogram(Integer.toString(correct), statistics.getWeeks(correct));
+        }
+
+        printHistogram("Retries", statistics.getRetries());
+        System.out.println("The weeks are counted in the lifetime where the jackpot was won.");
+    }
+
+    /**
+     * Prints one row of the statistics table.
+     *
+     * @param label the name of the row.
+     * @param histogram the values of the row.
+     */
+    private static void printHistogram(String label, LogHistogram histogram) {
+        System.out.printf("%-8s %14.1f %14.1f %12d %12d %12d %12d %12d%n", label,
+            histogram.getMean(), histogram.getStandardDeviation(),
+            histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+            histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+            histogram.getMax());
+    }
+
+    /**
+     * Loads the tickets played by a syndicate from a file.
+     * 
+     * Returns null if the file cannot be read or contains invalid tickets.
+     * 
+     * @param settings the settings used for the lottery.
+     * @param fileName the name of the file containing one ticket per line.
+     * @return the loaded tickets or null if an error occurred.
+     */
+    private static Syndicate loadSyndicate(LottoSettings settings, String fileName) {
+        try {
+            Syndicate syndicate = Syndicate.load(Paths.get(fileName), settings);
+            System.out.println("Loaded " + syndicate.getTicketCount() + " tickets.");
+
+            return syndicate;
+        } catch(IOException e) {
+            System.out.println("ERROR: Reading the tickets failed: " + e.getMessage());
+        } catch(IllegalArgumentException e) {
+            System.out.println("ERROR: Invalid ticket: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates the random source chosen with the command line options.
+     * 
+     * Prints the algorithm and the seed so that the run can be repeated.
+     * Returns null if the algorithm is not supported.
+     * 
+     * @param args the command line arguments given to the program.
+     * @return the random source or null if an error occurred.
+     */
+    private static RandomSource getRandomSource(String[] args) {
+        String algorithm = CommandLine.getOption(args, "random");
+        if(algorithm == null || algorithm.isEmpty()) {
+            algorithm = RandomSource.DEFAULT_ALGORITHM;
+        }
+
+        long seed = CommandLine.getLong(args, "seed", new SplittableRandom().nextLong());
+
+        try {
+            RandomSource random = RandomSource.create(algorithm, seed);
+            System.out.println("Random numbers: " + algorithm + ", seed " + seed);
+
+            return random;
+        } catch(IllegalArgumentException e) {
+            System.out.println("ERROR: Unknown random algorithm: " + algorithm);
+            System.out.println("Available: " + String.join(", ", RandomSource.getAlgorithms()));
+
+            return null;
+        }
     }
 
     /**
@@ -149,95 +1183,361 @@ public class LottoApp {
     }
 
     /**
-     * Generates random lottery numbers.
+     * Keeps running a lottery until the player wins the jackpot (all numbers correct).
+     * 
+     * Returns the amount of time in years it took to win the jackpot.
      * 
-     * The amount and range of numbers generated depends on the settings.
+     * Every chunk of {@link ParallelSimulator#WEEKS_PER_CHUNK} weeks is drawn with its
+     * own random stream like in {@link ParallelSimulator}, so the lifetime can be
+     * checkpointed and resumed at the start of any chunk.
      * 
-     * @param settings the settings used for the lottery.
-     * @return an array of unique random numbers.
+     * @param syndicate the tickets chosen by the player.
+     * @param random the random source of the lifetime.
+     * @param start the state the lifetime starts from.
+     * @param infoAmount the amount of info the user wishes to see.
+     * @param output the writer used for printing.
+     * @param drawLog the log every draw is recorded into, or null.
+     * @param checkpoints the writer the progress is offered to, or null.
+     * @return the amount of years it took to win the jackpot.
      */
-    private static int[] calculateLotto(LottoSettings settings) {
-        // Generate an array of numbers to choose from
-        int[] availableNumbers = new int[settings.maxNumber];
-        for (int i = 0; i < availableNumbers.length; i++) {
-            availableNumbers[i] = i + 1;
+    private static long playUntilJackpot(Syndicate syndicate, RandomSource random, Checkpoint start, InfoAmount infoAmount,
+            FastWriter output, DrawLogWriter drawLog, CheckpointWriter checkpoints) {
+        LottoSettings settings = syndicate.getSettings();
+        Syndicate.Matcher matcher = syndicate.createMatcher();
+        LottoMachine lottoMachine = null;
+        long[] ticketMasks = new long[Bitmask.wordCount(settings.maxNumber)];
+        long[] milestones = new long[settings.numberCount + 1];
+        long[] resumedTierCounts = start.getTierCounts();
+        int correct = 0;
+        long weeks = start.getWeeks();
+        long years = 0;
+        int target = start.getTarget();
+        SimulationMetrics.Recorder recorder = SimulationMetrics.getDefault().createRecorder(matcher, weeks);
+
+        for (int i = 0; i < milestones.length; i++) {
+            milestones[i] = start.getWeeks(i);
         }
 
-        int[] numbers = new int[settings.numberCount];
+        // The weeks in the log continue from the previous lifetimes
+        long firstWeek = drawLog != null ? drawLog.getRecordCount() : 0;
 
-        for (int i = 0; i < numbers.length; i++) {
-            int randomIndex = Math.getRandom(i, availableNumbers.length - 1);
+        do {
+            if(weeks % ParallelSimulator.WEEKS_PER_CHUNK == 0) {
+                if(weeks > start.getWeeks()) {
+                    recorder.flush(weeks);
+                }
+
+                if(checkpoints != null && weeks > start.getWeeks()) {
+                    long[] tierCounts = Arrays.add(resumedTierCounts, matcher.getTierCounts());
+                    checkpoints.offer(start.withProgress(weeks, milestones, tierCounts));
+                }
 
-            numbers[i] = availableNumbers[randomIndex];
+                lottoMachine = new LottoMachine(settings, random.forStream(weeks / ParallelSimulator.WEEKS_PER_CHUNK));
+            }
+
+            lottoMachine.draw();
+
+            weeks++;
 
-            // Swap the numbers to prevent duplicates
-            if(randomIndex != i) {
-                int temp = availableNumbers[i];
-                availableNumbers[i] = availableNumbers[randomIndex];
-                availableNumbers[randomIndex] = temp;
+            if(drawLog != null) {
+                drawLog.write(firstWeek + weeks, lottoMachine.getDrawMasks());
             }
+
+            // Get the amount of numbers that were correct
+            correct = matcher.match(lottoMachine);
+
+            if(infoAmount == InfoAmount.EVERYWEEK) {
+                // Print straight from the masks so that nothing is allocated
+                output.print("User lotto:\t").printNumbers(syndicate.getTicketMasks(matcher.getBestTicket(), ticketMasks), 2);
+                output.print("Random lotto:\t").printNumbers(lottoMachine.getDrawMasks(), 2);
+
+                output.print("You got ").print(correct).println(" numbers right.");
+            }
+
+            while (correct >= target) {
+                if(infoAmount == InfoAmount.RESULTS) {
+                    printLottoNumbers(lottoMachine.getDrawnNumbers(), syndicate.getTicket(matcher.getBestTicket()), output);
+                }
+
+                milestones[target] = weeks;
+                recorder.milestone(target, weeks);
+                years = printMilestone(target, weeks, output);
+                target++;
+            }
+        } while (correct != settings.numberCount);
+
+        recorder.flush(weeks);
+        output.println("You won!");
+
+        if(syndicate.getTicketCount() > 1) {
+            printTierCounts(Arrays.add(resumedTierCounts, matcher.getTierCounts()), output);
         }
 
-        return numbers;
+        return years;
     }
 
     /**
-     * Keeps running a lottery until the player wins the jackpot (all numbers correct).
+     * Keeps running a lottery in a pipeline until the player wins the jackpot.
      * 
-     * Returns the amount of time in years it took to win the jackpot.
+     * Prints the same text as {@link #playUntilJackpot(Syndicate, RandomSource, Checkpoint,
+     * InfoAmount, FastWriter, DrawLogWriter, CheckpointWriter)}, but on this thread while
+     * the pipeline keeps drawing and matching the next weeks.
      * 
-     * @param settings the settings used for the lottery.
-     * @param userNumbers the numbers chosen by the player.
+     * @param pipeline the pipeline for the tickets.
+     * @param random the random source of the lifetime.
+     * @param start the state the lifetime starts from.
      * @param infoAmount the amount of info the user wishes to see.
+     * @param output the writer used for printing.
+     * @param drawLog the log every draw is recorded into, or null.
+     * @param checkpoints the writer the progress is offered to, or null.
      * @return the amount of years it took to win the jackpot.
      */
-    private static long playUntilJackpot(LottoSettings settings, int[] userNumbers, InfoAmount infoAmount) {
-        int correct = 0;
-        long weeks = 0;
-        long years = 0;
-        int target = 1;
+    private static long playPipelined(PipelinedSimulator pipeline, RandomSource random, Checkpoint start,
+            InfoAmount infoAmount, FastWriter output, DrawLogWriter drawLog, CheckpointWriter checkpoints) {
+        Syndicate syndicate = start.getSyndicate();
+        long[] ticketMasks = new long[Bitmask.wordCount(syndicate.getSettings().maxNumber)];
 
-        do {
-            int[] lottoNumbers = calculateLotto(settings);
-            
-            // Sort the numbers
-            lottoNumbers = Arrays.sort(lottoNumbers);
-            userNumbers = Arrays.sort(userNumbers);
+        PipelinedSimulator.Reporter reporter = new PipelinedSimulator.Reporter() {
+            @Override
+            public void week(long week, int correct, int bestTicket, long[] drawMasks) {
+                output.print("User lotto:\t").printNumbers(syndicate.getTicketMasks(bestTicket, ticketMasks), 2);
+                output.print("Random lotto:\t").printNumbers(drawMasks, 2);
 
-            weeks++;
+                output.print("You got ").print(correct).println(" numbers right.");
+            }
 
-            // Get the amount of numbers that were correct
-            correct = Arrays.countSameValues(lottoNumbers, userNumbers);
+            @Override
+            public void milestone(int correct, long week, int bestTicket, long[] drawMasks) {
+                if(infoAmount == InfoAmount.RESULTS) {
+                    printLottoNumbers(Bitmask.toArray(drawMasks), syndicate.getTicket(bestTicket), output);
+                }
 
-            if(infoAmount == InfoAmount.EVERYWEEK) {
-                printLottoNumbers(lottoNumbers, userNumbers);
+                printMilestone(correct, week, output);
+            }
+        };
+
+        JackpotResult result = pipeline.playUntilJackpot(random, start, infoAmount == InfoAmount.EVERYWEEK, reporter,
+            drawLog, checkpoints);
+
+        output.println("You won!");
+
+        if(syndicate.getTicketCount() > 1) {
+            printTierCounts(pipeline.getTierCounts(), output);
+        }
+
+        return result.getJackpotWeeks() / WEEKS_IN_A_YEAR;
+    }
 
-                System.out.println("You got " + correct + " numbers right.");
+    /**
+     * Prints the result of playing until the jackpot the same way as
+     * when playing week by week.
+     * 
+     * @param result the first week for each amount of correct numbers.
+     * @param syndicate the tickets chosen by the player.
+     * @param infoAmount the amount of info the user wishes to see.
+     * @param output the writer used for printing.
+     * @return the amount of years it took to win the jackpot.
+     */
+    private static long printResult(JackpotResult result, Syndicate syndicate, InfoAmount infoAmount, FastWriter output) {
+        long years = 0;
+
+        for (int target = 1; target <= syndicate.getSettings().numberCount; target++) {
+            if(infoAmount == InfoAmount.RESULTS) {
+                printLottoNumbers(result.getWinningNumbers(target), syndicate.getTicket(result.getWinningTicket(target)), output);
             }
 
-            while (correct >= target) {
-                if(infoAmount == InfoAmount.RESULTS) {
-                    printLottoNumbers(lottoNumbers, userNumbers);
-                }
+            years = printMilestone(target, result.getWeeks(target), output);
+        }
 
-                years = weeks / WEEKS_IN_A_YEAR;
+        output.println("You won!");
 
-                String yearsStr = years == 1 ? "year" : "years";
-                System.out.print("Got " + target + " right! Took " + years + " " + yearsStr);
+        return years;
+    }
 
-                // Print the weeks if it took less than a year to win
-                if(years == 0) {
-                    String weeksStr = weeks == 1 ? "week" : "weeks";
-                    System.out.println(" ("+ weeks + " " + weeksStr + ")");
-                } else {
-                    System.out.println();
-                }
+    /**
+     * Compares the weeks to each amount of correct numbers given by fast forwarding
+     * with the weeks given by playing week by week.
+     * 
+     * Both are compared with the expected value 1 / P(at least k correct), and with
+     * each other using the Kolmogorov-Smirnov test at the 1% significance level.
+     * 
+     * @param syndicate the ticket chosen by the player.
+     * @param random the random source for the lifetimes.
+     * @param lifetimeCount how many lifetimes are played with both.
+     * @param threads the amount of threads used for playing week by week.
+     */
+    private static void verifyFastForward(Syndicate syndicate, RandomSource random, int lifetimeCount, int threads) {
+        LottoSettings settings = syndicate.getSettings();
+        FastForward fastForward = GameRegistry.getDefault().getTables(settings).getFastForward();
+        ParallelSimulator simulator = new ParallelSimulator(syndicate, threads);
 
-                target++;
+        long[][] fastWeeks = new long[settings.numberCount + 1][lifetimeCount];
+        long[][] slowWeeks = new long[settings.numberCount + 1][lifetimeCount];
+
+        System.out.println("Playing " + lifetimeCount + " lifetimes both ways...");
+
+        for (int i = 0; i < lifetimeCount; i++) {
+            // Separate streams so that the two samples are independent
+            JackpotResult fast = fastForward.playUntilJackpot(random.forStream(2L * i), null);
+            JackpotResult slow = simulator.playUntilJackpot(random.forStream(2L * i + 1));
+
+            for (int correct = 1; correct <= settings.numberCount; correct++) {
+                fastWeeks[correct][i] = fast.getWeeks(correct);
+                slowWeeks[correct][i] = slow.getWeeks(correct);
             }
-        } while (correct != settings.numberCount);
+        }
+
+        simulator.shutdown();
+
+        double criticalValue = 1.63 * java.lang.Math.sqrt(2.0 / lifetimeCount);
+
+        System.out.println("Correct\tExpected\tFast\tWeekly\tKS\tResult");
+        for (int correct = 1; correct <= settings.numberCount; correct++) {
+            double expected = 1 / fastForward.getProbabilityAtLeast(correct);
+            double distance = Math.kolmogorovSmirnov(fastWeeks[correct], slowWeeks[correct]);
+
+            System.out.printf("%d\t%.1f\t%.1f\t%.1f\t%.4f\t%s%n",
+                correct, expected, mean(fastWeeks[correct]), mean(slowWeeks[correct]),
+                distance, distance <= criticalValue ? "OK" : "DIFFERENT");
+        }
+    }
+
+    /**
+     * Prints the exact odds of the tickets calculated from every possible draw.
+     *
+     * @param syndicate the tickets.
+     * @param threads the amount of threads, 0 for one per processor core.
+     */
+    private static void printExactOdds(Syndicate syndicate, int threads) {
+        long start = System.nanoTime();
+        TierTable table;
+
+        try {
+            table = ExactOdds.calculate(syndicate, threads);
+        } catch(InterruptedException e) {
+            System.out.println("ERROR: The calculation was interrupted.");
+            return;
+        } catch(ArithmeticException e) {
+            System.out.println("ERROR: " + syndicate.getSettings().name + " has too many draws to go through.");
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Went through all %d draws in %.1f seconds.%n", table.getDrawCount(), seconds);
+        System.out.println("Correct\tDraws\tAt least\tWeeks on average");
+
+        for (int correct = table.getNumberCount(); correct >= 1; correct--) {
+            System.out.printf("%d\t%d\t%d\t%.1f%n", correct, table.getDraws(correct),
+                table.getDrawsAtLeast(correct), 1 / table.getProbabilityAtLeast(correct));
+        }
+
+        if(syndicate.getTicketCount() > 1) {
+            printExactTierCounts(table, syndicate.getTicketCount());
+        }
+    }
+
+    /**
+     * Estimates the probability of each amount of correct numbers with importance
+     * sampling and prints the estimates with their 95% confidence intervals.
+     *
+     * @param syndicate the tickets chosen by the player.
+     * @param random the random source of the samples.
+     * @param samples the amount of draws.
+     * @param threads the amount of threads, 0 for one per processor core.
+     */
+    private static void printEstimate(Syndicate syndicate, RandomSource random, long samples, int threads) {
+        if(samples <= 0) {
+            System.out.println("ERROR: Invalid amount of samples: " + samples);
+            return;
+        }
 
-        System.out.println("You won!");
+        long start = System.nanoTime();
+        TierEstimate estimate;
+
+        try {
+            estimate = new RareTierEstimator(syndicate).estimate(samples, random, threads);
+        } catch(InterruptedException e) {
+            System.out.println("ERROR: The estimation was interrupted.");
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Sampled %d biased draws in %.1f seconds.%n", estimate.getSampleCount(), seconds);
+        System.out.println("Correct\tProbability\t95% interval\tWeeks on average\tVariance reduction");
+
+        for (int correct = estimate.getNumberCount(); correct >= 1; correct--) {
+            System.out.printf("%d\t%.4g\t%.4g - %.4g\t%.1f\t%.3g%n", correct, estimate.getProbability(correct),
+                estimate.getLowerBound(correct), estimate.getUpperBound(correct),
+                1 / estimate.getProbabilityAtLeast(correct), estimate.getVarianceReduction(correct));
+        }
+
+        int jackpot = estimate.getNumberCount();
+        System.out.printf("Plain simulation would need about %.3g draws for the same accuracy of the jackpot.%n",
+            samples * estimate.getVarianceReduction(jackpot));
+    }
+
+    /**
+     * Prints how many tickets get each amount of numbers right over all the draws.
+     *
+     * @param table the exact tier table.
+     * @param ticketCount the amount of tickets played.
+     */
+    private static void printExactTierCounts(TierTable table, int ticketCount) {
+        System.out.println("Tickets with each amount right over all the draws (" + ticketCount + " tickets per draw):");
+
+        for (int correct = table.getNumberCount(); correct >= 0; correct--) {
+            System.out.println(correct + " right: " + table.getTickets(correct));
+        }
+    }
+
+    /**
+     * Calculates the arithmetic mean of the values.
+     *
+     * @param values the values.
+     * @return the mean.
+     */
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+        }
+
+        return sum / values.length;
+    }
+
+    /**
+     * Prints how many tickets got each amount of numbers right.
+     * 
+     * @param tierCounts the ticket counts indexed by the amount of correct numbers.
+     * @param output the writer used for printing.
+     */
+    private static void printTierCounts(long[] tierCounts, FastWriter output) {
+        for (int correct = tierCounts.length - 1; correct >= 1; correct--) {
+            output.print("Tickets with ").print(correct).print(" right: ").print(tierCounts[correct]).println();
+        }
+    }
+
+    /**
+     * Prints how long it took to get the given amount of numbers right.
+     * 
+     * @param target the amount of correct numbers.
+     * @param weeks the amount of weeks it took.
+     * @param output the writer used for printing.
+     * @return the amount of years it took.
+     */
+    private static long printMilestone(int target, long weeks, FastWriter output) {
+        long years = weeks / WEEKS_IN_A_YEAR;
+
+        output.print("Got ").print(target).print(" right! Took ").print(years).print(years == 1 ? " year" : " years");
+
+        // Print the weeks if it took less than a year to win
+        if(years == 0) {
+            output.print(" (").print(weeks).print(weeks == 1 ? " week" : " weeks").println(")");
+        } else {
+            output.println();
+        }
 
         return years;
     }
@@ -262,19 +1562,14 @@ public class LottoApp {
     }
 
     /**
-     * Prints the winning numbers and the user's numbers into the console.
+     * Prints the winning numbers and the user's numbers.
      * 
      * @param lottoNumbers the winning lottery numbers.
      * @param userNumbers the numbers chosen by the user.
+     * @param output the writer used for printing.
      */
-    private static void printLottoNumbers(int[] lottoNumbers, int[] userNumbers) {
-        String[] userLotto = Arrays.padLeft(userNumbers, '0', 2);
-        String[] randomLotto = Arrays.padLeft(lottoNumbers, '0', 2);
-
-        System.out.print("User lotto:\t");
-        Console.printArray(userLotto);
-
-        System.out.print("Random lotto:\t");
-        Console.printArray(randomLotto);
+    private static void printLottoNumbers(int[] lottoNumbers, int[] userNumbers, FastWriter output) {
+        output.print("User lotto:\t").printNumbers(userNumbers, 2);
+        output.print("Random lotto:\t").printNumbers(lottoNumbers, 2);
     }
 }
\ No newline at end of file
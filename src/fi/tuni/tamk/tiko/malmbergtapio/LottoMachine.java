@@ -0,0 +1,177 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+/**
+ * Draws lottery numbers and stores the latest draw as a bitmask.
+ *
+ * The machine reuses its arrays between draws, so drawing a week does not
+ * allocate any memory. A machine is not thread safe; each thread should use
+ * its own machine.
+ *
+ * @author Tapio Malmberg
+ */
+public class LottoMachine {
+    private final LottoSettings settings;
+    private final RandomSource random;
+    private final int[] availableNumbers;
+    private final long[] drawMasks;
+
+    /**
+     * Creates a lottery machine for the given settings.
+     *
+     * @param settings the settings used for the lottery.
+     */
+    public LottoMachine(LottoSettings settings) {
+        this(settings, RandomSource.create(RandomSource.DEFAULT_ALGORITHM));
+    }
+
+    /**
+     * Creates a lottery machine that draws the numbers using the given random source.
+     *
+     * @param settings the settings used for the lottery.
+     * @param random the random source used only by this machine.
+     */
+    public LottoMachine(LottoSettings settings, RandomSource random) {
+        this.settings = settings;
+        this.random = random;
+        this.drawMasks = new long[Bitmask.wordCount(settings.maxNumber)];
+
+        // The numbers to choose from, which works for any size of game
+        this.availableNumbers = Arrays.range(1, settings.maxNumber);
+    }
+
+    /**
+     * Gets the settings used by the machine.
+     *
+     * @return the settings used for the lottery.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Draws the numbers for a new week.
+     *
+     * The drawn numbers are moved to the start of the array of available numbers
+     * with a partial Fisher-Yates shuffle. The array is not reset between draws
+     * because any permutation of the numbers is a valid starting point.
+     */
+    public void draw() {
+        random.sample(availableNumbers, settings.numberCount);
+
+        if(drawMasks.length == 1) {
+            long mask = 0;
+
+            for (int i = 0; i < settings.numberCount; i++) {
+                mask |= Bitmask.bit(availableNumbers[i]);
+            }
+
+            drawMasks[0] = mask;
+        } else {
+            java.util.Arrays.fill(drawMasks, 0);
+
+            for (int i = 0; i < settings.numberCount; i++) {
+                Bitmask.set(drawMasks, availableNumbers[i]);
+            }
+        }
+    }
+
+    /**
+     * Keeps drawing weeks until a ticket of the syndicate wins the jackpot or
+     * the given amount of weeks has been drawn.
+     *
+     * Nothing is printed, the milestones are returned instead.
+     *
+     * @param matcher the matcher for the tickets played every week.
+     * @param maxWeeks the last week that is played.
+     * @return the first week for each amount of correct numbers, or null if
+     *         the jackpot was not won within maxWeeks.
+     */
+    public JackpotResult playUntilJackpot(Syndicate.Matcher matcher, long maxWeeks) {
+        JackpotResult result = new JackpotResult(settings);
+        long week = 0;
+        int target = 1;
+        int correct;
+
+        do {
+            if(week == maxWeeks) {
+                return null;
+            }
+
+            draw();
+            week++;
+
+            correct = matcher.match(this);
+
+            while (correct >= target) {
+                result.record(target, week, getDrawnNumbers(), matcher.getBestTicket());
+                target++;
+            }
+        } while (correct != settings.numberCount);
+
+        return result;
+    }
+
+    /**
+     * Counts how many numbers of a ticket match the latest draw.
+     *
+     * @param ticket the numbers chosen by the player as a mask created with
+     *               {@link Bitmask#toMasks(int[], int)}.
+     * @return the number of correct numbers.
+     */
+    public int countMatches(long[] ticket) {
+        if(drawMasks.length == 1) {
+            return Long.bitCount(drawMasks[0] & ticket[0]);
+        }
+
+        return Bitmask.countMatches(drawMasks, ticket);
+    }
+
+    /**
+     * Gets the latest draw as a mask.
+     *
+     * The returned array is reused by the next draw.
+     *
+     * @return the mask of the latest draw.
+     */
+    public long[] getDrawMasks() {
+        return drawMasks;
+    }
+
+    /**
+     * Gets the numbers of the latest draw.
+     *
+     * @return the drawn numbers in ascending order.
+     */
+    public int[] getDrawnNumbers() {
+        return Bitmask.toArray(drawMasks);
+    }
+
+    /**
+     * Gets a number of the latest draw in the order the numbers were drawn,
+     * without creating an array.
+     *
+     * @param position the position of the number in the draw, starting from 0.
+     * @return the number drawn at that position.
+     */
+    public int getDrawnNumber(int position) {
+        return availableNumbers[position];
+    }
+
+    /**
+     * Draws the numbers for a new week and returns them in the order they were drawn.
+     *
+     * @return an array of unique random numbers.
+     */
+    public int[] drawNumbers() {
+        draw();
+
+        int[] numbers = new int[settings.numberCount];
+        System.arraycopy(availableNumbers, 0, numbers, 0, numbers.length);
+
+        return numbers;
+    }
+}
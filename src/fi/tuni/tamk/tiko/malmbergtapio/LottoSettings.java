@@ -1,13 +1,22 @@
 package fi.tuni.tamk.tiko.malmbergtapio;
 
-import java.nio.file.*;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.nio.charset.*;
 
 /**
  * Immutable class for storing the settings for a lottery game.
  * 
- * Bonus numbers are not supported for simplicity.
+ * A game can have a second pool of bonus numbers that are drawn separately from
+ * the main numbers, like the Euro numbers of Eurojackpot. The prizes are given by
+ * tiers of correct main and bonus numbers, starting from the jackpot. Only
+ * {@link MultiPoolMachine} and {@link FastForward} play the bonus numbers;
+ * the other engines play only the main numbers.
  */
 public class LottoSettings {
     /**
@@ -16,61 +25,239 @@ public class LottoSettings {
     public static final LottoSettings FinnishLotto = new LottoSettings("Finnish Lotto", 39, 7);
     
     /**
-     * Settings for Viking lotto (6 numbers, 1-48)
+     * Settings for Viking lotto (6 numbers, 1-48, and 1 Viking number, 1-5)
      */
-    public static final LottoSettings Vikinglotto = new LottoSettings("Vikinglotto", 48, 6);
+    public static final LottoSettings Vikinglotto = new LottoSettings("Vikinglotto", 48, 6, 5, 1,
+        parseTiers("6+1, 6+0, 5+1, 5+0, 4+1, 4+0, 3+1, 3+0"));
 
     /**
-     * Settings for Eurojackpot (5 numbers, 1-50)
+     * Settings for Eurojackpot (5 numbers, 1-50, and 2 Euro numbers, 1-12)
      */
-    public static final LottoSettings Eurojackpot = new LottoSettings("Eurojackpot", 50, 5);
-
-    private static LottoSettings[] allSettings;
-
-    private static void loadAllSettings() {
-        List<String> allLines = null;
-
-        try {
-            allLines = Files.readAllLines(Paths.get("LottoSettings.txt"), StandardCharsets.UTF_8);
-
-            allSettings = new LottoSettings[allLines.size()];
-            for (int i = 0; i < allSettings.length; i++) {
-                String line = allLines.get(i);
-                String[] properties = line.split(";");
+    public static final LottoSettings Eurojackpot = new LottoSettings("Eurojackpot", 50, 5, 12, 2,
+        parseTiers("5+2, 5+1, 5+0, 4+2, 4+1, 4+0, 3+2, 2+2, 3+1, 3+0, 1+2, 2+1"));
 
-                String name = properties[0];
-                int maxNumber = Integer.parseInt(properties[1]);
-                int numberCount = Integer.parseInt(properties[2]);
+    /**
+     * Gets all the settings for the available lotto game types.
+     * 
+     * The games are loaded from LottoSettings.txt by {@link GameRegistry}.
+     * 
+     * @return an array with all the available settings, or null if loading the file failed.
+     */
+    public static LottoSettings[] getAllSettings() {
+        GameRegistry.Snapshot snapshot = GameRegistry.getDefault().getSnapshot();
 
-                allSettings[i] = new LottoSettings(name, maxNumber, numberCount);
-            }
-        }
-        catch (Exception e) {
-            System.out.println("ERROR: Loading the lotto settings file failed!");
-            //e.printStackTrace();
+        if(snapshot.getError() != null) {
+            System.out.println("ERROR: Loading the lotto settings file failed! " + snapshot.getError());
+            return null;
         }
+
+        return snapshot.getGames().toArray(new LottoSettings[0]);
     }
 
     /**
-     * Gets all the settings for the available lotto game types.
+     * Finds the settings for a game by name.
      * 
-     * @return an array with all the available settings.
+     * The games in the settings file are searched, or the built-in games
+     * if the file could not be loaded.
+     * 
+     * @param name the name of the game, not case sensitive.
+     * @return the settings for the game, or null if the game was not found.
      */
-    public static LottoSettings[] getAllSettings() {
-        if(allSettings == null) {
-            loadAllSettings();
+    public static LottoSettings getByName(String name) {
+        return GameRegistry.getDefault().getSnapshot().getByName(name);
+    }
+
+    /**
+     * Parses a list of prize tiers separated by commas, like 5+2, 5+1, 4+2.
+     *
+     * @param text the tiers.
+     * @return the tiers in the order they were given.
+     * @throws IllegalArgumentException if a tier is not valid.
+     */
+    public static PrizeTier[] parseTiers(String text) {
+        String[] values = text.trim().split("\\s*,\\s*");
+        PrizeTier[] tiers = new PrizeTier[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            tiers[i] = PrizeTier.parse(values[i]);
         }
 
-        return allSettings;
+        return tiers;
     }
 
     public final String name;
     public final int maxNumber;
     public final int numberCount;
+    public final int bonusMaxNumber;
+    public final int bonusCount;
+    private final PrizeTier[] tiers;
 
+    /**
+     * Creates the settings for a game without bonus numbers. Every amount of
+     * correct numbers is a prize tier.
+     *
+     * @param name the name of the game.
+     * @param maxNumber the largest number.
+     * @param numberCount how many numbers are drawn.
+     */
     public LottoSettings(String name, int maxNumber, int numberCount) {
+        this(name, maxNumber, numberCount, 0, 0, null);
+    }
+
+    /**
+     * Creates the settings for a game with bonus numbers.
+     *
+     * @param name the name of the game.
+     * @param maxNumber the largest main number.
+     * @param numberCount how many main numbers are drawn.
+     * @param bonusMaxNumber the largest bonus number, 0 if there are no bonus numbers.
+     * @param bonusCount how many bonus numbers are drawn.
+     * @param tiers the prize tiers starting from the jackpot, or null for every
+     *              combination of at least one correct main number.
+     * @throws IllegalArgumentException if the bonus numbers or the tiers are not valid.
+     */
+    public LottoSettings(String name, int maxNumber, int numberCount, int bonusMaxNumber, int bonusCount,
+            PrizeTier[] tiers) {
+        if(bonusCount < 0 || bonusCount > bonusMaxNumber || (bonusMaxNumber > 0 && bonusCount == 0)) {
+            throw new IllegalArgumentException("Cannot draw " + bonusCount + " bonus numbers out of " + bonusMaxNumber);
+        }
+
         this.name = name;
         this.maxNumber = maxNumber;
         this.numberCount = numberCount;
+        this.bonusMaxNumber = bonusMaxNumber;
+        this.bonusCount = bonusCount;
+        this.tiers = tiers != null ? tiers.clone() : createTiers(numberCount, bonusCount);
+
+        List<PrizeTier> seen = new ArrayList<>();
+        for (PrizeTier tier : this.tiers) {
+            if(tier.mainHits < 0 || tier.mainHits > numberCount || tier.bonusHits < 0 || tier.bonusHits > bonusCount) {
+                throw new IllegalArgumentException("Invalid prize tier: " + tier);
+            } else if(seen.contains(tier)) {
+                throw new IllegalArgumentException("Duplicate prize tier: " + tier);
+            }
+
+            seen.add(tier);
+        }
+
+        if(this.tiers.length == 0 || !this.tiers[0].equals(new PrizeTier(numberCount, bonusCount))) {
+            throw new IllegalArgumentException("The first prize tier must be " + numberCount + "+" + bonusCount);
+        }
+    }
+
+    private static PrizeTier[] createTiers(int numberCount, int bonusCount) {
+        List<PrizeTier> tiers = new ArrayList<>();
+
+        for (int main = numberCount; main >= 1; main--) {
+            for (int bonus = bonusCount; bonus >= 0; bonus--) {
+                tiers.add(new PrizeTier(main, bonus));
+            }
+        }
+
+        return tiers.toArray(new PrizeTier[0]);
+    }
+
+    /**
+     * Writes the settings, including the bonus numbers and the prize tiers, so that
+     * they can be read back with {@link #read(DataInput)}.
+     *
+     * @param output the output the settings are written to.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeUTF(name);
+        output.writeInt(maxNumber);
+        output.writeInt(numberCount);
+        output.writeInt(bonusMaxNumber);
+        output.writeInt(bonusCount);
+        output.writeInt(tiers.length);
+
+        for (PrizeTier tier : tiers) {
+            output.writeInt(tier.mainHits);
+            output.writeInt(tier.bonusHits);
+        }
+    }
+
+    /**
+     * Reads settings written with {@link #write(DataOutput)}.
+     *
+     * @param input the input the settings are read from.
+     * @return the settings, equal to the settings that were written.
+     * @throws IOException if reading fails.
+     * @throws IllegalArgumentException if the settings are not valid.
+     */
+    public static LottoSettings read(DataInput input) throws IOException {
+        String name = input.readUTF();
+        int maxNumber = input.readInt();
+        int numberCount = input.readInt();
+        int bonusMaxNumber = input.readInt();
+        int bonusCount = input.readInt();
+        PrizeTier[] tiers = new PrizeTier[input.readInt()];
+
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new PrizeTier(input.readInt(), input.readInt());
+        }
+
+        return new LottoSettings(name, maxNumber, numberCount, bonusMaxNumber, bonusCount, tiers);
+    }
+
+    /**
+     * Tells if the game has bonus numbers.
+     *
+     * @return true if bonus numbers are drawn.
+     */
+    public boolean hasBonusNumbers() {
+        return bonusCount > 0;
+    }
+
+    /**
+     * Gets the amount of prize tiers.
+     *
+     * @return the amount of tiers.
+     */
+    public int getTierCount() {
+        return tiers.length;
+    }
+
+    /**
+     * Gets a prize tier. The first tier is the jackpot.
+     *
+     * @param index the index of the tier.
+     * @return the tier.
+     */
+    public PrizeTier getTier(int index) {
+        return tiers[index];
+    }
+
+    /**
+     * Gets the probability that a single ticket wins exactly a prize tier in a week.
+     *
+     * The main numbers and the bonus numbers are drawn independently.
+     *
+     * @param index the index of the tier.
+     * @return the probability.
+     */
+    public double getTierProbability(int index) {
+        PrizeTier tier = tiers[index];
+        double bonus = hasBonusNumbers() ? Math.hypergeometric(bonusMaxNumber, bonusCount, bonusCount, tier.bonusHits) : 1;
+
+        return Math.hypergeometric(maxNumber, numberCount, numberCount, tier.mainHits) * bonus;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof LottoSettings)) {
+            return false;
+        }
+
+        LottoSettings settings = (LottoSettings) other;
+        return name.equals(settings.name) && maxNumber == settings.maxNumber && numberCount == settings.numberCount
+            && bonusMaxNumber == settings.bonusMaxNumber && bonusCount == settings.bonusCount
+            && Arrays.equals(tiers, settings.tiers);
+    }
+
+    @Override
+    public int hashCode() {
+        return (((name.hashCode() * 31 + maxNumber) * 31 + numberCount) * 31 + bonusMaxNumber) * 31 + bonusCount;
     }
 }
\ No newline at end of file
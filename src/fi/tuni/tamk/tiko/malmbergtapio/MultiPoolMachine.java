@@ -0,0 +1,166 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+/**
+ * Draws and matches games with bonus numbers, keeping each draw and each ticket
+ * in a single long.
+ *
+ * The main number n is stored in bit n - 1 and the bonus number b in bit
+ * maxNumber + b - 1, so both pools of a draw are compared with a ticket with one
+ * AND, and the correct numbers of each pool are counted with one bit count. A table
+ * from the amounts of correct main and bonus numbers to the prize tier replaces any
+ * comparisons, so a week takes the same work however many tiers the game has. The
+ * machine reuses its arrays between draws, so playing does not allocate any memory.
+ *
+ * A machine is not thread safe; each thread should use its own machine.
+ *
+ * @author Tapio Malmberg
+ */
+public class MultiPoolMachine {
+    private final LottoSettings settings;
+    private final RandomSource random;
+    private final int[] mainNumbers;
+    private final int[] bonusNumbers;
+    private final long mainMask;
+    private final int[] tierByHits;
+
+    /**
+     * Creates a machine for a game.
+     *
+     * @param settings the settings of the game.
+     * @param random the random source used only by this machine.
+     * @throws IllegalArgumentException if the numbers of both pools do not fit into a long.
+     */
+    public MultiPoolMachine(LottoSettings settings, RandomSource random) {
+        if(settings.maxNumber + settings.bonusMaxNumber > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " main and bonus numbers are supported");
+        }
+
+        this.settings = settings;
+        this.random = random;
+        this.mainNumbers = Arrays.range(1, settings.maxNumber);
+        this.bonusNumbers = Arrays.range(1, settings.bonusMaxNumber);
+        this.mainMask = settings.maxNumber == Long.SIZE ? -1L : (1L << settings.maxNumber) - 1;
+        this.tierByHits = new int[(settings.numberCount + 1) * (settings.bonusCount + 1)];
+
+        java.util.Arrays.fill(tierByHits, -1);
+        for (int tier = 0; tier < settings.getTierCount(); tier++) {
+            PrizeTier prizeTier = settings.getTier(tier);
+            tierByHits[prizeTier.mainHits * (settings.bonusCount + 1) + prizeTier.bonusHits] = tier;
+        }
+    }
+
+    /**
+     * Packs a ticket into a long.
+     *
+     * @param settings the settings of the game.
+     * @param numbers the main numbers of the ticket.
+     * @param bonusNumbers the bonus numbers of the ticket.
+     * @return the ticket.
+     * @throws IllegalArgumentException if the numbers are not valid for the game.
+     */
+    public static long pack(LottoSettings settings, int[] numbers, int[] bonusNumbers) {
+        if(settings.maxNumber + settings.bonusMaxNumber > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " main and bonus numbers are supported");
+        } else if(numbers.length != settings.numberCount) {
+            throw new IllegalArgumentException(settings.numberCount + " numbers needed");
+        } else if(bonusNumbers.length != settings.bonusCount) {
+            throw new IllegalArgumentException(settings.bonusCount + " bonus numbers needed");
+        }
+
+        long ticket = 0;
+
+        for (int number : numbers) {
+            if(number < 1 || number > settings.maxNumber) {
+                throw new IllegalArgumentException("Invalid number: " + number);
+            } else if((ticket & (1L << (number - 1))) != 0) {
+                throw new IllegalArgumentException("Duplicate number: " + number);
+            }
+
+            ticket |= 1L << (number - 1);
+        }
+
+        for (int number : bonusNumbers) {
+            long bit = 1L << (settings.maxNumber + number - 1);
+
+            if(number < 1 || number > settings.bonusMaxNumber) {
+                throw new IllegalArgumentException("Invalid bonus number: " + number);
+            } else if((ticket & bit) != 0) {
+                throw new IllegalArgumentException("Duplicate bonus number: " + number);
+            }
+
+            ticket |= bit;
+        }
+
+        return ticket;
+    }
+
+    /**
+     * Draws the main and bonus numbers of a new week.
+     *
+     * @return the draw packed like the tickets.
+     */
+    public long draw() {
+        random.sample(mainNumbers, settings.numberCount);
+        random.sample(bonusNumbers, settings.bonusCount);
+
+        long draw = 0;
+
+        for (int i = 0; i < settings.numberCount; i++) {
+            draw |= 1L << (mainNumbers[i] - 1);
+        }
+
+        for (int i = 0; i < settings.bonusCount; i++) {
+            draw |= 1L << (settings.maxNumber + bonusNumbers[i] - 1);
+        }
+
+        return draw;
+    }
+
+    /**
+     * Finds the prize tier a ticket wins with a draw.
+     *
+     * @param draw the draw.
+     * @param ticket the ticket.
+     * @return the index of the tier in the settings, or -1 if the ticket wins nothing.
+     */
+    public int getTier(long draw, long ticket) {
+        long hits = draw & ticket;
+        int main = Long.bitCount(hits & mainMask);
+        int bonus = Long.bitCount(hits & ~mainMask);
+
+        return tierByHits[main * (settings.bonusCount + 1) + bonus];
+    }
+
+    /**
+     * Plays a ticket week by week until the jackpot or the given amount of weeks.
+     *
+     * @param ticket the ticket packed with {@link #pack(LottoSettings, int[], int[])}.
+     * @param maxWeeks the last week that is played.
+     * @return the first week and the amount of wins of each tier.
+     */
+    public TierResult playUntilJackpot(long ticket, long maxWeeks) {
+        long[] firstWeeks = new long[settings.getTierCount()];
+        long[] counts = new long[settings.getTierCount()];
+
+        for (long week = 1; week <= maxWeeks; week++) {
+            int tier = getTier(draw(), ticket);
+
+            if(tier >= 0) {
+                counts[tier]++;
+
+                if(firstWeeks[tier] == 0) {
+                    firstWeeks[tier] = week;
+                }
+
+                if(tier == 0) {
+                    return new TierResult(settings, firstWeeks, counts, week);
+                }
+            }
+        }
+
+        return new TierResult(settings, firstWeeks, counts, maxWeeks);
+    }
+}
@@ -0,0 +1,193 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays a lottery until the jackpot using all the available processor cores.
+ *
+ * The weeks are split into chunks of {@link #WEEKS_PER_CHUNK} weeks. Each chunk
+ * is drawn with its own random stream that is numbered with the chunk index,
+ * so the result only depends on the seed and not on the amount of threads.
+ * The first week with each amount of correct numbers is the earliest week found
+ * in any of the chunks.
+ *
+ * @author Tapio Malmberg
+ */
+public class ParallelSimulator {
+    /**
+     * The amount of weeks one task draws at a time.
+     */
+    public static final long WEEKS_PER_CHUNK = 1 << 20;
+
+    /**
+     * How often a task checks if the jackpot was already won in an earlier chunk.
+     */
+    private static final long CANCEL_CHECK_INTERVAL = 1 << 14;
+
+    private final LottoSettings settings;
+    private final Syndicate syndicate;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a simulator for the given numbers.
+     *
+     * @param settings the settings used for the lottery.
+     * @param userNumbers the numbers chosen by the player.
+     * @param threads the amount of threads used, 0 for one per processor core.
+     */
+    public ParallelSimulator(LottoSettings settings, int[] userNumbers, int threads) {
+        this(Syndicate.of(settings, userNumbers), threads);
+    }
+
+    /**
+     * Creates a simulator for a set of tickets.
+     *
+     * @param syndicate the tickets played every week.
+     * @param threads the amount of threads used, 0 for one per processor core.
+     */
+    public ParallelSimulator(Syndicate syndicate, int threads) {
+        this.settings = syndicate.getSettings();
+        this.syndicate = syndicate;
+
+        if(threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Gets the amount of threads the simulator uses.
+     *
+     * @return the amount of threads.
+     */
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Keeps running the lottery until the player wins the jackpot.
+     *
+     * @param random the random source the streams of the chunks are derived from.
+     * @return the first week for each amount of correct numbers.
+     */
+    public JackpotResult playUntilJackpot(RandomSource random) {
+        Run run = new Run(random);
+        pool.invoke(run);
+
+        // The chunks only know their own first weeks, so the milestones are recorded at the end
+        SimulationMetrics.getDefault().recordMilestones(settings, run.result);
+
+        return run.result;
+    }
+
+    /**
+     * Stops the threads used by the simulator.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * A single run until the jackpot, forks one worker per thread.
+     */
+    private class Run extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RandomSource random;
+        private final AtomicLong nextChunk = new AtomicLong();
+        private final JackpotResult result = new JackpotResult(settings);
+        private volatile long jackpotWeek = Long.MAX_VALUE;
+
+        Run(RandomSource random) {
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            Worker[] workers = new Worker[pool.getParallelism()];
+
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(this);
+            }
+
+            invokeAll(workers);
+        }
+
+        /**
+         * Combines the result of a chunk into the result of the run.
+         */
+        synchronized void merge(JackpotResult chunkResult) {
+            result.merge(chunkResult);
+
+            if(result.getJackpotWeeks() < jackpotWeek) {
+                jackpotWeek = result.getJackpotWeeks();
+            }
+        }
+    }
+
+    /**
+     * Keeps taking the next chunk of weeks until the jackpot is found.
+     */
+    private class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+
+        Worker(Run run) {
+            this.run = run;
+        }
+
+        @Override
+        protected void compute() {
+            while(true) {
+                long chunk = run.nextChunk.getAndIncrement();
+                long firstWeek = chunk * WEEKS_PER_CHUNK + 1;
+
+                // The chunks are taken in order, so all later chunks are useless too
+                if(firstWeek > run.jackpotWeek) {
+                    return;
+                }
+
+                run.merge(playChunk(firstWeek, run.random.forStream(chunk)));
+            }
+        }
+
+        private JackpotResult playChunk(long firstWeek, RandomSource random) {
+            LottoMachine lottoMachine = new LottoMachine(settings, random);
+            Syndicate.Matcher matcher = syndicate.createMatcher();
+            JackpotResult chunkResult = new JackpotResult(settings);
+            SimulationMetrics.Recorder recorder = SimulationMetrics.getDefault().createRecorder(matcher, firstWeek - 1);
+            long week;
+            int target = 1;
+
+            for (week = firstWeek; week < firstWeek + WEEKS_PER_CHUNK; week++) {
+                lottoMachine.draw();
+
+                int correct = matcher.match(lottoMachine);
+
+                while (correct >= target) {
+                    chunkResult.record(target, week, lottoMachine.getDrawnNumbers(), matcher.getBestTicket());
+                    target++;
+                }
+
+                if(correct == settings.numberCount) {
+                    break;
+                }
+
+                // Stop early if an earlier chunk already won the jackpot
+                if((week & (CANCEL_CHECK_INTERVAL - 1)) == 0 && week > run.jackpotWeek) {
+                    break;
+                }
+            }
+
+            recorder.flush(Math.min(week, firstWeek + WEEKS_PER_CHUNK - 1));
+
+            return chunkResult;
+        }
+    }
+}
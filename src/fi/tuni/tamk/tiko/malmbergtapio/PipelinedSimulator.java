@@ -0,0 +1,327 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.LongRingBuffer;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a lottery until the jackpot in a pipeline of three threads.
+ *
+ * A generator thread draws the weeks in batches into a ring buffer of draw masks.
+ * A matcher thread matches them against the tickets and passes the weeks that need
+ * to be reported into a second ring buffer. The calling thread reports them, so
+ * drawing the random numbers, matching and printing happen at the same time. The
+ * buffers are allocated once and reused for every lifetime, so the pipeline does not
+ * create any objects while drawing.
+ *
+ * The weeks are drawn in chunks with their own random streams like in
+ * {@link ParallelSimulator}, so the results are the same as when playing week by week.
+ *
+ * @author Tapio Malmberg
+ */
+public class PipelinedSimulator {
+    /**
+     * The amount of draws the generator writes before publishing them.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    private static final int DRAW_CAPACITY = 1 << 14;
+    private static final int EVENT_CAPACITY = 1 << 10;
+
+    private static final int EVENT_WEEK = 0;
+    private static final int EVENT_MILESTONE = 1;
+    private static final int EVENT_END = 2;
+    private static final int EVENT_HEADER_SIZE = 4;
+
+    /**
+     * Receives the weeks that are reported, in the order of the weeks. The draw masks
+     * are reused for the next event.
+     */
+    public interface Reporter {
+        /**
+         * Called for every week when every week is reported.
+         *
+         * @param week the week starting from 1.
+         * @param correct the amount of correct numbers of the best ticket.
+         * @param bestTicket the index of the best ticket.
+         * @param drawMasks the mask of the drawn numbers.
+         */
+        void week(long week, int correct, int bestTicket, long[] drawMasks);
+
+        /**
+         * Called when an amount of correct numbers is reached for the first time.
+         *
+         * @param correct the amount of correct numbers.
+         * @param week the week starting from 1.
+         * @param bestTicket the index of the best ticket.
+         * @param drawMasks the mask of the drawn numbers.
+         */
+        void milestone(int correct, long week, int bestTicket, long[] drawMasks);
+    }
+
+    private final LottoSettings settings;
+    private final Syndicate syndicate;
+    private final int wordCount;
+    private final LongRingBuffer draws;
+    private final LongRingBuffer events;
+    private final ExecutorService stages;
+    private long[] tierCounts;
+
+    /**
+     * Creates a pipeline for a set of tickets.
+     *
+     * @param syndicate the tickets played every week.
+     */
+    public PipelinedSimulator(Syndicate syndicate) {
+        this.settings = syndicate.getSettings();
+        this.syndicate = syndicate;
+        this.wordCount = Bitmask.wordCount(settings.maxNumber);
+        this.draws = new LongRingBuffer(DRAW_CAPACITY, wordCount);
+        this.events = new LongRingBuffer(EVENT_CAPACITY, EVENT_HEADER_SIZE + wordCount);
+        this.stages = Executors.newFixedThreadPool(2, task -> {
+            Thread thread = new Thread(task, "PipelinedSimulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Keeps running the lottery until the player wins the jackpot.
+     *
+     * @param random the random source of the lifetime.
+     * @param start the state the lifetime starts from.
+     * @param everyWeek if every week is reported and not just the milestones.
+     * @param reporter the reporter called on this thread.
+     * @param drawLog the log every draw is recorded into, or null.
+     * @param checkpoints the writer the progress is offered to, or null.
+     * @return the first week for each amount of correct numbers after the start.
+     * @throws IllegalStateException if a stage of the pipeline fails.
+     */
+    public JackpotResult playUntilJackpot(RandomSource random, Checkpoint start, boolean everyWeek, Reporter reporter,
+            DrawLogWriter drawLog, CheckpointWriter checkpoints) {
+        draws.reset();
+        events.reset();
+        tierCounts = null;
+
+        Future<?> generator = stages.submit(() -> generate(random, start.getWeeks()));
+        Future<?> matcher = stages.submit(() -> match(start, everyWeek, drawLog, checkpoints));
+
+        JackpotResult result = report(reporter);
+
+        try {
+            matcher.get();
+            generator.get();
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("The pipeline failed", e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing", e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets how many tickets got each amount of numbers right in the latest lifetime,
+     * including the weeks before the start.
+     *
+     * @return the tier counts.
+     */
+    public long[] getTierCounts() {
+        return tierCounts;
+    }
+
+    /**
+     * Stops the threads used by the pipeline.
+     */
+    public void shutdown() {
+        stages.shutdownNow();
+    }
+
+    private void generate(RandomSource random, long firstWeek) {
+        long[] buffer = draws.getArray();
+        LottoMachine lottoMachine = null;
+        long week = firstWeek;
+        long produced = 0;
+        long consumed = 0;
+
+        try {
+            while(true) {
+                // Wait until there is room for a whole batch
+                long needed = produced + BATCH_SIZE - draws.getCapacity();
+                if(consumed < needed) {
+                    consumed = draws.awaitConsumed(needed);
+
+                    if(consumed < needed) {
+                        return;
+                    }
+                }
+
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    if(week % ParallelSimulator.WEEKS_PER_CHUNK == 0) {
+                        lottoMachine = new LottoMachine(settings, random.forStream(week / ParallelSimulator.WEEKS_PER_CHUNK));
+                    }
+
+                    lottoMachine.draw();
+                    week++;
+
+                    System.arraycopy(lottoMachine.getDrawMasks(), 0, buffer, draws.offset(produced + i), wordCount);
+                }
+
+                produced += BATCH_SIZE;
+                draws.publish(produced);
+            }
+        } finally {
+            draws.close();
+        }
+    }
+
+    private void match(Checkpoint start, boolean everyWeek, DrawLogWriter drawLog, CheckpointWriter checkpoints) {
+        Syndicate.Matcher matcher = syndicate.createMatcher();
+        long[] buffer = draws.getArray();
+        long[] draw = new long[wordCount];
+        long[] milestones = new long[settings.numberCount + 1];
+        long[] resumedTierCounts = start.getTierCounts();
+        long week = start.getWeeks();
+        int target = start.getTarget();
+        SimulationMetrics.Recorder recorder = SimulationMetrics.getDefault().createRecorder(matcher, week);
+        long consumed = 0;
+        long produced = 0;
+        long eventsProduced = 0;
+        int correct;
+
+        for (int i = 0; i < milestones.length; i++) {
+            milestones[i] = start.getWeeks(i);
+        }
+
+        // The weeks in the log continue from the previous lifetimes
+        long firstLogWeek = drawLog != null ? drawLog.getRecordCount() : 0;
+
+        try {
+            do {
+                if(consumed == produced) {
+                    draws.release(consumed);
+                    produced = draws.awaitProduced(consumed + 1);
+
+                    if(produced <= consumed) {
+                        return;
+                    }
+                }
+
+                System.arraycopy(buffer, draws.offset(consumed), draw, 0, wordCount);
+                consumed++;
+                week++;
+
+                if((consumed & (BATCH_SIZE - 1)) == 0) {
+                    draws.release(consumed);
+                }
+
+                if(drawLog != null) {
+                    drawLog.write(firstLogWeek + week, draw);
+                }
+
+                correct = matcher.match(draw);
+
+                if(everyWeek) {
+                    eventsProduced = addEvent(eventsProduced, EVENT_WEEK, week, correct, matcher.getBestTicket(), draw);
+                }
+
+                while(correct >= target) {
+                    milestones[target] = week;
+                    recorder.milestone(target, week);
+                    eventsProduced = addEvent(eventsProduced, EVENT_MILESTONE, week, target, matcher.getBestTicket(), draw);
+                    target++;
+                }
+
+                if(week % ParallelSimulator.WEEKS_PER_CHUNK == 0 && correct != settings.numberCount) {
+                    recorder.flush(week);
+
+                    if(checkpoints != null) {
+                        checkpoints.offer(start.withProgress(week, milestones,
+                            Arrays.add(resumedTierCounts, matcher.getTierCounts())));
+                    }
+                }
+            } while(correct != settings.numberCount);
+
+            recorder.flush(week);
+
+            // The reporter reads the tier counts after the end event
+            tierCounts = Arrays.add(resumedTierCounts, matcher.getTierCounts());
+            addEvent(eventsProduced, EVENT_END, week, correct, matcher.getBestTicket(), draw);
+        } finally {
+            // Stops the generator, and the reporter if the end was not reached
+            draws.close();
+            events.close();
+        }
+    }
+
+    private long addEvent(long produced, int kind, long week, int value, int ticket, long[] draw) {
+        long needed = produced + 1 - events.getCapacity();
+
+        if(needed > 0 && events.awaitConsumed(needed) < needed) {
+            throw new IllegalStateException("The reporter stopped");
+        }
+
+        long[] buffer = events.getArray();
+        int offset = events.offset(produced);
+
+        buffer[offset] = kind;
+        buffer[offset + 1] = week;
+        buffer[offset + 2] = value;
+        buffer[offset + 3] = ticket;
+        System.arraycopy(draw, 0, buffer, offset + EVENT_HEADER_SIZE, wordCount);
+
+        events.publish(produced + 1);
+        return produced + 1;
+    }
+
+    private JackpotResult report(Reporter reporter) {
+        JackpotResult result = new JackpotResult(settings);
+        long[] buffer = events.getArray();
+        long[] drawMasks = new long[wordCount];
+        long consumed = 0;
+        long produced = 0;
+
+        try {
+            while(true) {
+                if(consumed == produced) {
+                    produced = events.awaitProduced(consumed + 1);
+
+                    if(produced <= consumed) {
+                        // The matcher failed, the error is thrown from its future
+                        return result;
+                    }
+                }
+
+                int offset = events.offset(consumed);
+                int kind = (int) buffer[offset];
+                long week = buffer[offset + 1];
+                int value = (int) buffer[offset + 2];
+                int ticket = (int) buffer[offset + 3];
+                System.arraycopy(buffer, offset + EVENT_HEADER_SIZE, drawMasks, 0, wordCount);
+
+                consumed++;
+                events.release(consumed);
+
+                if(kind == EVENT_END) {
+                    return result;
+                } else if(kind == EVENT_WEEK) {
+                    reporter.week(week, value, ticket, drawMasks);
+                } else {
+                    result.record(value, week, Bitmask.toArray(drawMasks), ticket);
+                    reporter.milestone(value, week, ticket, drawMasks);
+                }
+            }
+        } finally {
+            // Stops the matcher and the generator if the reporter fails
+            events.close();
+            draws.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * Immutable prize tier of a game: how many main numbers and bonus numbers
+ * of the ticket have to be drawn.
+ *
+ * A tier is written as main+bonus, for example 5+2, or only as the amount of
+ * main numbers in games without bonus numbers.
+ *
+ * @author Tapio Malmberg
+ */
+public class PrizeTier {
+    public final int mainHits;
+    public final int bonusHits;
+
+    /**
+     * Creates a tier.
+     *
+     * @param mainHits the amount of correct main numbers.
+     * @param bonusHits the amount of correct bonus numbers.
+     */
+    public PrizeTier(int mainHits, int bonusHits) {
+        this.mainHits = mainHits;
+        this.bonusHits = bonusHits;
+    }
+
+    /**
+     * Parses a tier written as main+bonus or main.
+     *
+     * @param text the tier.
+     * @return the tier.
+     * @throws IllegalArgumentException if the tier is not valid.
+     */
+    public static PrizeTier parse(String text) {
+        String[] hits = text.trim().split("\\s*\\+\\s*");
+
+        try {
+            if(hits.length == 1) {
+                return new PrizeTier(Integer.parseInt(hits[0]), 0);
+            } else if(hits.length == 2) {
+                return new PrizeTier(Integer.parseInt(hits[0]), Integer.parseInt(hits[1]));
+            }
+        } catch(NumberFormatException e) {
+            // Reported below
+        }
+
+        throw new IllegalArgumentException("Invalid prize tier: " + text);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof PrizeTier)) {
+            return false;
+        }
+
+        PrizeTier tier = (PrizeTier) other;
+        return mainHits == tier.mainHits && bonusHits == tier.bonusHits;
+    }
+
+    @Override
+    public int hashCode() {
+        return mainHits * 31 + bonusHits;
+    }
+
+    @Override
+    public String toString() {
+        return mainHits + "+" + bonusHits;
+    }
+}
@@ -0,0 +1,201 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates the probabilities of the rare tiers with importance sampling.
+ *
+ * Plain simulation almost never draws the numbers of the tickets, so the estimate of
+ * the jackpot needs an enormous amount of weeks. Here half of the draws are biased
+ * towards one of the tickets instead: a ticket is chosen at random, the amount of its
+ * numbers to draw is chosen uniformly from all the possible amounts, and those numbers
+ * are drawn from the ticket and the rest from the other numbers. The other half are
+ * plain draws.
+ *
+ * The biased probability of a draw only depends on how many numbers of each ticket
+ * it contains, so every sample is weighted with the ratio of its true and biased
+ * probabilities, and the weighted average is an unbiased estimate for every tier.
+ * Because half of the draws are plain, no weight is larger than two.
+ *
+ * The samples are split into chunks with their own random streams like in
+ * {@link ParallelSimulator}, so the result only depends on the seed.
+ *
+ * @author Tapio Malmberg
+ */
+public class RareTierEstimator {
+    private static final long SAMPLES_PER_CHUNK = 1 << 16;
+
+    private final LottoSettings settings;
+    private final int wordCount;
+    private final int ticketCount;
+    private final long[] ticketMasks;
+    private final int[][] tickets;
+    private final int minHits;
+    private final double[] inverseBiases;
+
+    /**
+     * Creates an estimator for a set of tickets.
+     *
+     * @param syndicate the tickets played every week.
+     */
+    public RareTierEstimator(Syndicate syndicate) {
+        this.settings = syndicate.getSettings();
+        this.wordCount = Bitmask.wordCount(settings.maxNumber);
+        this.ticketCount = syndicate.getTicketCount();
+        this.ticketMasks = new long[ticketCount * wordCount];
+        this.tickets = new int[ticketCount][];
+
+        long[] ticket = new long[wordCount];
+        for (int t = 0; t < ticketCount; t++) {
+            System.arraycopy(syndicate.getTicketMasks(t, ticket), 0, ticketMasks, t * wordCount, wordCount);
+            tickets[t] = syndicate.getTicket(t);
+        }
+
+        int numberCount = settings.numberCount;
+        this.minHits = java.lang.Math.max(0, 2 * numberCount - settings.maxNumber);
+        this.inverseBiases = new double[numberCount + 1];
+
+        // How many times more likely a draw with the given amount of numbers of a ticket
+        // is when biased towards that ticket than when drawn plainly
+        for (int hits = minHits; hits <= numberCount; hits++) {
+            double probability = Math.hypergeometric(settings.maxNumber, numberCount, numberCount, hits);
+            inverseBiases[hits] = 1 / (probability * (numberCount - minHits + 1));
+        }
+    }
+
+    /**
+     * Estimates the probabilities of each amount of correct numbers.
+     *
+     * @param samples the amount of draws.
+     * @param random the random source the streams of the chunks are derived from.
+     * @param threads the amount of threads, 0 for one per processor core.
+     * @return the estimate.
+     * @throws InterruptedException if the thread is interrupted while waiting for the result.
+     * @throws IllegalStateException if a sampling thread fails.
+     */
+    public TierEstimate estimate(long samples, RandomSource random, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+
+        try {
+            List<Future<double[][]>> chunks = new ArrayList<>();
+
+            for (long chunk = 0; chunk * SAMPLES_PER_CHUNK < samples; chunk++) {
+                long chunkIndex = chunk;
+                long chunkSamples = java.lang.Math.min(SAMPLES_PER_CHUNK, samples - chunk * SAMPLES_PER_CHUNK);
+
+                chunks.add(executor.submit(() -> sampleChunk(random.forStream(chunkIndex), chunkSamples)));
+            }
+
+            double[] weightSums = new double[settings.numberCount + 1];
+            double[] squaredWeightSums = new double[settings.numberCount + 1];
+
+            // The chunks are added in order, so the rounding is always the same
+            for (Future<double[][]> chunk : chunks) {
+                double[][] sums = chunk.get();
+
+                for (int correct = 0; correct <= settings.numberCount; correct++) {
+                    weightSums[correct] += sums[0][correct];
+                    squaredWeightSums[correct] += sums[1][correct];
+                }
+            }
+
+            return new TierEstimate(samples, weightSums, squaredWeightSums);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Sampling failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double[][] sampleChunk(RandomSource random, long samples) {
+        int numberCount = settings.numberCount;
+        int[] allNumbers = Arrays.range(1, settings.maxNumber);
+        int[] ticketPool = new int[numberCount];
+        int[] otherPool = new int[settings.maxNumber - numberCount];
+        long[] draw = new long[wordCount];
+        double[] weightSums = new double[numberCount + 1];
+        double[] squaredWeightSums = new double[numberCount + 1];
+
+        for (long i = 0; i < samples; i++) {
+            java.util.Arrays.fill(draw, 0);
+
+            if(random.nextDouble() < 0.5) {
+                random.sample(allNumbers, numberCount);
+
+                for (int j = 0; j < numberCount; j++) {
+                    Bitmask.set(draw, allNumbers[j]);
+                }
+            } else {
+                int t = random.nextInt(0, ticketCount - 1);
+                int hits = random.nextInt(minHits, numberCount);
+
+                System.arraycopy(tickets[t], 0, ticketPool, 0, numberCount);
+                fillOthers(t, otherPool);
+
+                // The chosen numbers are moved to the start of the pools
+                random.sample(ticketPool, hits);
+                random.sample(otherPool, numberCount - hits);
+
+                for (int j = 0; j < hits; j++) {
+                    Bitmask.set(draw, ticketPool[j]);
+                }
+                for (int j = 0; j < numberCount - hits; j++) {
+                    Bitmask.set(draw, otherPool[j]);
+                }
+            }
+
+            // The weight depends on how many numbers of every ticket were drawn
+            double inverseBiasSum = 0;
+            int correct = 0;
+
+            for (int t = 0; t < ticketCount; t++) {
+                int hits = countHits(draw, t);
+
+                inverseBiasSum += inverseBiases[hits];
+                correct = java.lang.Math.max(correct, hits);
+            }
+
+            double weight = 1 / (0.5 + 0.5 * inverseBiasSum / ticketCount);
+
+            weightSums[correct] += weight;
+            squaredWeightSums[correct] += weight * weight;
+        }
+
+        return new double[][] { weightSums, squaredWeightSums };
+    }
+
+    private int countHits(long[] draw, int ticket) {
+        int offset = ticket * wordCount;
+        int hits = 0;
+
+        for (int i = 0; i < wordCount; i++) {
+            hits += Long.bitCount(draw[i] & ticketMasks[offset + i]);
+        }
+
+        return hits;
+    }
+
+    private void fillOthers(int ticket, int[] output) {
+        int offset = ticket * wordCount;
+        int index = 0;
+
+        for (int number = 1; number <= settings.maxNumber; number++) {
+            long bit = 1L << ((number - 1) % Bitmask.BITS_PER_WORD);
+
+            if((ticketMasks[offset + (number - 1) / Bitmask.BITS_PER_WORD] & bit) == 0) {
+                output[index] = number;
+                index++;
+            }
+        }
+    }
+}
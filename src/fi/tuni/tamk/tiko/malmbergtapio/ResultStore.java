@@ -0,0 +1,485 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stores the results of the runs of batch jobs outside the Java heap, one column per value.
+ *
+ * Every run takes 4 bytes for the retries and 2 bytes for the weeks to each amount
+ * of correct numbers, 18 bytes for Finnish Lotto. The weeks are counted in the lifetime
+ * where the jackpot was won, so they always fit into 16 bits. The columns are direct
+ * buffers or memory-mapped from a file, so millions of runs do not use the heap and
+ * the garbage collector never sees them. A file store can be opened again later.
+ *
+ * The runs are stored in groups, one per job. The rows of a group are reserved when
+ * the group is added and a run is written into the row of its index, so any amount
+ * of threads can store their runs at the same time without locks. The groups are in
+ * a copy-on-write list, so reading them does not lock either.
+ *
+ * The queries go through the rows of a group in one column. The percentiles are exact:
+ * they are selected by counting the values, the retries by their high and then their
+ * low 16 bits, so nothing is sorted or copied.
+ *
+ * The file starts with the bytes LOTTOCOL, the format version, the amount of weeks
+ * columns, the capacity and the groups (first row, runs, numbers drawn and name). The
+ * columns follow at offset {@link #HEADER_SIZE} as little-endian values.
+ *
+ * @author Tapio Malmberg
+ */
+public class ResultStore implements Closeable {
+    /**
+     * The column of the retries. The column of the weeks to k correct numbers is k.
+     */
+    public static final int RETRIES = 0;
+
+    /**
+     * The largest amount of runs, which keeps every column below 2 GB.
+     */
+    public static final long MAX_CAPACITY = Integer.MAX_VALUE / Integer.BYTES;
+
+    /**
+     * The size of the header of a store file, which limits the amount and the names of the groups.
+     */
+    public static final int HEADER_SIZE = 1 << 16;
+
+    private static final byte[] MAGIC = "LOTTOCOL".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int MAX_WEEKS = Character.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final ByteBuffer header;
+    private final ByteBuffer[] columns;
+    private final long capacity;
+    private final List<Group> groups = new CopyOnWriteArrayList<>();
+    private long reserved;
+
+    private ResultStore(FileChannel channel, ByteBuffer header, ByteBuffer[] columns, long capacity) {
+        this.channel = channel;
+        this.header = header;
+        this.columns = columns;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a store in direct memory.
+     *
+     * @param numberCount the largest amount of numbers drawn in the games of the store.
+     * @param capacity the amount of runs of all the groups.
+     * @return the store.
+     * @throws IllegalArgumentException if the capacity is not valid.
+     */
+    public static ResultStore allocate(int numberCount, long capacity) {
+        checkCapacity(capacity);
+        ByteBuffer[] columns = new ByteBuffer[numberCount + 1];
+
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = ByteBuffer.allocateDirect((int) (capacity * getWidth(column)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        return new ResultStore(null, null, columns, capacity);
+    }
+
+    /**
+     * Creates a store in a memory-mapped file, replacing the file if it exists.
+     *
+     * @param file the file of the store.
+     * @param numberCount the largest amount of numbers drawn in the games of the store.
+     * @param capacity the amount of runs of all the groups.
+     * @return the store.
+     * @throws IOException if creating the file fails.
+     * @throws IllegalArgumentException if the capacity is not valid.
+     */
+    public static ResultStore create(Path file, int numberCount, long capacity) throws IOException {
+        checkCapacity(capacity);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            ResultStore store = map(channel, numberCount, capacity);
+            store.writeHeader();
+
+            return store;
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a store file created with {@link #create(Path, int, long)}.
+     *
+     * @param file the file of the store.
+     * @return the store with the groups of the file.
+     * @throws IOException if reading the file fails or it is not a store.
+     */
+    public static ResultStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            if(channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a result store: " + file);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+
+            if(!java.util.Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a result store: " + file);
+            } else if(header.getInt() != VERSION) {
+                throw new IOException("Unsupported result store version: " + file);
+            }
+
+            int numberCount = header.getInt();
+            long capacity = header.getLong();
+            int groupCount = header.getInt();
+
+            if(numberCount < 1 || capacity < 1 || capacity > MAX_CAPACITY || groupCount < 0
+                    || channel.size() < HEADER_SIZE + capacity * (Integer.BYTES + numberCount * Character.BYTES)) {
+                throw new IOException("Corrupted result store: " + file);
+            }
+
+            ResultStore store = map(channel, numberCount, capacity);
+
+            for (int i = 0; i < groupCount; i++) {
+                long first = header.getLong();
+                long runs = header.getLong();
+                int groupNumberCount = header.getInt();
+                byte[] name = new byte[header.getShort() & 0xFFFF];
+                header.get(name);
+
+                if(first != store.reserved || runs < 1 || runs > capacity - first || groupNumberCount < 1
+                        || groupNumberCount > numberCount) {
+                    throw new IOException("Corrupted result store: " + file);
+                }
+
+                store.groups.add(new Group(new String(name, StandardCharsets.UTF_8), first, runs, groupNumberCount));
+                store.reserved = first + runs;
+            }
+
+            return store;
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+
+            if(e instanceof BufferUnderflowException) {
+                throw new IOException("Corrupted result store: " + file);
+            }
+
+            throw e;
+        }
+    }
+
+    private static ResultStore map(FileChannel channel, int numberCount, long capacity) throws IOException {
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        ByteBuffer[] columns = new ByteBuffer[numberCount + 1];
+        long offset = HEADER_SIZE;
+
+        for (int column = 0; column < columns.length; column++) {
+            long size = capacity * getWidth(column);
+            columns[column] = channel.map(FileChannel.MapMode.READ_WRITE, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+            offset += size;
+        }
+
+        return new ResultStore(channel, header, columns, capacity);
+    }
+
+    private static void checkCapacity(long capacity) {
+        if(capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity must be in the range [1, " + MAX_CAPACITY + "]");
+        }
+    }
+
+    private static int getWidth(int column) {
+        return column == RETRIES ? Integer.BYTES : Character.BYTES;
+    }
+
+    /**
+     * Reserves the rows for the runs of a job.
+     *
+     * @param name the name of the group, for example the game and the ticket.
+     * @param runs the amount of runs.
+     * @param numberCount how many numbers are drawn in the game.
+     * @return the index of the group.
+     * @throws IllegalArgumentException if the runs do not fit into the store.
+     */
+    public synchronized int addGroup(String name, long runs, int numberCount) {
+        if(runs < 1 || runs > capacity - reserved) {
+            throw new IllegalArgumentException("No room for " + runs + " runs, " + (capacity - reserved) + " left");
+        } else if(numberCount < 1 || numberCount >= columns.length) {
+            throw new IllegalArgumentException("The store has room for at most " + (columns.length - 1) + " numbers");
+        }
+
+        groups.add(new Group(name, reserved, runs, numberCount));
+        reserved += runs;
+
+        if(header != null) {
+            try {
+                writeHeader();
+            } catch(IllegalArgumentException e) {
+                groups.remove(groups.size() - 1);
+                reserved -= runs;
+                throw e;
+            }
+        }
+
+        return groups.size() - 1;
+    }
+
+    private void writeHeader() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.write(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(columns.length - 1);
+            output.writeLong(capacity);
+            output.writeInt(groups.size());
+
+            for (Group group : groups) {
+                byte[] name = group.name.getBytes(StandardCharsets.UTF_8);
+
+                output.writeLong(group.first);
+                output.writeLong(group.runs);
+                output.writeInt(group.numberCount);
+                output.writeShort(java.lang.Math.min(name.length, Character.MAX_VALUE));
+                output.write(name, 0, java.lang.Math.min(name.length, Character.MAX_VALUE));
+            }
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if(bytes.size() > HEADER_SIZE) {
+            throw new IllegalArgumentException("The names of the groups do not fit into the header");
+        }
+
+        // The header is written in the byte order of DataOutput, the columns are little-endian
+        header.put(0, bytes.toByteArray());
+    }
+
+    /**
+     * Stores the result of a run into the row of its index in the group.
+     *
+     * Different threads can store different runs at the same time.
+     *
+     * @param group the index of the group.
+     * @param result the result of the run.
+     * @throws IllegalArgumentException if the run is not in the group or a value does not fit.
+     */
+    public void put(int group, RunResult result) {
+        Group target = groups.get(group);
+
+        if(result.run < 0 || result.run >= target.runs) {
+            throw new IllegalArgumentException("Run " + result.run + " is not in group " + target.name);
+        } else if(result.retries > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Too many retries: " + result.retries);
+        }
+
+        int row = (int) (target.first + result.run);
+        columns[RETRIES].putInt(row * Integer.BYTES, (int) result.retries);
+
+        for (int correct = 1; correct <= target.numberCount; correct++) {
+            long weeks = result.getWeeks(correct);
+
+            if(weeks > MAX_WEEKS) {
+                throw new IllegalArgumentException("Too many weeks: " + weeks);
+            }
+
+            columns[correct].putChar(row * Character.BYTES, (char) weeks);
+        }
+    }
+
+    /**
+     * Gets the amount of groups.
+     *
+     * @return the amount of groups.
+     */
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Gets the name of a group.
+     *
+     * @param group the index of the group.
+     * @return the name.
+     */
+    public String getName(int group) {
+        return groups.get(group).name;
+    }
+
+    /**
+     * Gets the amount of runs in a group.
+     *
+     * @param group the index of the group.
+     * @return the amount of runs.
+     */
+    public long getRunCount(int group) {
+        return groups.get(group).runs;
+    }
+
+    /**
+     * Gets how many numbers are drawn in the game of a group.
+     *
+     * @param group the index of the group.
+     * @return the highest amount of correct numbers.
+     */
+    public int getNumberCount(int group) {
+        return groups.get(group).numberCount;
+    }
+
+    /**
+     * Gets the amount of bytes a run takes.
+     *
+     * @return the bytes per run.
+     */
+    public int getBytesPerRun() {
+        int bytes = 0;
+        for (int column = 0; column < columns.length; column++) {
+            bytes += getWidth(column);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Gets the value below which the given percentage of the values of a group are.
+     *
+     * @param group the index of the group.
+     * @param column {@link #RETRIES} or the amount of correct numbers.
+     * @param percentile the percentage in the range [0, 100].
+     * @return the smallest value that has at least the percentage of the values at or below it.
+     */
+    public long getValueAtPercentile(int group, int column, double percentile) {
+        Group target = getGroup(group, column);
+        long rank = java.lang.Math.max(1, (long) java.lang.Math.ceil(percentile / 100 * target.runs));
+        rank = java.lang.Math.min(rank, target.runs);
+
+        // The weeks have 16 bits and are counted at once, the retries by the high and then the low 16 bits
+        int shift = column == RETRIES ? 16 : 0;
+        int[] counts = new int[1 << 16];
+        int end = (int) (target.first + target.runs);
+
+        for (int row = (int) target.first; row < end; row++) {
+            counts[(int) (getValue(column, row) >>> shift)]++;
+        }
+
+        int high = findBucket(counts, rank);
+        if(shift == 0) {
+            return high;
+        }
+
+        for (int i = 0; i < high; i++) {
+            rank -= counts[i];
+        }
+
+        java.util.Arrays.fill(counts, 0);
+        for (int row = (int) target.first; row < end; row++) {
+            long value = getValue(column, row);
+
+            if(value >>> 16 == high) {
+                counts[(int) (value & 0xFFFF)]++;
+            }
+        }
+
+        return ((long) high << 16) | findBucket(counts, rank);
+    }
+
+    /**
+     * Counts the runs of a group with at most the given value.
+     *
+     * @param group the index of the group.
+     * @param column {@link #RETRIES} or the amount of correct numbers.
+     * @param max the largest value that is counted.
+     * @return the amount of runs.
+     */
+    public long countAtMost(int group, int column, long max) {
+        Group target = getGroup(group, column);
+        int end = (int) (target.first + target.runs);
+        long count = 0;
+
+        for (int row = (int) target.first; row < end; row++) {
+            count += getValue(column, row) <= max ? 1 : 0;
+        }
+
+        return count;
+    }
+
+    private Group getGroup(int group, int column) {
+        Group target = groups.get(group);
+
+        if(column < 0 || column > target.numberCount) {
+            throw new IllegalArgumentException("No column " + column + " in group " + target.name);
+        }
+
+        return target;
+    }
+
+    private long getValue(int column, int row) {
+        return column == RETRIES
+            ? columns[RETRIES].getInt(row * Integer.BYTES) & 0xFFFFFFFFL
+            : columns[column].getChar(row * Character.BYTES);
+    }
+
+    private static int findBucket(int[] counts, long rank) {
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if(seen >= rank) {
+                return i;
+            }
+        }
+
+        return counts.length - 1;
+    }
+
+    /**
+     * Writes the changes of a file store to the disk. The buffers are released
+     * when they are garbage collected.
+     *
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if(channel != null) {
+            ((MappedByteBuffer) header).force();
+            for (ByteBuffer column : columns) {
+                ((MappedByteBuffer) column).force();
+            }
+
+            channel.close();
+        }
+    }
+
+    /**
+     * The rows of the runs of one job.
+     */
+    private static class Group {
+        private final String name;
+        private final long first;
+        private final long runs;
+        private final int numberCount;
+
+        private Group(String name, long first, long runs, int numberCount) {
+            this.name = name;
+            this.first = first;
+            this.runs = runs;
+            this.numberCount = numberCount;
+        }
+    }
+}
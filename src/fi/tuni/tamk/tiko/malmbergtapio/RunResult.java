@@ -0,0 +1,82 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * Immutable result of one run in a batch.
+ *
+ * A run keeps playing lifetimes until the jackpot is won within
+ * a lifetime, like the main program does.
+ *
+ * @author Tapio Malmberg
+ */
+public class RunResult {
+    /**
+     * The index of the run in the batch, starting from 0.
+     */
+    public final long run;
+
+    /**
+     * How many lifetimes were played before the one where the jackpot was won in time.
+     */
+    public final long retries;
+
+    private final long[] weeks;
+
+    /**
+     * Creates a result from the last lifetime of a run.
+     *
+     * @param run the index of the run in the batch.
+     * @param retries the amount of lifetimes that took too long.
+     * @param lifetime the result of the last lifetime.
+     * @param numberCount how many numbers are drawn in the game.
+     */
+    public RunResult(long run, long retries, JackpotResult lifetime, int numberCount) {
+        this.run = run;
+        this.retries = retries;
+        this.weeks = new long[numberCount + 1];
+
+        for (int correct = 1; correct <= numberCount; correct++) {
+            weeks[correct] = lifetime.getWeeks(correct);
+        }
+    }
+
+    /**
+     * Creates a result from the weeks to each amount of correct numbers.
+     *
+     * @param run the index of the run in the batch.
+     * @param retries the amount of lifetimes that took too long.
+     * @param weeks the weeks indexed by the amount of correct numbers, index 0 is not used.
+     */
+    public RunResult(long run, long retries, long[] weeks) {
+        this.run = run;
+        this.retries = retries;
+        this.weeks = weeks.clone();
+    }
+
+    /**
+     * Gets the first week when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the week starting from 1.
+     */
+    public long getWeeks(int correct) {
+        return weeks[correct];
+    }
+
+    /**
+     * Gets how many numbers are drawn in the game.
+     *
+     * @return the highest amount of correct numbers.
+     */
+    public int getNumberCount() {
+        return weeks.length - 1;
+    }
+
+    /**
+     * Gets how many years it took to win the jackpot in the last lifetime.
+     *
+     * @return the amount of years.
+     */
+    public long getYears() {
+        return weeks[weeks.length - 1] / LottoApp.WEEKS_IN_A_YEAR;
+    }
+}
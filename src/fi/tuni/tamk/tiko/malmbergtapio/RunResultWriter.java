@@ -0,0 +1,113 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the results of a batch into a file one run at a time.
+ *
+ * The CSV format has a header line and the columns run, retries, years and
+ * the weeks to each amount of correct numbers.
+ *
+ * The binary format starts with the magic bytes LOTTORES, a version number and
+ * the number count of the game as ints. Each run is then a fixed size record of
+ * the run index and retries as longs, followed by the weeks to each amount
+ * of correct numbers as longs. All values are big-endian.
+ *
+ * @author Tapio Malmberg
+ */
+public class RunResultWriter implements Closeable {
+    /**
+     * The first bytes of a binary result file.
+     */
+    public static final byte[] MAGIC = "LOTTORES".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the binary format.
+     */
+    public static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int numberCount;
+    private final BufferedWriter text;
+    private final DataOutputStream binary;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Creates the output file and writes the header.
+     *
+     * @param file the file to be written.
+     * @param format {@link BatchJob#FORMAT_CSV} or {@link BatchJob#FORMAT_BINARY}.
+     * @param numberCount how many numbers are drawn in the game.
+     * @throws IOException if creating the file fails.
+     */
+    public RunResultWriter(Path file, String format, int numberCount) throws IOException {
+        this.numberCount = numberCount;
+
+        if(format.equals(BatchJob.FORMAT_BINARY)) {
+            this.text = null;
+            this.binary = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+
+            binary.write(MAGIC);
+            binary.writeInt(VERSION);
+            binary.writeInt(numberCount);
+        } else {
+            this.binary = null;
+            this.text = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+
+            text.write("run,retries,years");
+            for (int correct = 1; correct <= numberCount; correct++) {
+                text.write(",weeks" + correct);
+            }
+            text.newLine();
+        }
+    }
+
+    /**
+     * Writes the result of one run.
+     *
+     * @param result the result to be written.
+     * @throws IOException if writing fails.
+     */
+    public void write(RunResult result) throws IOException {
+        if(binary != null) {
+            binary.writeLong(result.run);
+            binary.writeLong(result.retries);
+
+            for (int correct = 1; correct <= numberCount; correct++) {
+                binary.writeLong(result.getWeeks(correct));
+            }
+        } else {
+            line.setLength(0);
+            line.append(result.run).append(',').append(result.retries).append(',').append(result.getYears());
+
+            for (int correct = 1; correct <= numberCount; correct++) {
+                line.append(',').append(result.getWeeks(correct));
+            }
+
+            line.append('\n');
+            text.append(line);
+        }
+    }
+
+    /**
+     * Flushes the buffered results and closes the file.
+     *
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if(binary != null) {
+            binary.close();
+        } else {
+            text.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.LogHistogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Streaming statistics of the runs in a batch.
+ *
+ * The weeks to the first hit of every tier and the retries of each run are
+ * recorded into histograms, so the memory used does not depend on the amount of runs.
+ * Each thread records into its own statistics, which are merged when the threads
+ * are done.
+ *
+ * @author Tapio Malmberg
+ */
+public class RunStatistics {
+    private final LogHistogram[] weeks;
+    private LogHistogram retries = new LogHistogram();
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param numberCount how many numbers are drawn in the game.
+     */
+    public RunStatistics(int numberCount) {
+        this.weeks = new LogHistogram[numberCount + 1];
+
+        for (int correct = 1; correct <= numberCount; correct++) {
+            weeks[correct] = new LogHistogram();
+        }
+    }
+
+    /**
+     * Records the result of a run.
+     *
+     * @param result the result to be recorded.
+     */
+    public void record(RunResult result) {
+        for (int correct = 1; correct < weeks.length; correct++) {
+            weeks[correct].record(result.getWeeks(correct));
+        }
+
+        retries.record(result.retries);
+    }
+
+    /**
+     * Adds the runs recorded in other statistics into these.
+     *
+     * @param other the statistics to be added.
+     */
+    public void merge(RunStatistics other) {
+        for (int correct = 1; correct < weeks.length; correct++) {
+            weeks[correct].add(other.weeks[correct]);
+        }
+
+        retries.add(other.retries);
+    }
+
+    /**
+     * Writes the statistics so that they can be read back with {@link #read(DataInput, int)}.
+     *
+     * @param output the output the statistics are written to.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput output) throws IOException {
+        for (int correct = 1; correct < weeks.length; correct++) {
+            weeks[correct].write(output);
+        }
+
+        retries.write(output);
+    }
+
+    /**
+     * Reads statistics written with {@link #write(DataOutput)}.
+     *
+     * @param input the input the statistics are read from.
+     * @param numberCount how many numbers are drawn in the game.
+     * @return the statistics.
+     * @throws IOException if reading fails.
+     */
+    public static RunStatistics read(DataInput input, int numberCount) throws IOException {
+        RunStatistics statistics = new RunStatistics(numberCount);
+
+        for (int correct = 1; correct <= numberCount; correct++) {
+            statistics.weeks[correct] = LogHistogram.read(input);
+        }
+
+        statistics.retries = LogHistogram.read(input);
+        return statistics;
+    }
+
+    /**
+     * Gets the amount of recorded runs.
+     *
+     * @return the amount of runs.
+     */
+    public long getRunCount() {
+        return retries.getCount();
+    }
+
+    /**
+     * Gets how many numbers are drawn in the game.
+     *
+     * @return the highest amount of correct numbers.
+     */
+    public int getNumberCount() {
+        return weeks.length - 1;
+    }
+
+    /**
+     * Gets the histogram of the first weeks when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the histogram of the weeks.
+     */
+    public LogHistogram getWeeks(int correct) {
+        return weeks[correct];
+    }
+
+    /**
+     * Gets the histogram of the lifetimes played before the jackpot was won in time.
+     *
+     * @return the histogram of the retries.
+     */
+    public LogHistogram getRetries() {
+        return retries;
+    }
+}
@@ -0,0 +1,364 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays the runs of a batch job in several worker processes.
+ *
+ * The runs are split into shards of consecutive runs. The coordinator starts the
+ * workers with {@link ShardWorker#OPTION}, and each worker connects back through
+ * its own socket on the loopback address. Each worker gets the job and then one
+ * shard at a time, and sends back the statistics of the shard when it is done.
+ *
+ * Every run uses its own numbered random stream, so the statistics of a shard only
+ * depend on the seed and the runs in it. A shard whose worker fails is given to the
+ * next free worker and played again with the same result, and a failed worker is
+ * replaced with a new process. The statistics are merged in the order of the shards
+ * as soon as all the earlier shards are done, so the result does not depend on the
+ * amount of workers, the order the shards finish or the failures.
+ *
+ * A worker that hangs instead of exiting is treated like a failed one. Each shard
+ * has a time limit of ten times the time per run of the slowest shard so far, or of
+ * a cautious estimate from the game and the engine before any shard is done, but at
+ * least a minute. The limit doubles every time the shard is tried again, so a shard
+ * that is just slow gets the time it needs.
+ *
+ * @author Tapio Malmberg
+ */
+public class ShardCoordinator {
+    /**
+     * The default amount of runs in a shard.
+     */
+    public static final long DEFAULT_SHARD_SIZE = 10_000;
+
+    /**
+     * How many times a shard is tried before the job fails.
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * The first message from a worker.
+     */
+    static final int HELLO = 0x4C4F5454;
+
+    /**
+     * Sent instead of a shard when there is no more work.
+     */
+    static final long NO_MORE_SHARDS = -1;
+
+    private static final int ACCEPT_TIMEOUT_MILLIS = 30_000;
+    private static final long POLL_MILLIS = 100;
+    private static final long MIN_SHARD_TIMEOUT_MILLIS = 60_000;
+    private static final int SHARD_TIMEOUT_FACTOR = 10;
+
+    // Cautious speeds for the first shards, far below what a worker normally reaches
+    private static final double WEEKLY_DRAWS_PER_SECOND = 1e6;
+    private static final double FAST_RUNS_PER_SECOND = 1e4;
+
+    private final BatchJob job;
+    private final int workers;
+    private final long shardSize;
+    private final int shardCount;
+    private final PriorityBlockingQueue<Integer> pending = new PriorityBlockingQueue<>();
+    private final int[] attempts;
+    private final RunStatistics[] finished;
+    private final RunStatistics total;
+    private final List<Process> processes = new ArrayList<>();
+    private int nextMerge;
+    private int retries;
+    private double slowestNanosPerRun;
+    private Throwable failure;
+    private volatile boolean done;
+
+    /**
+     * Creates a coordinator for a job.
+     *
+     * @param job the job to be played.
+     * @param workers the amount of worker processes.
+     * @param shardSize the amount of runs in a shard.
+     * @throws IllegalArgumentException if there are no workers or the shards are empty.
+     */
+    public ShardCoordinator(BatchJob job, int workers, long shardSize) {
+        if(workers < 1) {
+            throw new IllegalArgumentException("workers must be positive: " + workers);
+        } else if(shardSize < 1) {
+            throw new IllegalArgumentException("The shard size must be positive: " + shardSize);
+        }
+
+        long shards = (job.runs + shardSize - 1) / shardSize;
+        if(shards > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many shards: " + shards);
+        }
+
+        this.job = job;
+        this.workers = workers;
+        this.shardSize = shardSize;
+        this.shardCount = (int) shards;
+        this.attempts = new int[shardCount];
+        this.finished = new RunStatistics[shardCount];
+        this.total = new RunStatistics(job.settings.numberCount);
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            pending.add(shard);
+        }
+    }
+
+    /**
+     * Gets the amount of shards the runs are split into.
+     *
+     * @return the amount of shards.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Gets how many times a shard was given to another worker after a failure.
+     *
+     * @return the amount of retried shards.
+     */
+    public synchronized int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Plays all the runs in the worker processes.
+     *
+     * @return the statistics of all the runs.
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers.
+     * @throws IllegalStateException if a worker cannot be started or a shard fails too many times.
+     */
+    public RunStatistics run() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(this::serveWorkers, "ShardCoordinator-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+
+            synchronized(this) {
+                while(nextMerge < shardCount && failure == null) {
+                    wait();
+                }
+            }
+        } finally {
+            done = true;
+
+            // The workers still playing a shard after a failure are not waited for
+            if(nextMerge < shardCount) {
+                destroyWorkers();
+            }
+
+            for (Thread thread : threads) {
+                thread.join(ACCEPT_TIMEOUT_MILLIS);
+            }
+
+            destroyWorkers();
+        }
+
+        synchronized(this) {
+            if(failure != null) {
+                throw new IllegalStateException("Simulation failed", failure);
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Keeps one worker process running and giving it shards until the job is done.
+     * The socket is only used by the processes started here, so a failed connection
+     * always belongs to the process that is replaced.
+     */
+    private void serveWorkers() {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+
+            while(!done) {
+                serveWorker(server);
+            }
+        } catch(IOException e) {
+            fail(e);
+        }
+    }
+
+    private void serveWorker(ServerSocket server) {
+        Process process = null;
+        boolean connected = false;
+        int shard = -1;
+
+        try {
+            process = startWorker(server.getLocalPort());
+
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+                if(input.readInt() != HELLO) {
+                    throw new IOException("Not a worker");
+                }
+
+                connected = true;
+
+                job.write(output);
+                output.flush();
+
+                while(!done) {
+                    Integer next = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if(next == null) {
+                        continue;
+                    }
+
+                    shard = next;
+                    long firstRun = shard * shardSize;
+                    long runs = Math.min(shardSize, job.runs - firstRun);
+                    long start = System.nanoTime();
+
+                    socket.setSoTimeout(getShardTimeoutMillis(shard, runs));
+                    output.writeLong(firstRun);
+                    output.writeLong(runs);
+                    output.flush();
+
+                    RunStatistics statistics = RunStatistics.read(input, job.settings.numberCount);
+                    complete(shard, statistics, (double) (System.nanoTime() - start) / runs);
+                    shard = -1;
+                }
+
+                output.writeLong(NO_MORE_SHARDS);
+                output.flush();
+            }
+        } catch(SocketTimeoutException e) {
+            // A worker that hangs is replaced like one that crashed
+            if(shard >= 0) {
+                retry(shard, new IOException("Shard " + shard + " timed out", e));
+            } else if(!connected && !done) {
+                fail(e);
+            }
+        } catch(IOException e) {
+            // A worker that crashed is replaced and its shard is played again,
+            // but a worker that cannot even connect would fail the same way every time
+            if(shard >= 0) {
+                retry(shard, e);
+            } else if(!connected && !done) {
+                fail(e);
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            // A hung worker may not react to being asked to stop
+            if(process != null && shard >= 0) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private Process startWorker(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        // The workers need the same modules, for example the Vector API
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if(argument.startsWith("--add-modules") || argument.startsWith("-Xmx")) {
+                command.add(argument);
+            }
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LottoApp.class.getName());
+        command.add("--" + ShardWorker.OPTION + "=" + port);
+
+        Process process = new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+
+        synchronized(processes) {
+            processes.add(process);
+        }
+
+        return process;
+    }
+
+    private void destroyWorkers() {
+        synchronized(processes) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Gets how long a worker may play a shard before it is considered hung.
+     */
+    private synchronized int getShardTimeoutMillis(int shard, long runs) {
+        double millis;
+
+        if(slowestNanosPerRun > 0) {
+            millis = SHARD_TIMEOUT_FACTOR * slowestNanosPerRun * runs / 1e6;
+        } else if(job.engine.equals(BatchJob.ENGINE_WEEKLY)) {
+            // A run draws about one week per different draw of the game
+            double jackpot = GameRegistry.getDefault().getTables(job.settings).getFastForward()
+                .getProbabilityAtLeast(job.settings.numberCount);
+            millis = runs / jackpot / WEEKLY_DRAWS_PER_SECOND * 1000;
+        } else {
+            millis = runs / FAST_RUNS_PER_SECOND * 1000;
+        }
+
+        millis = Math.max(MIN_SHARD_TIMEOUT_MILLIS, millis) * (1L << attempts[shard]);
+
+        return (int) Math.min(Integer.MAX_VALUE, millis);
+    }
+
+    private synchronized void complete(int shard, RunStatistics statistics, double nanosPerRun) {
+        finished[shard] = statistics;
+        slowestNanosPerRun = Math.max(slowestNanosPerRun, nanosPerRun);
+
+        // Merging in order keeps the rounding of the means the same in every run
+        while(nextMerge < shardCount && finished[nextMerge] != null) {
+            total.merge(finished[nextMerge]);
+            finished[nextMerge] = null;
+            nextMerge++;
+        }
+
+        notifyAll();
+    }
+
+    private synchronized void retry(int shard, IOException e) {
+        attempts[shard]++;
+
+        if(attempts[shard] >= MAX_ATTEMPTS) {
+            fail(new IOException("Shard " + shard + " failed " + MAX_ATTEMPTS + " times", e));
+        } else {
+            retries++;
+            pending.add(shard);
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if(failure == null) {
+            failure = e;
+        }
+
+        notifyAll();
+    }
+}
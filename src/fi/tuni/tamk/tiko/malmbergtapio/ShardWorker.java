@@ -0,0 +1,63 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Plays the shards given by a {@link ShardCoordinator} in a worker process.
+ *
+ * The worker connects to the coordinator on the loopback address, reads the job
+ * and then plays one shard of runs at a time on a single thread, sending back the
+ * statistics of each shard, until the coordinator has no more shards.
+ *
+ * @author Tapio Malmberg
+ */
+public class ShardWorker {
+    /**
+     * The command line option that starts a worker, followed by the port of the coordinator.
+     */
+    public static final String OPTION = "worker";
+
+    private final int port;
+
+    /**
+     * Creates a worker for a coordinator on this machine.
+     *
+     * @param port the port the coordinator listens on.
+     */
+    public ShardWorker(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Plays shards until the coordinator has no more of them.
+     *
+     * @return the amount of shards played.
+     * @throws IOException if the connection to the coordinator fails.
+     */
+    public int run() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            output.writeInt(ShardCoordinator.HELLO);
+            output.flush();
+
+            BatchRunner runner = new BatchRunner(BatchJob.read(input));
+            int shards = 0;
+
+            for (long firstRun = input.readLong(); firstRun != ShardCoordinator.NO_MORE_SHARDS; firstRun = input.readLong()) {
+                runner.play(firstRun, input.readLong()).write(output);
+                output.flush();
+                shards++;
+            }
+
+            return shards;
+        }
+    }
+}
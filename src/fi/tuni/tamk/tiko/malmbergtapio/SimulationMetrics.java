@@ -0,0 +1,353 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Counts the draws, the hits of every tier and the current week of the simulations
+ * for monitoring a long run while it is going on.
+ *
+ * The counters are shown over JMX, and the milestones and the batches of weeks are
+ * also recorded as Java Flight Recorder events when a recording is running.
+ *
+ * The simulation loops do not touch the counters every week. Each loop has its own
+ * {@link Recorder} that is flushed once per chunk of {@link ParallelSimulator#WEEKS_PER_CHUNK}
+ * weeks, and the tier hits are taken from the counts the matcher keeps anyway. The
+ * counters are striped with {@link LongAdder}, so threads flushing at the same time
+ * do not slow each other down.
+ *
+ * @author Tapio Malmberg
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+    /**
+     * The name the metrics are registered with in the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "fi.tuni.tamk.tiko.malmbergtapio:type=SimulationMetrics";
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static class Holder {
+        private static final SimulationMetrics DEFAULT = register(new SimulationMetrics());
+    }
+
+    private volatile boolean enabled = true;
+    private volatile String game = "";
+    private volatile long startTime = System.nanoTime();
+    private volatile LongAdder[] tierHits = new LongAdder[0];
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder lifetimes = new LongAdder();
+    private final LongAccumulator currentWeek = new LongAccumulator(Math::max, 0);
+    private long rateTime = System.nanoTime();
+    private long rateDraws;
+    private double drawsPerSecond;
+
+    /**
+     * Gets the metrics shared by the whole application, registering them with the
+     * platform MBean server the first time.
+     *
+     * @return the metrics.
+     */
+    public static SimulationMetrics getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    private static SimulationMetrics register(SimulationMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch(JMException e) {
+            // The simulation works without monitoring
+            System.out.println("ERROR: Could not register the metrics: " + e.getMessage());
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Starts counting a new run from zero.
+     *
+     * @param settings the settings of the game played.
+     */
+    public void startRun(LottoSettings settings) {
+        game = settings.name;
+        ensureTiers(settings.numberCount + 1);
+        reset();
+    }
+
+    /**
+     * Starts a new lifetime, the current week starts from zero again.
+     */
+    public void startLifetime() {
+        if(enabled) {
+            lifetimes.increment();
+            currentWeek.reset();
+        }
+    }
+
+    /**
+     * Adds weeks that were not drawn one by one, like the weeks skipped by {@link FastForward}.
+     *
+     * @param weeks the amount of weeks.
+     */
+    public void addDraws(long weeks) {
+        if(enabled) {
+            draws.add(weeks);
+            currentWeek.accumulate(weeks);
+        }
+    }
+
+    /**
+     * Records the milestones of a lifetime that was not played week by week in order.
+     *
+     * @param settings the settings of the game played.
+     * @param result the first week for each amount of correct numbers.
+     */
+    public void recordMilestones(LottoSettings settings, JackpotResult result) {
+        for (int correct = 1; correct <= settings.numberCount; correct++) {
+            if(result.getWeeks(correct) != Long.MAX_VALUE) {
+                commitMilestone(correct, result.getWeeks(correct));
+            }
+        }
+    }
+
+    /**
+     * Creates a recorder for one simulation loop.
+     *
+     * @param matcher the matcher of the loop the tier hits are taken from.
+     * @param firstWeek the week before the first week the loop draws.
+     * @return the recorder.
+     */
+    public Recorder createRecorder(Syndicate.Matcher matcher, long firstWeek) {
+        return new Recorder(matcher, firstWeek);
+    }
+
+    @Override
+    public String getGame() {
+        return game;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getDraws() {
+        return draws.sum();
+    }
+
+    @Override
+    public synchronized double getDrawsPerSecond() {
+        long now = System.nanoTime();
+
+        // A shorter window would mostly show when the chunks were flushed
+        if(now - rateTime >= NANOS_PER_SECOND) {
+            long total = draws.sum();
+
+            drawsPerSecond = (double) (total - rateDraws) * NANOS_PER_SECOND / (now - rateTime);
+            rateDraws = total;
+            rateTime = now;
+        }
+
+        return drawsPerSecond;
+    }
+
+    @Override
+    public double getAverageDrawsPerSecond() {
+        long elapsed = System.nanoTime() - startTime;
+
+        return elapsed > 0 ? (double) draws.sum() * NANOS_PER_SECOND / elapsed : 0;
+    }
+
+    @Override
+    public long[] getTierHits() {
+        LongAdder[] counters = tierHits;
+        long[] hits = new long[counters.length];
+
+        for (int i = 0; i < counters.length; i++) {
+            hits[i] = counters[i].sum();
+        }
+
+        return hits;
+    }
+
+    @Override
+    public long getCurrentWeek() {
+        return currentWeek.get();
+    }
+
+    @Override
+    public long getCurrentYears() {
+        return currentWeek.get() / LottoApp.WEEKS_IN_A_YEAR;
+    }
+
+    @Override
+    public long getLifetimes() {
+        return lifetimes.sum();
+    }
+
+    @Override
+    public synchronized void reset() {
+        draws.reset();
+        lifetimes.reset();
+        currentWeek.reset();
+
+        for (LongAdder counter : tierHits) {
+            counter.reset();
+        }
+
+        startTime = System.nanoTime();
+        rateTime = startTime;
+        rateDraws = 0;
+        drawsPerSecond = 0;
+    }
+
+    private synchronized LongAdder[] ensureTiers(int tierCount) {
+        LongAdder[] counters = tierHits;
+
+        if(counters.length < tierCount) {
+            LongAdder[] grown = java.util.Arrays.copyOf(counters, tierCount);
+
+            for (int i = counters.length; i < tierCount; i++) {
+                grown[i] = new LongAdder();
+            }
+
+            tierHits = grown;
+            counters = grown;
+        }
+
+        return counters;
+    }
+
+    private void commitMilestone(int correct, long week) {
+        MilestoneEvent event = new MilestoneEvent();
+
+        if(event.shouldCommit()) {
+            event.game = game;
+            event.correct = correct;
+            event.week = week;
+            event.commit();
+        }
+    }
+
+    /**
+     * Collects the metrics of one simulation loop and adds them to the shared counters
+     * when flushed. Used by one thread only.
+     */
+    public class Recorder {
+        private final Syndicate.Matcher matcher;
+        private final long[] flushedTierCounts;
+        private long flushedWeek;
+        private BatchEvent batch;
+
+        private Recorder(Syndicate.Matcher matcher, long firstWeek) {
+            this.matcher = matcher;
+            this.flushedTierCounts = matcher.getTierCounts().clone();
+            this.flushedWeek = firstWeek;
+            this.batch = beginBatch();
+        }
+
+        /**
+         * Adds the weeks drawn and the tiers hit since the previous flush to the counters.
+         *
+         * @param week the latest week drawn.
+         */
+        public void flush(long week) {
+            if(enabled) {
+                long[] tierCounts = matcher.getTierCounts();
+                LongAdder[] counters = tierHits;
+
+                if(counters.length < tierCounts.length) {
+                    counters = ensureTiers(tierCounts.length);
+                }
+
+                for (int i = 0; i < tierCounts.length; i++) {
+                    if(tierCounts[i] != flushedTierCounts[i]) {
+                        counters[i].add(tierCounts[i] - flushedTierCounts[i]);
+                    }
+                }
+
+                draws.add(week - flushedWeek);
+                currentWeek.accumulate(week);
+            }
+
+            if(batch.shouldCommit()) {
+                batch.game = game;
+                batch.firstWeek = flushedWeek + 1;
+                batch.draws = week - flushedWeek;
+                batch.commit();
+            }
+
+            System.arraycopy(matcher.getTierCounts(), 0, flushedTierCounts, 0, flushedTierCounts.length);
+            flushedWeek = week;
+            batch = beginBatch();
+        }
+
+        /**
+         * Records that an amount of correct numbers was reached for the first time.
+         *
+         * @param correct the amount of correct numbers.
+         * @param week the week starting from 1.
+         */
+        public void milestone(int correct, long week) {
+            commitMilestone(correct, week);
+        }
+
+        private BatchEvent beginBatch() {
+            BatchEvent event = new BatchEvent();
+            event.begin();
+
+            return event;
+        }
+    }
+
+    /**
+     * Recorded when an amount of correct numbers is reached for the first time in a lifetime.
+     */
+    @Name("fi.tuni.tamk.tiko.malmbergtapio.Milestone")
+    @Label("Lotto Milestone")
+    @Category("Lotto Simulator")
+    @Description("An amount of correct numbers reached for the first time in a lifetime")
+    static class MilestoneEvent extends Event {
+        @Label("Game")
+        String game;
+
+        @Label("Correct Numbers")
+        int correct;
+
+        @Label("Week")
+        long week;
+    }
+
+    /**
+     * Recorded for every flushed batch of weeks, its duration is the time it took to draw them.
+     */
+    @Name("fi.tuni.tamk.tiko.malmbergtapio.Batch")
+    @Label("Lotto Batch")
+    @Category("Lotto Simulator")
+    @Description("A batch of weeks drawn and matched by one thread")
+    static class BatchEvent extends Event {
+        @Label("Game")
+        String game;
+
+        @Label("First Week")
+        long firstWeek;
+
+        @Label("Draws")
+        long draws;
+    }
+}
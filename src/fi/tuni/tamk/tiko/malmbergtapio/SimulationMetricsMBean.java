@@ -0,0 +1,85 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * The management interface of {@link SimulationMetrics}, shown by JMX clients
+ * such as jconsole under {@link SimulationMetrics#OBJECT_NAME}.
+ *
+ * @author Tapio Malmberg
+ */
+public interface SimulationMetricsMBean {
+    /**
+     * Gets the name of the game of the latest run.
+     *
+     * @return the name of the game, empty before the first run.
+     */
+    String getGame();
+
+    /**
+     * Gets if the simulation loops update the counters.
+     *
+     * @return true if the metrics are collected.
+     */
+    boolean isEnabled();
+
+    /**
+     * Sets if the simulation loops update the counters.
+     *
+     * @param enabled true to collect the metrics.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Gets the amount of weeks drawn since the start of the latest run.
+     *
+     * @return the amount of draws.
+     */
+    long getDraws();
+
+    /**
+     * Gets the amount of draws per second since the previous time this was asked,
+     * at most once a second.
+     *
+     * @return the recent draws per second.
+     */
+    double getDrawsPerSecond();
+
+    /**
+     * Gets the amount of draws per second since the start of the latest run.
+     *
+     * @return the average draws per second.
+     */
+    double getAverageDrawsPerSecond();
+
+    /**
+     * Gets how many tickets got each amount of numbers right since the start of the latest run.
+     *
+     * @return the hit counts indexed by the amount of correct numbers.
+     */
+    long[] getTierHits();
+
+    /**
+     * Gets the latest week reached in the current lifetime.
+     *
+     * @return the week.
+     */
+    long getCurrentWeek();
+
+    /**
+     * Gets the latest week reached in the current lifetime in years.
+     *
+     * @return the years.
+     */
+    long getCurrentYears();
+
+    /**
+     * Gets the amount of lifetimes started since the start of the latest run.
+     *
+     * @return the amount of lifetimes.
+     */
+    long getLifetimes();
+
+    /**
+     * Sets all the counters to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,368 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.LogHistogram;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP service that plays batches of runs for other programs.
+ *
+ * GET /simulate?game=Eurojackpot&amp;numbers=1,2,3,4,5&amp;runs=1000&amp;seed=42 plays the
+ * runs like a batch job and answers with the statistics as JSON. The optional
+ * parameters are engine (fast by default), random and seed. GET /games lists the games.
+ * The settings file is watched while the server runs, so games can be added without
+ * a restart.
+ *
+ * Each request is handled on its own thread, a virtual thread when the Java version
+ * has them. The simulations themselves run on a fixed pool with one thread per
+ * processor core and a bounded queue. When the queue is full the request is
+ * answered with 503 so that the callers can retry later. The weekly engine draws
+ * about as many weeks per run as there are different draws, so its requests are
+ * limited by the expected amount of draws instead of only by the runs, which keeps
+ * a single request from holding a worker for hours.
+ *
+ * Requests with a seed are deterministic, so identical requests that arrive while
+ * the first one is still running wait for the same result instead of playing
+ * the runs again.
+ *
+ * @author Tapio Malmberg
+ */
+public class SimulationServer {
+    /**
+     * The most runs a single request may ask for.
+     */
+    public static final long MAX_RUNS = 100_000_000L;
+
+    /**
+     * The most weeks a request for the weekly engine may be expected to draw.
+     */
+    public static final long MAX_WEEKLY_DRAWS = 1_000_000_000L;
+
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a server listening on the loopback address.
+     *
+     * @param port the port, 0 for any free port.
+     * @param threads the amount of simulation threads, 0 for one per processor core.
+     * @throws IOException if the port cannot be bound.
+     */
+    public SimulationServer(int port, int threads) throws IOException {
+        int workerCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        this.handlers = createHandlerExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        server.createContext("/simulate", this::handleSimulate);
+        server.createContext("/games", this::handleGames);
+        server.setExecutor(handlers);
+    }
+
+    /**
+     * Creates an executor with a virtual thread for each task if the Java version
+     * supports them, otherwise with a new or reused platform thread for each task.
+     *
+     * @return the executor for the request handlers.
+     */
+    private static ExecutorService createHandlerExecutor() {
+        try {
+            // Virtual threads are only available since Java 21
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts answering requests and watching the settings file.
+     *
+     * @throws IOException if the settings file cannot be watched.
+     */
+    public void start() throws IOException {
+        GameRegistry.getDefault().startWatching();
+        server.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server and the simulations still running.
+     */
+    public void stop() {
+        server.stop(0);
+        GameRegistry.getDefault().stopWatching();
+        handlers.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void handleGames(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        List<LottoSettings> games = GameRegistry.getDefault().getSnapshot().getGames();
+
+        for (int i = 0; i < games.size(); i++) {
+            LottoSettings game = games.get(i);
+
+            json.append(i == 0 ? "" : ",")
+                .append("{\"name\":\"").append(escape(game.name))
+                .append("\",\"maxNumber\":").append(game.maxNumber)
+                .append(",\"numberCount\":").append(game.numberCount).append('}');
+        }
+
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private void handleSimulate(HttpExchange exchange) throws IOException {
+        BatchJob job;
+
+        try {
+            job = parseJob(parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch(IllegalArgumentException e) {
+            send(exchange, 400, "{\"error\":\"" + escape(e.getMessage()) + "\"}");
+            return;
+        }
+
+        try {
+            send(exchange, 200, getResult(job));
+        } catch(RejectedExecutionException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, "{\"error\":\"Too many simulations queued\"}");
+        } catch(ExecutionException e) {
+            send(exchange, 500, "{\"error\":\"" + escape(String.valueOf(e.getCause())) + "\"}");
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "{\"error\":\"The server is stopping\"}");
+        }
+    }
+
+    /**
+     * Plays the job or waits for an identical job that is already being played.
+     *
+     * @param job the job to be played.
+     * @return the statistics as JSON.
+     * @throws RejectedExecutionException if the queue of the workers is full.
+     * @throws ExecutionException if the simulation fails.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    private String getResult(BatchJob job) throws ExecutionException, InterruptedException {
+        String key = getKey(job);
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, created);
+
+        if(existing != null) {
+            try {
+                return existing.get();
+            } catch(ExecutionException e) {
+                // The identical job did not fit into the queue either
+                if(e.getCause() instanceof RejectedExecutionException) {
+                    throw (RejectedExecutionException) e.getCause();
+                }
+
+                throw e;
+            }
+        }
+
+        try {
+            workers.execute(() -> {
+                try {
+                    created.complete(toJson(job, new BatchRunner(job).play()));
+                } catch(RuntimeException | Error e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+
+        return created.get();
+    }
+
+    /**
+     * Gets the key that identifies jobs with the same result.
+     *
+     * Without a seed every job gets a random seed, so the seed is always part of the key.
+     *
+     * @param job the job.
+     * @return the key.
+     */
+    private static String getKey(BatchJob job) {
+        StringBuilder key = new StringBuilder();
+        key.append(job.settings.name).append(';').append(job.settings.maxNumber).append(';')
+            .append(job.settings.numberCount).append(';').append(job.runs).append(';').append(job.engine)
+            .append(';').append(job.random.getAlgorithm()).append(';').append(job.random.getSeed());
+
+        for (int t = 0; t < job.syndicate.getTicketCount(); t++) {
+            key.append(';').append(java.util.Arrays.toString(job.syndicate.getTicket(t)));
+        }
+
+        return key.toString();
+    }
+
+    private static BatchJob parseJob(Map<String, String> query) {
+        String game = getRequired(query, "game");
+        LottoSettings settings = LottoSettings.getByName(game);
+        if(settings == null) {
+            throw new IllegalArgumentException("Unknown game: " + game);
+        }
+
+        String[] values = getRequired(query, "numbers").trim().split("[\\s,;]+");
+        int[] numbers = new int[values.length];
+
+        try {
+            for (int i = 0; i < values.length; i++) {
+                numbers[i] = Integer.parseInt(values[i]);
+            }
+
+            long runs = Long.parseLong(getRequired(query, "runs"));
+            if(runs > MAX_RUNS) {
+                throw new IllegalArgumentException("At most " + MAX_RUNS + " runs are allowed");
+            }
+
+            String algorithm = query.getOrDefault("random", RandomSource.DEFAULT_ALGORITHM);
+            String seed = query.get("seed");
+            RandomSource random = seed != null ? RandomSource.create(algorithm, Long.parseLong(seed)) : RandomSource.create(algorithm);
+
+            BatchJob job = new BatchJob(Syndicate.of(settings, numbers), runs, random, 1,
+                query.getOrDefault("engine", BatchJob.ENGINE_FAST), null, BatchJob.FORMAT_CSV);
+            checkWeeklyDraws(job);
+
+            return job;
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that a job for the weekly engine can be expected to finish in reasonable time.
+     *
+     * A run draws weeks until the jackpot is won within a lifetime, which takes about
+     * one week per different draw of the game however the weeks are split into lifetimes.
+     *
+     * @param job the job.
+     * @throws IllegalArgumentException if the job would draw too many weeks.
+     */
+    private static void checkWeeklyDraws(BatchJob job) {
+        if(!job.engine.equals(BatchJob.ENGINE_WEEKLY)) {
+            return;
+        }
+
+        double jackpot = GameRegistry.getDefault().getTables(job.settings).getFastForward()
+            .getProbabilityAtLeast(job.settings.numberCount);
+        long maxRuns = (long) (MAX_WEEKLY_DRAWS * jackpot);
+
+        if(job.runs > maxRuns) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                "The weekly engine draws about %.0f weeks per run of %s, so at most %d runs are allowed;"
+                + " the fast engine allows more", 1 / jackpot, job.settings.name, maxRuns));
+        }
+    }
+
+    private static String getRequired(Map<String, String> query, String key) {
+        String value = query.get(key);
+
+        if(value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: " + key);
+        }
+
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+
+        if(query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+
+                if(separator > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        return parameters;
+    }
+
+    private static String toJson(BatchJob job, RunStatistics statistics) {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\"game\":\"").append(escape(job.settings.name))
+            .append("\",\"runs\":").append(statistics.getRunCount())
+            .append(",\"engine\":\"").append(job.engine)
+            .append("\",\"random\":\"").append(escape(job.random.getAlgorithm()))
+            .append("\",\"seed\":").append(job.random.getSeed())
+            .append(",\"retries\":");
+        appendHistogram(json, statistics.getRetries());
+
+        json.append(",\"weeks\":{");
+        for (int correct = 1; correct <= statistics.getNumberCount(); correct++) {
+            json.append(correct == 1 ? "\"" : ",\"").append(correct).append("\":");
+            appendHistogram(json, statistics.getWeeks(correct));
+        }
+
+        return json.append("}}").toString();
+    }
+
+    private static void appendHistogram(StringBuilder json, LogHistogram histogram) {
+        json.append(String.format(Locale.ROOT, "{\"mean\":%.3f,\"stdDev\":%.3f", histogram.getMean(), histogram.getStandardDeviation()))
+            .append(",\"p50\":").append(histogram.getValueAtPercentile(50))
+            .append(",\"p90\":").append(histogram.getValueAtPercentile(90))
+            .append(",\"p99\":").append(histogram.getValueAtPercentile(99))
+            .append(",\"max\":").append(histogram.getMax()).append('}');
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Bounded cache of the results of sweep points, so that repeated and overlapping
+ * sweeps do not play the same runs again.
+ *
+ * When the cache is full, the result that was used the longest time ago is evicted.
+ * The cache can be saved into a file and loaded in a later sweep. The file contains
+ * the magic bytes LOTTOSWP and the version, the amount of entries and the points and
+ * results from the least to the most recently used, followed by a CRC-32 of everything
+ * before it. The cache is thread safe.
+ *
+ * @author Tapio Malmberg
+ */
+public class SweepCache {
+    /**
+     * The first bytes of a cache file.
+     */
+    public static final byte[] MAGIC = "LOTTOSWP".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the file format.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The default amount of results kept.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final LinkedHashMap<SweepPoint, SweepResult> results;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the amount of results kept.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public SweepCache(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("The cache size must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+
+        // Access order makes the eldest entry the least recently used one
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SweepPoint, SweepResult> eldest) {
+                return size() > SweepCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the result of a point if it is in the cache.
+     *
+     * @param point the point.
+     * @return the result, or null if it is not in the cache.
+     */
+    public synchronized SweepResult get(SweepPoint point) {
+        SweepResult result = results.get(point);
+
+        if(result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the result of a point, evicting the least recently used result if the cache is full.
+     *
+     * @param point the point.
+     * @param result the result of the point.
+     */
+    public synchronized void put(SweepPoint point, SweepResult result) {
+        results.put(point, result);
+    }
+
+    /**
+     * Gets the amount of results in the cache.
+     *
+     * @return the amount of results.
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Gets the amount of results kept at most.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets how many times a result was found in the cache.
+     *
+     * @return the amount of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets how many times a result was not found in the cache.
+     *
+     * @return the amount of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Writes the results into a file. The file is replaced atomically, so a crash
+     * while saving leaves the previous file intact.
+     *
+     * @param file the file to be written.
+     * @throws IOException if writing the file fails.
+     */
+    public void save(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        output.write(MAGIC);
+        output.writeInt(VERSION);
+
+        synchronized(this) {
+            output.writeInt(results.size());
+
+            for (Map.Entry<SweepPoint, SweepResult> entry : results.entrySet()) {
+                entry.getKey().write(output);
+                entry.getValue().write(output);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        output.writeInt((int) crc.getValue());
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, bytes.toByteArray());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the results saved into a file. If the file has more results than fit,
+     * the least recently used ones are left out.
+     *
+     * @param file the file to be read.
+     * @param capacity the amount of results kept.
+     * @return the cache.
+     * @throws IOException if reading the file fails.
+     * @throws IllegalArgumentException if the file is not a valid cache file.
+     */
+    public static SweepCache load(Path file, int capacity) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        SweepCache cache = new SweepCache(capacity);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, java.lang.Math.max(0, bytes.length - 4));
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] magic = new byte[MAGIC.length];
+            input.readFully(magic);
+
+            if(!java.util.Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Not a sweep cache: " + file);
+            } else if(input.readInt() != VERSION) {
+                throw new IllegalArgumentException("Unsupported sweep cache version: " + file);
+            } else if(ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt() != (int) crc.getValue()) {
+                throw new IllegalArgumentException("Sweep cache is damaged: " + file);
+            }
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                cache.put(SweepPoint.read(input), SweepResult.read(input));
+            }
+        } catch(EOFException e) {
+            throw new IllegalArgumentException("Sweep cache is truncated: " + file, e);
+        }
+
+        return cache;
+    }
+}
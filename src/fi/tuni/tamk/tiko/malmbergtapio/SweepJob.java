@@ -0,0 +1,181 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Immutable description of a parameter sweep over a grid of games and tickets.
+ *
+ * A sweep is read from a properties file, for example:
+ *
+ * <pre>
+ * maxNumbers=30-50:5
+ * numberCounts=5,6,7
+ * strategies=first,random
+ * ticketCounts=1,10
+ * runs=10000
+ * engine=weekly
+ * seed=42
+ * threads=8
+ * cache=sweep.cache
+ * </pre>
+ *
+ * The lists are separated with commas and can contain ranges, optionally with a
+ * step after a colon. Every combination of the lists is one {@link SweepPoint};
+ * combinations that draw more numbers than the game has are left out. The tickets
+ * are chosen by the strategies of {@link SweepPoint}. With a cache file the results
+ * are kept between the sweeps, at most cacheSize of them.
+ *
+ * @author Tapio Malmberg
+ */
+public class SweepJob {
+    public final List<SweepPoint> points;
+    public final int threads;
+    public final Path cache;
+    public final int cacheSize;
+
+    /**
+     * Creates a sweep.
+     *
+     * @param points the points of the grid in the order they are printed.
+     * @param threads the amount of threads, 0 for one per processor core.
+     * @param cache the file the results are cached in, or null.
+     * @param cacheSize the amount of results kept in the cache.
+     * @throws IllegalArgumentException if there are no points or the cache size is not positive.
+     */
+    public SweepJob(List<SweepPoint> points, int threads, Path cache, int cacheSize) {
+        if(points.isEmpty()) {
+            throw new IllegalArgumentException("The sweep has no games");
+        } else if(cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize must be positive: " + cacheSize);
+        }
+
+        this.points = Collections.unmodifiableList(new ArrayList<>(points));
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.cache = cache;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Reads a sweep from a properties file.
+     *
+     * Relative paths in the file are resolved against the directory of the file.
+     *
+     * @param file the file to be read.
+     * @return a new sweep.
+     * @throws IOException if reading the file fails.
+     * @throws IllegalArgumentException if a value is missing or not valid.
+     */
+    public static SweepJob load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        List<Integer> maxNumbers = parseList(getRequired(properties, "maxNumbers"));
+        List<Integer> numberCounts = parseList(getRequired(properties, "numberCounts"));
+        List<Integer> ticketCounts = parseList(properties.getProperty("ticketCounts", "1"));
+        String[] strategies = properties.getProperty("strategies", SweepPoint.STRATEGY_FIRST).trim().split("\\s*,\\s*");
+        long runs = Long.parseLong(getRequired(properties, "runs").trim());
+        String engine = properties.getProperty("engine", BatchJob.ENGINE_WEEKLY).trim();
+        String algorithm = properties.getProperty("random", RandomSource.DEFAULT_ALGORITHM).trim();
+        String seed = properties.getProperty("seed");
+
+        if(runs < 1) {
+            throw new IllegalArgumentException("runs must be positive: " + runs);
+        } else if(!engine.equals(BatchJob.ENGINE_WEEKLY) && !engine.equals(BatchJob.ENGINE_FAST)) {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+
+        // Without a seed every sweep plays different runs, so nothing could be reused from the cache
+        long seedValue = seed != null && !seed.isBlank() ? Long.parseLong(seed.trim()) : RandomSource.create(algorithm).getSeed();
+
+        List<SweepPoint> points = new ArrayList<>();
+        for (int maxNumber : maxNumbers) {
+            for (int numberCount : numberCounts) {
+                if(numberCount < 1 || numberCount > maxNumber) {
+                    continue;
+                }
+
+                for (String strategy : strategies) {
+                    for (int ticketCount : ticketCounts) {
+                        if(ticketCount < 1) {
+                            throw new IllegalArgumentException("ticketCounts must be positive: " + ticketCount);
+                        } else if(engine.equals(BatchJob.ENGINE_FAST) && ticketCount > 1) {
+                            throw new IllegalArgumentException("The fast engine only supports a single ticket");
+                        }
+
+                        points.add(SweepPoint.create(maxNumber, numberCount, strategy, ticketCount, engine, algorithm,
+                            seedValue, runs));
+                    }
+                }
+            }
+        }
+
+        String cache = properties.getProperty("cache");
+
+        return new SweepJob(
+            points,
+            Integer.parseInt(properties.getProperty("threads", "0").trim()),
+            cache != null && !cache.isBlank() ? file.toAbsolutePath().getParent().resolve(cache.trim()) : null,
+            Integer.parseInt(properties.getProperty("cacheSize", Integer.toString(SweepCache.DEFAULT_CAPACITY)).trim()));
+    }
+
+    /**
+     * Parses a list of integers like 5,7,30-40 or 30-50:5.
+     *
+     * @param value the list.
+     * @return the integers in the order they were given.
+     * @throws IllegalArgumentException if the list is not valid.
+     */
+    static List<Integer> parseList(String value) {
+        List<Integer> values = new ArrayList<>();
+
+        for (String item : value.trim().split("\\s*,\\s*")) {
+            String range = item;
+            int step = 1;
+
+            if(item.contains(":")) {
+                range = item.substring(0, item.indexOf(':'));
+                step = Integer.parseInt(item.substring(item.indexOf(':') + 1).trim());
+            }
+
+            if(step < 1) {
+                throw new IllegalArgumentException("The step must be positive: " + item);
+            }
+
+            int dash = range.indexOf('-', 1);
+            int first = Integer.parseInt((dash > 0 ? range.substring(0, dash) : range).trim());
+            int last = dash > 0 ? Integer.parseInt(range.substring(dash + 1).trim()) : first;
+
+            if(last < first) {
+                throw new IllegalArgumentException("The range is empty: " + item);
+            }
+
+            for (long number = first; number <= last; number += step) {
+                values.add((int) number);
+            }
+        }
+
+        return values;
+    }
+
+    private static String getRequired(Properties properties, String key) {
+        String value = properties.getProperty(key);
+
+        if(value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing value: " + key);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,232 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable point of a parameter sweep: a game, the tickets played and the runs
+ * played with them.
+ *
+ * Two points are equal when they play the same game with the same tickets, engine,
+ * random numbers and amount of runs, so the points are used as the keys of
+ * {@link SweepCache}. The names of the game and of the ticket strategy are only
+ * shown to the user and do not affect the equality.
+ *
+ * @author Tapio Malmberg
+ */
+public class SweepPoint {
+    /**
+     * The strategy that plays consecutive numbers, the next ticket continuing where the previous ended.
+     */
+    public static final String STRATEGY_FIRST = "first";
+
+    /**
+     * The strategy that spreads the numbers of a ticket evenly over the whole range.
+     */
+    public static final String STRATEGY_SPREAD = "spread";
+
+    /**
+     * The strategy that chooses the numbers at random with the seed of the sweep.
+     */
+    public static final String STRATEGY_RANDOM = "random";
+
+    private final LottoSettings settings;
+    private final String strategy;
+    private final int[][] tickets;
+    private final String engine;
+    private final String algorithm;
+    private final long seed;
+    private final long runs;
+
+    /**
+     * Creates a point.
+     *
+     * @param settings the settings of the game.
+     * @param strategy the name of the strategy the tickets were chosen with.
+     * @param tickets the numbers of each ticket in ascending order.
+     * @param engine {@link BatchJob#ENGINE_WEEKLY} or {@link BatchJob#ENGINE_FAST}.
+     * @param algorithm the random algorithm.
+     * @param seed the seed of the random numbers.
+     * @param runs the amount of runs.
+     */
+    public SweepPoint(LottoSettings settings, String strategy, int[][] tickets, String engine, String algorithm,
+            long seed, long runs) {
+        this.settings = settings;
+        this.strategy = strategy;
+        this.tickets = new int[tickets.length][];
+        this.engine = engine;
+        this.algorithm = algorithm;
+        this.seed = seed;
+        this.runs = runs;
+
+        for (int t = 0; t < tickets.length; t++) {
+            this.tickets[t] = tickets[t].clone();
+        }
+    }
+
+    /**
+     * Creates a point with tickets chosen by a strategy.
+     *
+     * @param maxNumber the largest number of the game.
+     * @param numberCount how many numbers are drawn.
+     * @param strategy {@link #STRATEGY_FIRST}, {@link #STRATEGY_SPREAD} or {@link #STRATEGY_RANDOM}.
+     * @param ticketCount the amount of tickets.
+     * @param engine {@link BatchJob#ENGINE_WEEKLY} or {@link BatchJob#ENGINE_FAST}.
+     * @param algorithm the random algorithm.
+     * @param seed the seed of the random numbers.
+     * @param runs the amount of runs.
+     * @return a new point.
+     * @throws IllegalArgumentException if the strategy is unknown.
+     */
+    public static SweepPoint create(int maxNumber, int numberCount, String strategy, int ticketCount, String engine,
+            String algorithm, long seed, long runs) {
+        LottoSettings settings = new LottoSettings(maxNumber + "/" + numberCount, maxNumber, numberCount);
+        int[][] tickets = new int[ticketCount][numberCount];
+
+        for (int t = 0; t < ticketCount; t++) {
+            if(strategy.equals(STRATEGY_FIRST)) {
+                for (int i = 0; i < numberCount; i++) {
+                    tickets[t][i] = (int) (((long) t * numberCount + i) % maxNumber) + 1;
+                }
+            } else if(strategy.equals(STRATEGY_SPREAD)) {
+                for (int i = 0; i < numberCount; i++) {
+                    tickets[t][i] = (int) (((long) i * maxNumber / numberCount + t) % maxNumber) + 1;
+                }
+            } else if(strategy.equals(STRATEGY_RANDOM)) {
+                int[] numbers = new int[maxNumber];
+                for (int i = 0; i < maxNumber; i++) {
+                    numbers[i] = i + 1;
+                }
+
+                RandomSource.create(algorithm, seed).forStream(t).sample(numbers, numberCount);
+                System.arraycopy(numbers, 0, tickets[t], 0, numberCount);
+            } else {
+                throw new IllegalArgumentException("Unknown ticket strategy: " + strategy);
+            }
+
+            Arrays.sort(tickets[t]);
+        }
+
+        return new SweepPoint(settings, strategy, tickets, engine, algorithm, seed, runs);
+    }
+
+    /**
+     * Creates the batch job that plays the runs of the point on one thread.
+     *
+     * @return a new job.
+     * @throws IllegalArgumentException if the tickets are not valid for the engine.
+     */
+    public BatchJob createJob() {
+        return new BatchJob(Syndicate.of(settings, tickets), runs, RandomSource.create(algorithm, seed), 1, engine,
+            null, BatchJob.FORMAT_CSV);
+    }
+
+    /**
+     * Gets the settings of the game.
+     *
+     * @return the settings.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets the name of the strategy the tickets were chosen with.
+     *
+     * @return the name of the strategy.
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Gets the amount of tickets.
+     *
+     * @return the amount of tickets.
+     */
+    public int getTicketCount() {
+        return tickets.length;
+    }
+
+    /**
+     * Gets the amount of runs.
+     *
+     * @return the amount of runs.
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Writes the point so that it can be read back with {@link #read(DataInput)}.
+     *
+     * @param output the output the point is written to.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput output) throws IOException {
+        settings.write(output);
+        output.writeUTF(strategy);
+        output.writeUTF(engine);
+        output.writeUTF(algorithm);
+        output.writeLong(seed);
+        output.writeLong(runs);
+        output.writeInt(tickets.length);
+
+        for (int[] ticket : tickets) {
+            for (int number : ticket) {
+                output.writeInt(number);
+            }
+        }
+    }
+
+    /**
+     * Reads a point written with {@link #write(DataOutput)}.
+     *
+     * @param input the input the point is read from.
+     * @return the point.
+     * @throws IOException if reading fails.
+     */
+    public static SweepPoint read(DataInput input) throws IOException {
+        LottoSettings settings = LottoSettings.read(input);
+        String strategy = input.readUTF();
+        String engine = input.readUTF();
+        String algorithm = input.readUTF();
+        long seed = input.readLong();
+        long runs = input.readLong();
+        int[][] tickets = new int[input.readInt()][settings.numberCount];
+
+        for (int[] ticket : tickets) {
+            for (int i = 0; i < ticket.length; i++) {
+                ticket[i] = input.readInt();
+            }
+        }
+
+        return new SweepPoint(settings, strategy, tickets, engine, algorithm, seed, runs);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(this == other) {
+            return true;
+        } else if(!(other instanceof SweepPoint)) {
+            return false;
+        }
+
+        SweepPoint point = (SweepPoint) other;
+
+        return settings.maxNumber == point.settings.maxNumber && settings.numberCount == point.settings.numberCount
+            && seed == point.seed && runs == point.runs && engine.equals(point.engine)
+            && algorithm.equals(point.algorithm) && Arrays.deepEquals(tickets, point.tickets);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(settings.maxNumber, settings.numberCount, seed, runs, engine, algorithm,
+            Arrays.deepHashCode(tickets));
+    }
+}
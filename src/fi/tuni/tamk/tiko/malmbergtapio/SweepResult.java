@@ -0,0 +1,168 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.LogHistogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable summary of the runs of one {@link SweepPoint}.
+ *
+ * Only the mean and a few percentiles of each distribution are kept instead of
+ * the whole histograms of {@link RunStatistics}, so that thousands of results fit
+ * into {@link SweepCache}.
+ *
+ * @author Tapio Malmberg
+ */
+public class SweepResult {
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    private final long runs;
+    private final double[] meanWeeks;
+    private final long[][] percentileWeeks;
+    private final double meanRetries;
+
+    private SweepResult(long runs, double[] meanWeeks, long[][] percentileWeeks, double meanRetries) {
+        this.runs = runs;
+        this.meanWeeks = meanWeeks;
+        this.percentileWeeks = percentileWeeks;
+        this.meanRetries = meanRetries;
+    }
+
+    /**
+     * Summarizes the statistics of a batch.
+     *
+     * @param statistics the statistics of the runs.
+     * @return the summary.
+     */
+    public static SweepResult of(RunStatistics statistics) {
+        int numberCount = statistics.getNumberCount();
+        double[] meanWeeks = new double[numberCount + 1];
+        long[][] percentileWeeks = new long[numberCount + 1][PERCENTILES.length];
+
+        for (int correct = 1; correct <= numberCount; correct++) {
+            LogHistogram weeks = statistics.getWeeks(correct);
+            meanWeeks[correct] = weeks.getMean();
+
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                percentileWeeks[correct][i] = weeks.getValueAtPercentile(PERCENTILES[i]);
+            }
+        }
+
+        return new SweepResult(statistics.getRunCount(), meanWeeks, percentileWeeks,
+            statistics.getRetries().getMean());
+    }
+
+    /**
+     * Gets the amount of runs.
+     *
+     * @return the amount of runs.
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Gets how many numbers are drawn in the game.
+     *
+     * @return the highest amount of correct numbers.
+     */
+    public int getNumberCount() {
+        return meanWeeks.length - 1;
+    }
+
+    /**
+     * Gets the mean of the first weeks when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the mean in weeks.
+     */
+    public double getMeanWeeks(int correct) {
+        return meanWeeks[correct];
+    }
+
+    /**
+     * Gets the median of the first weeks when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the median in weeks.
+     */
+    public long getMedianWeeks(int correct) {
+        return percentileWeeks[correct][0];
+    }
+
+    /**
+     * Gets the 90th percentile of the first weeks when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the percentile in weeks.
+     */
+    public long get90thPercentileWeeks(int correct) {
+        return percentileWeeks[correct][1];
+    }
+
+    /**
+     * Gets the 99th percentile of the first weeks when at least the given amount of numbers was correct.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the percentile in weeks.
+     */
+    public long get99thPercentileWeeks(int correct) {
+        return percentileWeeks[correct][2];
+    }
+
+    /**
+     * Gets the mean amount of lifetimes played before the jackpot was won in time.
+     *
+     * @return the mean retries.
+     */
+    public double getMeanRetries() {
+        return meanRetries;
+    }
+
+    /**
+     * Writes the result so that it can be read back with {@link #read(DataInput)}.
+     *
+     * @param output the output the result is written to.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeLong(runs);
+        output.writeDouble(meanRetries);
+        output.writeInt(getNumberCount());
+
+        for (int correct = 1; correct <= getNumberCount(); correct++) {
+            output.writeDouble(meanWeeks[correct]);
+
+            for (long weeks : percentileWeeks[correct]) {
+                output.writeLong(weeks);
+            }
+        }
+    }
+
+    /**
+     * Reads a result written with {@link #write(DataOutput)}.
+     *
+     * @param input the input the result is read from.
+     * @return the result.
+     * @throws IOException if reading fails.
+     */
+    public static SweepResult read(DataInput input) throws IOException {
+        long runs = input.readLong();
+        double meanRetries = input.readDouble();
+        int numberCount = input.readInt();
+        double[] meanWeeks = new double[numberCount + 1];
+        long[][] percentileWeeks = new long[numberCount + 1][PERCENTILES.length];
+
+        for (int correct = 1; correct <= numberCount; correct++) {
+            meanWeeks[correct] = input.readDouble();
+
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                percentileWeeks[correct][i] = input.readLong();
+            }
+        }
+
+        return new SweepResult(runs, meanWeeks, percentileWeeks, meanRetries);
+    }
+}
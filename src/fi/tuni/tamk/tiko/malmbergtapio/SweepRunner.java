@@ -0,0 +1,118 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays the points of a sweep on a shared pool of threads.
+ *
+ * Every point that is not in the cache is played on one thread with
+ * {@link BatchRunner#play()}, so the pool stays busy with whole points instead of
+ * starting and stopping threads for every game. Points that appear in the grid
+ * more than once are only played once. The results are added to the cache and
+ * passed to the listener in the order of the grid, as soon as all the earlier
+ * points are done.
+ *
+ * @author Tapio Malmberg
+ */
+public class SweepRunner {
+    /**
+     * Receives the results of the points.
+     */
+    public interface Listener {
+        /**
+         * Called for every point of the sweep in the order of the grid.
+         *
+         * @param point the point.
+         * @param result the result, or null if playing the point failed.
+         * @param cached true if the result was found in the cache.
+         * @param error the reason the point failed, or null.
+         */
+        void pointDone(SweepPoint point, SweepResult result, boolean cached, RuntimeException error);
+    }
+
+    private final SweepJob job;
+    private final SweepCache cache;
+    private int played;
+
+    /**
+     * Creates a runner for a sweep.
+     *
+     * @param job the sweep to be played.
+     * @param cache the cache the results are looked up from and added to.
+     */
+    public SweepRunner(SweepJob job, SweepCache cache) {
+        this.job = job;
+        this.cache = cache;
+    }
+
+    /**
+     * Plays all the points of the sweep that are not in the cache.
+     *
+     * A point that fails, for example because the game is too big for the engine,
+     * is passed to the listener with the error and the other points are still played.
+     *
+     * @param listener the listener that gets the results.
+     * @throws InterruptedException if the thread is interrupted while waiting for results.
+     */
+    public void run(Listener listener) throws InterruptedException {
+        SimulationMetrics.getDefault().startRun(job.points.get(0).getSettings());
+        ExecutorService executor = Executors.newFixedThreadPool(job.threads);
+        Map<SweepPoint, SweepResult> cached = new HashMap<>();
+        Map<SweepPoint, Future<SweepResult>> running = new HashMap<>();
+
+        try {
+            for (SweepPoint point : job.points) {
+                if(cached.containsKey(point) || running.containsKey(point)) {
+                    continue;
+                }
+
+                SweepResult result = cache.get(point);
+                if(result != null) {
+                    cached.put(point, result);
+                } else {
+                    running.put(point, executor.submit(() -> SweepResult.of(new BatchRunner(point.createJob()).play())));
+                }
+            }
+
+            played = running.size();
+
+            for (SweepPoint point : job.points) {
+                Future<SweepResult> future = running.get(point);
+
+                if(future == null) {
+                    listener.pointDone(point, cached.get(point), true, null);
+                    continue;
+                }
+
+                // A point repeated in the grid gets the same result or error again
+                try {
+                    SweepResult result = future.get();
+                    cache.put(point, result);
+                    listener.pointDone(point, result, false, null);
+                } catch(ExecutionException e) {
+                    if(!(e.getCause() instanceof RuntimeException)) {
+                        throw new IllegalStateException("Simulation failed", e.getCause());
+                    }
+
+                    listener.pointDone(point, null, false, (RuntimeException) e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets how many points were played instead of being found in the cache.
+     *
+     * @return the amount of played points.
+     */
+    public int getPlayed() {
+        return played;
+    }
+}
@@ -0,0 +1,433 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Bitmask;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Immutable set of lottery tickets played together.
+ *
+ * The tickets are stored as bitmasks in a single array. Large syndicates also
+ * get an index from each number to the tickets containing it, so matching a draw
+ * only visits the tickets that have at least one correct number.
+ *
+ * @author Tapio Malmberg
+ */
+public class Syndicate {
+    /**
+     * Syndicates with more tickets than this are matched using the index.
+     * Smaller ones are faster to match by comparing every ticket with the draw.
+     */
+    public static final int INDEX_THRESHOLD = 64;
+
+    /**
+     * If the Vector API was enabled with --add-modules jdk.incubator.vector.
+     */
+    private static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final LottoSettings settings;
+    private final int wordCount;
+    private final int ticketCount;
+    private final long[] masks;
+    private final int[][] ticketsByNumber;
+
+    private Syndicate(LottoSettings settings, long[] masks, int ticketCount) {
+        this.settings = settings;
+        this.wordCount = Bitmask.wordCount(settings.maxNumber);
+        this.ticketCount = ticketCount;
+        this.masks = masks;
+        this.ticketsByNumber = ticketCount > INDEX_THRESHOLD ? createIndex() : null;
+    }
+
+    /**
+     * Creates a syndicate from the given tickets.
+     *
+     * @param settings the settings used for the lottery.
+     * @param tickets the numbers of each ticket.
+     * @return a new syndicate.
+     * @throws IllegalArgumentException if a ticket is not valid for the settings.
+     */
+    public static Syndicate of(LottoSettings settings, int[]... tickets) {
+        int wordCount = Bitmask.wordCount(settings.maxNumber);
+        long[] masks = new long[tickets.length * wordCount];
+
+        for (int i = 0; i < tickets.length; i++) {
+            addTicket(settings, masks, i * wordCount, tickets[i]);
+        }
+
+        return new Syndicate(settings, masks, tickets.length);
+    }
+
+    /**
+     * Loads the tickets from a file.
+     *
+     * Each line of the file contains the numbers of one ticket separated by
+     * spaces, commas or semicolons. Empty lines and lines starting with # are skipped.
+     *
+     * @param file the file to be read.
+     * @param settings the settings used for the lottery.
+     * @return a new syndicate.
+     * @throws IOException if reading the file fails.
+     * @throws IllegalArgumentException if a ticket is not valid for the settings.
+     */
+    public static Syndicate load(Path file, LottoSettings settings) throws IOException {
+        int wordCount = Bitmask.wordCount(settings.maxNumber);
+        long[] masks = new long[1024 * wordCount];
+        int[] numbers = new int[settings.numberCount];
+        int ticketCount = 0;
+        int lineNumber = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if(line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] values = line.split("[\\s,;]+");
+                if(values.length != settings.numberCount) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + settings.numberCount + " numbers needed");
+                }
+
+                try {
+                    for (int i = 0; i < numbers.length; i++) {
+                        numbers[i] = Integer.parseInt(values[i]);
+                    }
+                } catch(NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": Not a number", e);
+                }
+
+                if((ticketCount + 1) * wordCount > masks.length) {
+                    masks = java.util.Arrays.copyOf(masks, masks.length * 2);
+                }
+
+                try {
+                    addTicket(settings, masks, ticketCount * wordCount, numbers);
+                } catch(IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+
+                ticketCount++;
+            }
+        }
+
+        if(ticketCount == 0) {
+            throw new IllegalArgumentException("No tickets in " + file);
+        }
+
+        return new Syndicate(settings, java.util.Arrays.copyOf(masks, ticketCount * wordCount), ticketCount);
+    }
+
+    private static void addTicket(LottoSettings settings, long[] masks, int offset, int[] numbers) {
+        if(numbers.length != settings.numberCount) {
+            throw new IllegalArgumentException(settings.numberCount + " numbers needed");
+        }
+
+        for (int i = 0; i < numbers.length; i++) {
+            int number = numbers[i];
+
+            if(number < 1 || number > settings.maxNumber) {
+                throw new IllegalArgumentException("Invalid number: " + number);
+            }
+
+            long bit = 1L << ((number - 1) % Bitmask.BITS_PER_WORD);
+            int word = offset + (number - 1) / Bitmask.BITS_PER_WORD;
+
+            if((masks[word] & bit) != 0) {
+                throw new IllegalArgumentException("Duplicate number: " + number);
+            }
+
+            masks[word] |= bit;
+        }
+    }
+
+    private int[][] createIndex() {
+        int[][] index = new int[settings.maxNumber + 1][];
+        int[] sizes = new int[settings.maxNumber + 1];
+        long[] ticket = new long[wordCount];
+
+        // Count the tickets for each number first so that the arrays are exactly sized
+        for (int t = 0; t < ticketCount; t++) {
+            for (int number : getTicket(t, ticket)) {
+                sizes[number]++;
+            }
+        }
+
+        for (int number = 1; number < index.length; number++) {
+            index[number] = new int[sizes[number]];
+            sizes[number] = 0;
+        }
+
+        for (int t = 0; t < ticketCount; t++) {
+            for (int number : getTicket(t, ticket)) {
+                index[number][sizes[number]] = t;
+                sizes[number]++;
+            }
+        }
+
+        return index;
+    }
+
+    private int[] getTicket(int ticketIndex, long[] ticket) {
+        return Bitmask.toArray(getTicketMasks(ticketIndex, ticket));
+    }
+
+    /**
+     * Gets the settings the tickets were made for.
+     *
+     * @return the settings used for the lottery.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets the amount of tickets.
+     *
+     * @return the amount of tickets.
+     */
+    public int getTicketCount() {
+        return ticketCount;
+    }
+
+    /**
+     * Gets the numbers of a ticket.
+     *
+     * @param ticketIndex the index of the ticket.
+     * @return the numbers of the ticket in ascending order.
+     */
+    public int[] getTicket(int ticketIndex) {
+        return getTicket(ticketIndex, new long[wordCount]);
+    }
+
+    /**
+     * Copies the mask of a ticket into an array.
+     *
+     * @param ticketIndex the index of the ticket.
+     * @param output an array with room for the mask of one ticket.
+     * @return the output array.
+     */
+    public long[] getTicketMasks(int ticketIndex, long[] output) {
+        System.arraycopy(masks, ticketIndex * wordCount, output, 0, wordCount);
+        return output;
+    }
+
+    /**
+     * Creates a matcher for the tickets.
+     *
+     * A matcher has its own working memory, so each thread needs its own matcher.
+     * The matcher uses the Vector API when it is available and suits the tickets.
+     *
+     * @return a new matcher.
+     */
+    public Matcher createMatcher() {
+        return new Matcher(true);
+    }
+
+    /**
+     * Creates a matcher for the tickets, optionally without the Vector API.
+     *
+     * @param vectorize if the Vector API is used when it is available.
+     * @return a new matcher.
+     */
+    public Matcher createMatcher(boolean vectorize) {
+        return new Matcher(vectorize);
+    }
+
+    /**
+     * Checks if the tickets can be matched with the Vector API.
+     *
+     * The vectors are used instead of the index for tickets that fit in a single word.
+     * Smaller syndicates are faster to match with the scalar loop.
+     *
+     * @return true if a matcher uses the Vector API.
+     */
+    public boolean isVectorized() {
+        return VECTOR_AVAILABLE && wordCount == 1 && settings.numberCount <= VectorMatcher.MAX_NUMBER_COUNT
+            && ticketCount > INDEX_THRESHOLD;
+    }
+
+    /**
+     * Counts the correct numbers of every ticket in a draw.
+     */
+    public class Matcher {
+        private final byte[] counts;
+        private final int[] touched;
+        private final long[] tierCounts;
+        private final VectorMatcher vectorMatcher;
+        private int bestTicket;
+
+        private Matcher(boolean vectorize) {
+            this.tierCounts = new long[settings.numberCount + 1];
+            this.vectorMatcher = vectorize && isVectorized() ? new VectorMatcher(masks, ticketCount) : null;
+
+            if(ticketsByNumber != null && vectorMatcher == null) {
+                this.counts = new byte[ticketCount];
+                this.touched = new int[ticketCount];
+            } else {
+                this.counts = null;
+                this.touched = null;
+            }
+        }
+
+        /**
+         * Counts the correct numbers of every ticket in the latest draw of the machine.
+         *
+         * The amount of tickets with each amount of correct numbers is added
+         * to the tier counts.
+         *
+         * @param lottoMachine the machine that made the draw.
+         * @return the most correct numbers any ticket got.
+         */
+        public int match(LottoMachine lottoMachine) {
+            return match(lottoMachine.getDrawMasks());
+        }
+
+        /**
+         * Counts the correct numbers of every ticket in a draw.
+         *
+         * The amount of tickets with each amount of correct numbers is added
+         * to the tier counts.
+         *
+         * @param draw the mask of the drawn numbers.
+         * @return the most correct numbers any ticket got.
+         */
+        public int match(long[] draw) {
+            if(vectorMatcher != null) {
+                int best = vectorMatcher.match(draw[0], tierCounts);
+                bestTicket = vectorMatcher.getBestTicket();
+
+                return best;
+            } else if(ticketsByNumber != null) {
+                return matchIndexed(draw);
+            } else if(wordCount == 1) {
+                return matchSingleWord(draw[0]);
+            }
+
+            return matchMultiWord(draw);
+        }
+
+        private int matchSingleWord(long draw) {
+            int best = -1;
+
+            for (int t = 0; t < ticketCount; t++) {
+                int correct = Long.bitCount(masks[t] & draw);
+                tierCounts[correct]++;
+
+                if(correct > best) {
+                    best = correct;
+                    bestTicket = t;
+                }
+            }
+
+            return best;
+        }
+
+        private int matchMultiWord(long[] draw) {
+            int best = -1;
+
+            for (int t = 0; t < ticketCount; t++) {
+                int correct = 0;
+                int offset = t * wordCount;
+
+                for (int i = 0; i < wordCount; i++) {
+                    correct += Long.bitCount(masks[offset + i] & draw[i]);
+                }
+
+                tierCounts[correct]++;
+
+                if(correct > best) {
+                    best = correct;
+                    bestTicket = t;
+                }
+            }
+
+            return best;
+        }
+
+        private int matchIndexed(long[] draw) {
+            int touchedCount = 0;
+
+            // Only visit the tickets that contain a drawn number
+            for (int i = 0; i < draw.length; i++) {
+                long word = draw[i];
+
+                while(word != 0) {
+                    int number = i * Bitmask.BITS_PER_WORD + Long.numberOfTrailingZeros(word) + 1;
+                    int[] tickets = ticketsByNumber[number];
+
+                    for (int j = 0; j < tickets.length; j++) {
+                        int t = tickets[j];
+
+                        if(counts[t] == 0) {
+                            touched[touchedCount] = t;
+                            touchedCount++;
+                        }
+
+                        counts[t]++;
+                    }
+
+                    word &= word - 1;
+                }
+            }
+
+            int best = 0;
+            bestTicket = 0;
+
+            for (int i = 0; i < touchedCount; i++) {
+                int t = touched[i];
+                int correct = counts[t];
+
+                tierCounts[correct]++;
+
+                if(correct > best || (correct == best && t < bestTicket)) {
+                    best = correct;
+                    bestTicket = t;
+                }
+
+                counts[t] = 0;
+            }
+
+            tierCounts[0] += ticketCount - touchedCount;
+
+            return best;
+        }
+
+        /**
+         * Gets the syndicate whose tickets are matched.
+         *
+         * @return the syndicate.
+         */
+        public Syndicate getSyndicate() {
+            return Syndicate.this;
+        }
+
+        /**
+         * Gets the index of the ticket with the most correct numbers in the latest match.
+         *
+         * If several tickets got the same amount, the one with the smallest index is returned.
+         *
+         * @return the index of the best ticket.
+         */
+        public int getBestTicket() {
+            return bestTicket;
+        }
+
+        /**
+         * Gets how many tickets have had each amount of correct numbers in all the matches so far.
+         *
+         * @return the ticket counts indexed by the amount of correct numbers.
+         */
+        public long[] getTierCounts() {
+            return tierCounts;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Math;
+
+/**
+ * Keeps count of how many tickets of a set get at least k numbers right in every
+ * possible draw of a game.
+ *
+ * The draws are stored by their colexicographic rank (see
+ * {@link fi.tuni.tamk.tiko.malmbergtapio.util.Combinations}), one counter per draw,
+ * so the amount of covered draws is exact. The tickets are bitmasks. Only the draws
+ * a ticket covers are visited, and they are found directly by choosing the numbers
+ * in ascending order and skipping any choice that can no longer give the needed
+ * amount of correct numbers.
+ *
+ * Swapping one number of a ticket only changes the draws that contain one of the two
+ * numbers and exactly k - 1 of the other numbers of the ticket, which is a fraction of
+ * all the draws the ticket covers. {@link #getSwapGain(int, int, int)} counts the
+ * change without changing anything, so rejected swaps only read the counters.
+ *
+ * A coverage is not thread safe; each thread should use its own coverage.
+ *
+ * @author Tapio Malmberg
+ */
+public class TicketCoverage {
+    /**
+     * The largest amount of draws, which keeps the counters of a thread below 64 MB.
+     */
+    public static final long MAX_DRAWS = 1 << 26;
+
+    /**
+     * The largest amount of tickets, which fits the counters into bytes.
+     */
+    public static final int MAX_TICKETS = 255;
+
+    private final LottoSettings settings;
+    private final int hits;
+    private final long[] tickets;
+    private final byte[] counts;
+    private final int[][] rankSteps;
+    private final long allNumbers;
+    private long covered;
+
+    /**
+     * Creates a coverage with the given tickets.
+     *
+     * @param settings the settings of the game.
+     * @param hits how many numbers of a ticket have to be correct to cover a draw.
+     * @param tickets the tickets as bitmasks, number n in bit n - 1.
+     * @throws IllegalArgumentException if the game or the amounts are not supported.
+     */
+    public TicketCoverage(LottoSettings settings, int hits, long[] tickets) {
+        if(settings.maxNumber > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " numbers are supported");
+        } else if(hits < 1 || hits > settings.numberCount) {
+            throw new IllegalArgumentException("Cannot get " + hits + " of " + settings.numberCount + " numbers right");
+        } else if(tickets.length < 1 || tickets.length > MAX_TICKETS) {
+            throw new IllegalArgumentException("The amount of tickets must be in the range [1, " + MAX_TICKETS + "]");
+        } else if(getDrawCount(settings) > MAX_DRAWS) {
+            throw new IllegalArgumentException(settings.name + " has more than " + MAX_DRAWS + " draws");
+        }
+
+        this.settings = settings;
+        this.hits = hits;
+        this.tickets = tickets.clone();
+        this.counts = new byte[(int) getDrawCount(settings)];
+        this.allNumbers = settings.maxNumber == Long.SIZE ? -1L : (1L << settings.maxNumber) - 1;
+
+        // The step of the rank when number x is the (i + 1)th smallest number of the draw is C(x - 1, i + 1)
+        this.rankSteps = new int[settings.maxNumber + 1][settings.numberCount];
+        for (int number = 1; number <= settings.maxNumber; number++) {
+            for (int i = 0; i < settings.numberCount; i++) {
+                rankSteps[number][i] = (int) Math.binomialExact(number - 1, i + 1);
+            }
+        }
+
+        for (long ticket : this.tickets) {
+            if(Long.bitCount(ticket) != settings.numberCount || (ticket & ~allNumbers) != 0) {
+                throw new IllegalArgumentException("A ticket needs " + settings.numberCount + " numbers from 1 to "
+                    + settings.maxNumber);
+            }
+
+            for (int correct = hits; correct <= settings.numberCount; correct++) {
+                covered += add(ticket, correct);
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of different draws in a game.
+     *
+     * @param settings the settings of the game.
+     * @return the amount of draws.
+     */
+    public static long getDrawCount(LottoSettings settings) {
+        return GameRegistry.getDefault().getTables(settings).getCombinations().getCount();
+    }
+
+    /**
+     * Gets how many numbers of a ticket have to be correct to cover a draw.
+     *
+     * @return the amount of correct numbers.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the amount of draws where at least one ticket gets enough numbers right.
+     *
+     * @return the amount of covered draws.
+     */
+    public long getCovered() {
+        return covered;
+    }
+
+    /**
+     * Gets the tickets.
+     *
+     * @return a copy of the tickets as bitmasks.
+     */
+    public long[] getTickets() {
+        return tickets.clone();
+    }
+
+    /**
+     * Gets a ticket.
+     *
+     * @param index the index of the ticket.
+     * @return the ticket as a bitmask.
+     */
+    public long getTicket(int index) {
+        return tickets[index];
+    }
+
+    /**
+     * Counts how the amount of covered draws would change if a number of a ticket
+     * was replaced with another. Nothing is changed.
+     *
+     * @param index the index of the ticket.
+     * @param out the number on the ticket.
+     * @param in the number not on the ticket.
+     * @return the change in the amount of covered draws.
+     */
+    public long getSwapGain(int index, int out, int in) {
+        return visitSwap(index, out, in, false);
+    }
+
+    /**
+     * Replaces a number of a ticket with another.
+     *
+     * @param index the index of the ticket.
+     * @param out the number on the ticket.
+     * @param in the number not on the ticket.
+     */
+    public void swap(int index, int out, int in) {
+        covered += visitSwap(index, out, in, true);
+        tickets[index] = tickets[index] & ~(1L << (out - 1)) | 1L << (in - 1);
+    }
+
+    /**
+     * Goes through the draws where exactly the given amount of the ticket's numbers
+     * are correct and adds the ticket to their counters.
+     *
+     * The numbers are chosen from the largest down, so the draws are visited in
+     * descending rank and the counters are written mostly in order.
+     *
+     * @return the amount of draws that were not covered before.
+     */
+    private long add(long ticket, int correct) {
+        return add(settings.maxNumber, settings.numberCount, 0, ticket, ~ticket & allNumbers, correct);
+    }
+
+    private long add(int number, int left, int rank, long ticket, long others, int correct) {
+        if(left == 0) {
+            return counts[rank]++ == 0 ? 1 : 0;
+        }
+
+        // Only the numbers from 1 to this one can still be chosen
+        long below = number == Long.SIZE ? -1L : (1L << number) - 1;
+        int needed = left - correct;
+
+        if(needed < 0 || needed > Long.bitCount(others & below) || correct > Long.bitCount(ticket & below)) {
+            return 0;
+        }
+
+        long bit = 1L << (number - 1);
+        int step = rankSteps[number][left - 1];
+        long result = add(number - 1, left, rank, ticket, others, correct);
+
+        if((ticket & bit) != 0) {
+            result += correct > 0 ? add(number - 1, left - 1, rank + step, ticket, others, correct - 1) : 0;
+        } else {
+            result += needed > 0 ? add(number - 1, left - 1, rank + step, ticket, others, correct) : 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Goes through the draws a swap changes. They are the draws with k - 1 of the
+     * other numbers of the ticket and either the old or the new number but not both:
+     * the ticket stops covering them with the old number and starts with the new one.
+     * Both draws are the same numbers S with the old or the new number added, so
+     * they are visited together and only S is enumerated.
+     *
+     * @return the change in the covered draws.
+     */
+    private long visitSwap(int index, int out, int in, boolean apply) {
+        long rest = tickets[index] & ~(1L << (out - 1));
+        long others = ~(rest | 1L << (out - 1) | 1L << (in - 1)) & allNumbers;
+
+        return visitSwap(settings.maxNumber, settings.numberCount - 1, 0, 0, out, in, rest, others, hits - 1, apply);
+    }
+
+    private long visitSwap(int number, int left, int rankOut, int rankIn, int out, int in, long rest, long others,
+            int correct, boolean apply) {
+        if(left == 0) {
+            // The old or the new number below all of S is the smallest number of its draw
+            rankOut += out <= number ? rankSteps[out][0] : 0;
+            rankIn += in <= number ? rankSteps[in][0] : 0;
+
+            return apply ? applySwap(rankOut, rankIn) : countSwap(rankOut, rankIn);
+        }
+
+        long below = number == Long.SIZE ? -1L : (1L << number) - 1;
+        int needed = left - correct;
+
+        if(needed < 0 || needed > Long.bitCount(others & below) || correct > Long.bitCount(rest & below)) {
+            return 0;
+        }
+
+        // The old and the new number are above the left numbers of S
+        if(number == out) {
+            return visitSwap(number - 1, left, rankOut + rankSteps[out][left], rankIn, out, in, rest, others, correct,
+                apply);
+        } else if(number == in) {
+            return visitSwap(number - 1, left, rankOut, rankIn + rankSteps[in][left], out, in, rest, others, correct,
+                apply);
+        }
+
+        long bit = 1L << (number - 1);
+        int stepOut = rankSteps[number][out < number ? left : left - 1];
+        int stepIn = rankSteps[number][in < number ? left : left - 1];
+        long result = visitSwap(number - 1, left, rankOut, rankIn, out, in, rest, others, correct, apply);
+
+        if((rest & bit) != 0) {
+            result += correct > 0 ? visitSwap(number - 1, left - 1, rankOut + stepOut, rankIn + stepIn, out, in, rest,
+                others, correct - 1, apply) : 0;
+        } else if((others & bit) != 0) {
+            result += needed > 0 ? visitSwap(number - 1, left - 1, rankOut + stepOut, rankIn + stepIn, out, in, rest,
+                others, correct, apply) : 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Counts the change in the covered draws when the ticket moves from one draw to the other.
+     */
+    private int countSwap(int rankOut, int rankIn) {
+        return (counts[rankIn] == 0 ? 1 : 0) - ((counts[rankOut] & 0xFF) == 1 ? 1 : 0);
+    }
+
+    /**
+     * Moves the ticket from one draw to the other.
+     *
+     * @return the change in the covered draws.
+     */
+    private int applySwap(int rankOut, int rankIn) {
+        return (counts[rankIn]++ == 0 ? 1 : 0) - (--counts[rankOut] == 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,204 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import fi.tuni.tamk.tiko.malmbergtapio.util.Arrays;
+import fi.tuni.tamk.tiko.malmbergtapio.util.RandomSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches for the set of tickets that maximizes the chance of at least one
+ * of them getting at least k numbers right.
+ *
+ * Every thread runs its own simulated annealing from random tickets with its
+ * own random stream and its own {@link TicketCoverage}, so the threads share
+ * nothing until the end, and more threads search more of the sets in the same
+ * time. A move replaces one number of one ticket with a number that is not on
+ * it. Moves that cover more draws are always taken and moves that cover fewer
+ * are taken with a probability that falls with the temperature, which cools
+ * from the typical size of a move to a thousandth of it during the time budget.
+ * The best set found by any of the threads is returned.
+ *
+ * The amount of covered draws is counted exactly over every possible draw, so
+ * the result is the exact probability of the tickets, not an estimate.
+ *
+ * @author Tapio Malmberg
+ */
+public class TicketOptimizer {
+    private static final int CALIBRATION_MOVES = 20;
+    private static final double FINAL_TEMPERATURE = 1e-3;
+
+    private final LottoSettings settings;
+    private final int ticketCount;
+    private final int hits;
+
+    /**
+     * Creates an optimizer.
+     *
+     * @param settings the settings of the game.
+     * @param ticketCount the amount of tickets in the set.
+     * @param hits how many numbers of a ticket have to be correct.
+     * @throws IllegalArgumentException if the game or the amounts are not supported.
+     */
+    public TicketOptimizer(LottoSettings settings, int ticketCount, int hits) {
+        if(settings.maxNumber > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " numbers are supported");
+        } else if(settings.numberCount == settings.maxNumber) {
+            throw new IllegalArgumentException("Every ticket of " + settings.name + " is the same");
+        } else if(hits < 1 || hits > settings.numberCount) {
+            throw new IllegalArgumentException("Cannot get " + hits + " of " + settings.numberCount + " numbers right");
+        } else if(ticketCount < 1 || ticketCount > TicketCoverage.MAX_TICKETS) {
+            throw new IllegalArgumentException("The amount of tickets must be in the range [1, "
+                + TicketCoverage.MAX_TICKETS + "]");
+        } else if(TicketCoverage.getDrawCount(settings) > TicketCoverage.MAX_DRAWS) {
+            throw new IllegalArgumentException(settings.name + " has more than " + TicketCoverage.MAX_DRAWS + " draws");
+        }
+
+        this.settings = settings;
+        this.ticketCount = ticketCount;
+        this.hits = hits;
+    }
+
+    /**
+     * Searches for the best set of tickets within a time budget.
+     *
+     * @param random the random source the streams of the threads are derived from.
+     * @param threads the amount of threads, 0 for one per processor core.
+     * @param nanos the time budget in nanoseconds.
+     * @return the best set found.
+     * @throws InterruptedException if the thread is interrupted while waiting for the searches.
+     * @throws IllegalStateException if a search thread fails.
+     */
+    public CoverageResult optimize(RandomSource random, int threads, long nanos) throws InterruptedException {
+        threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        long deadline = System.nanoTime() + nanos;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<CoverageResult>> chains = new ArrayList<>();
+
+            for (int chain = 0; chain < threads; chain++) {
+                RandomSource stream = random.forStream(chain);
+                chains.add(executor.submit(() -> anneal(stream, deadline)));
+            }
+
+            CoverageResult best = null;
+            long moves = 0;
+
+            for (Future<CoverageResult> chain : chains) {
+                CoverageResult result = chain.get();
+                moves += result.getMoves();
+
+                if(best == null || result.getCovered() > best.getCovered()) {
+                    best = result;
+                }
+            }
+
+            return new CoverageResult(settings, hits, best.getTicketMasks(), best.getCovered(), best.getDrawCount(), moves,
+                threads);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one simulated annealing until the deadline.
+     */
+    private CoverageResult anneal(RandomSource random, long deadline) {
+        long start = System.nanoTime();
+        TicketCoverage coverage = new TicketCoverage(settings, hits, createTickets(random));
+        long[] bestTickets = coverage.getTickets();
+        long best = coverage.getCovered();
+        long moves = 0;
+
+        // The temperature starts from the typical change of a move
+        double gains = 0;
+        for (int i = 0; i < CALIBRATION_MOVES; i++) {
+            int index = random.nextInt(0, ticketCount - 1);
+            long ticket = coverage.getTicket(index);
+            gains += java.lang.Math.abs(coverage.getSwapGain(index, pickNumber(random, ticket), pickOther(random, ticket)));
+        }
+
+        double initialTemperature = java.lang.Math.max(1, gains / CALIBRATION_MOVES);
+        double duration = java.lang.Math.max(1, deadline - start);
+
+        // A move usually visits thousands of draws, so reading the clock every time costs little
+        while(true) {
+            long now = System.nanoTime();
+            if(now >= deadline || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            double temperature = initialTemperature * java.lang.Math.pow(FINAL_TEMPERATURE, (now - start) / duration);
+            int index = random.nextInt(0, ticketCount - 1);
+            long ticket = coverage.getTicket(index);
+            int out = pickNumber(random, ticket);
+            int in = pickOther(random, ticket);
+            long gain = coverage.getSwapGain(index, out, in);
+            moves++;
+
+            if(gain >= 0 || random.nextDouble() < java.lang.Math.exp(gain / temperature)) {
+                coverage.swap(index, out, in);
+
+                if(coverage.getCovered() > best) {
+                    best = coverage.getCovered();
+                    bestTickets = coverage.getTickets();
+                }
+            }
+        }
+
+        return new CoverageResult(settings, hits, bestTickets, best, TicketCoverage.getDrawCount(settings), moves, 1);
+    }
+
+    /**
+     * Creates random tickets.
+     */
+    private long[] createTickets(RandomSource random) {
+        int[] numbers = Arrays.range(1, settings.maxNumber);
+        long[] tickets = new long[ticketCount];
+
+        for (int i = 0; i < tickets.length; i++) {
+            random.sample(numbers, settings.numberCount);
+
+            for (int j = 0; j < settings.numberCount; j++) {
+                tickets[i] |= 1L << (numbers[j] - 1);
+            }
+        }
+
+        return tickets;
+    }
+
+    /**
+     * Picks a random number on the ticket.
+     */
+    private int pickNumber(RandomSource random, long ticket) {
+        return getNumber(ticket, random.nextInt(0, settings.numberCount - 1));
+    }
+
+    /**
+     * Picks a random number that is not on the ticket.
+     */
+    private int pickOther(RandomSource random, long ticket) {
+        long others = ~ticket & (settings.maxNumber == Long.SIZE ? -1L : (1L << settings.maxNumber) - 1);
+
+        return getNumber(others, random.nextInt(0, settings.maxNumber - settings.numberCount - 1));
+    }
+
+    /**
+     * Gets the nth smallest number in a mask, starting from 0.
+     */
+    private static int getNumber(long mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+
+        return Long.numberOfTrailingZeros(mask) + 1;
+    }
+}
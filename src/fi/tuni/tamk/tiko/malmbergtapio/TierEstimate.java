@@ -0,0 +1,139 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * Immutable estimate of the probability of each amount of correct numbers,
+ * calculated by {@link RareTierEstimator} from weighted samples.
+ *
+ * Each sample adds its weight to exactly one tier, so the sums of the weights and
+ * of the squared weights are enough to calculate the variance of any tier and of
+ * any range of tiers.
+ *
+ * @author Tapio Malmberg
+ */
+public class TierEstimate {
+    /**
+     * The quantile of the standard normal distribution for a 95% confidence interval.
+     */
+    public static final double Z_95 = 1.959964;
+
+    private final long sampleCount;
+    private final double[] weightSums;
+    private final double[] squaredWeightSums;
+
+    /**
+     * Creates an estimate.
+     *
+     * @param sampleCount the amount of samples.
+     * @param weightSums the sum of the weights of the samples in each tier.
+     * @param squaredWeightSums the sum of the squared weights of the samples in each tier.
+     */
+    public TierEstimate(long sampleCount, double[] weightSums, double[] squaredWeightSums) {
+        this.sampleCount = sampleCount;
+        this.weightSums = weightSums.clone();
+        this.squaredWeightSums = squaredWeightSums.clone();
+    }
+
+    /**
+     * Gets the amount of samples the estimate is based on.
+     *
+     * @return the amount of samples.
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Gets the highest amount of correct numbers.
+     *
+     * @return how many numbers are drawn in the game.
+     */
+    public int getNumberCount() {
+        return weightSums.length - 1;
+    }
+
+    /**
+     * Gets the estimated probability that the best ticket gets exactly the given amount of numbers right.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the estimated probability.
+     */
+    public double getProbability(int correct) {
+        return weightSums[correct] / sampleCount;
+    }
+
+    /**
+     * Gets the estimated probability that the best ticket gets at least the given amount of numbers right.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the estimated probability.
+     */
+    public double getProbabilityAtLeast(int correct) {
+        return sumFrom(weightSums, correct) / sampleCount;
+    }
+
+    /**
+     * Gets the standard error of {@link #getProbability(int)}.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the standard error.
+     */
+    public double getStandardError(int correct) {
+        return java.lang.Math.sqrt(getVariance(weightSums[correct], squaredWeightSums[correct]) / sampleCount);
+    }
+
+    /**
+     * Gets the lower end of the 95% confidence interval of {@link #getProbability(int)}.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the lower end, at least 0.
+     */
+    public double getLowerBound(int correct) {
+        return java.lang.Math.max(0, getProbability(correct) - Z_95 * getStandardError(correct));
+    }
+
+    /**
+     * Gets the upper end of the 95% confidence interval of {@link #getProbability(int)}.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the upper end.
+     */
+    public double getUpperBound(int correct) {
+        return getProbability(correct) + Z_95 * getStandardError(correct);
+    }
+
+    /**
+     * Gets how many times smaller the variance of the estimate is than the variance
+     * of plain simulation with the same amount of draws. Plain simulation needs this
+     * many times more draws for the same accuracy.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the variance reduction factor, infinite if the estimate has no variance
+     *         or NaN if the tier was never sampled.
+     */
+    public double getVarianceReduction(int correct) {
+        double probability = getProbability(correct);
+
+        if(probability == 0) {
+            return Double.NaN;
+        }
+
+        return probability * (1 - probability) / getVariance(weightSums[correct], squaredWeightSums[correct]);
+    }
+
+    private double getVariance(double weightSum, double squaredWeightSum) {
+        double mean = weightSum / sampleCount;
+
+        // The variance of a single weighted sample, rounding errors can make it slightly negative
+        return java.lang.Math.max(0, squaredWeightSum / sampleCount - mean * mean);
+    }
+
+    private static double sumFrom(double[] values, int from) {
+        double sum = 0;
+
+        for (int i = from; i < values.length; i++) {
+            sum += values[i];
+        }
+
+        return sum;
+    }
+}
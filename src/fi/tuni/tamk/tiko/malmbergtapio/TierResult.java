@@ -0,0 +1,90 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * Immutable result of playing the prize tiers of a game until the jackpot or
+ * the end of a lifetime.
+ *
+ * @author Tapio Malmberg
+ */
+public class TierResult {
+    private final LottoSettings settings;
+    private final long[] firstWeeks;
+    private final long[] counts;
+    private final long weeks;
+
+    /**
+     * Creates a result.
+     *
+     * @param settings the settings of the game.
+     * @param firstWeeks the first week each tier was won, 0 if it was not.
+     * @param counts how many times each tier was won, or null if the wins were not counted.
+     * @param weeks the amount of weeks played.
+     */
+    public TierResult(LottoSettings settings, long[] firstWeeks, long[] counts, long weeks) {
+        this.settings = settings;
+        this.firstWeeks = firstWeeks.clone();
+        this.counts = counts != null ? counts.clone() : null;
+        this.weeks = weeks;
+    }
+
+    /**
+     * Gets the settings of the game.
+     *
+     * @return the settings.
+     */
+    public LottoSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Gets the first week a tier was won.
+     *
+     * @param tier the index of the tier in the settings.
+     * @return the week starting from 1, or 0 if the tier was not won.
+     */
+    public long getFirstWeek(int tier) {
+        return firstWeeks[tier];
+    }
+
+    /**
+     * Tells if the wins of each tier were counted.
+     *
+     * @return true if {@link #getCount(int)} is available.
+     */
+    public boolean hasCounts() {
+        return counts != null;
+    }
+
+    /**
+     * Gets how many times a tier was won.
+     *
+     * @param tier the index of the tier in the settings.
+     * @return the amount of wins.
+     * @throws IllegalStateException if the wins were not counted.
+     */
+    public long getCount(int tier) {
+        if(counts == null) {
+            throw new IllegalStateException("The wins were not counted");
+        }
+
+        return counts[tier];
+    }
+
+    /**
+     * Tells if the jackpot was won.
+     *
+     * @return true if the first tier was won.
+     */
+    public boolean isJackpot() {
+        return firstWeeks[0] > 0;
+    }
+
+    /**
+     * Gets the amount of weeks played, which is the week of the jackpot if it was won.
+     *
+     * @return the amount of weeks.
+     */
+    public long getWeeks() {
+        return weeks;
+    }
+}
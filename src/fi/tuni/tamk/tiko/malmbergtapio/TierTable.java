@@ -0,0 +1,90 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+/**
+ * Immutable exact counts of the draws of a game by the amount of correct numbers.
+ *
+ * A table is calculated by {@link ExactOdds} by going through every possible draw.
+ *
+ * @author Tapio Malmberg
+ */
+public class TierTable {
+    private final long drawCount;
+    private final long[] draws;
+    private final long[] tickets;
+
+    /**
+     * Creates a table.
+     *
+     * @param drawCount the amount of different draws in the game.
+     * @param draws the amount of draws where the best ticket had each amount of correct numbers.
+     * @param tickets the amount of tickets with each amount of correct numbers in all the draws.
+     */
+    public TierTable(long drawCount, long[] draws, long[] tickets) {
+        this.drawCount = drawCount;
+        this.draws = draws.clone();
+        this.tickets = tickets.clone();
+    }
+
+    /**
+     * Gets the amount of different draws in the game.
+     *
+     * @return the amount of draws.
+     */
+    public long getDrawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Gets the highest amount of correct numbers.
+     *
+     * @return how many numbers are drawn in the game.
+     */
+    public int getNumberCount() {
+        return draws.length - 1;
+    }
+
+    /**
+     * Gets the amount of draws where the best ticket had exactly the given amount of correct numbers.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the amount of draws.
+     */
+    public long getDraws(int correct) {
+        return draws[correct];
+    }
+
+    /**
+     * Gets the amount of draws where at least one ticket had at least the given amount of correct numbers.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the amount of draws.
+     */
+    public long getDrawsAtLeast(int correct) {
+        long sum = 0;
+        for (int c = correct; c < draws.length; c++) {
+            sum += draws[c];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Gets the probability that at least one ticket has at least the given amount of correct numbers.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the probability in a single week.
+     */
+    public double getProbabilityAtLeast(int correct) {
+        return (double) getDrawsAtLeast(correct) / drawCount;
+    }
+
+    /**
+     * Gets how many tickets had exactly the given amount of correct numbers over all the draws.
+     *
+     * @param correct the amount of correct numbers.
+     * @return the amount of tickets.
+     */
+    public long getTickets(int correct) {
+        return tickets[correct];
+    }
+}
@@ -0,0 +1,148 @@
+package fi.tuni.tamk.tiko.malmbergtapio;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Matches many single-word tickets against a draw with the Vector API.
+ *
+ * Each vector holds the masks of several tickets. The draw is broadcast into
+ * every lane, ANDed with the tickets and the bits are counted with a SWAR popcount,
+ * because the Vector API of Java 17 has no bit count operation. The counts are binned
+ * by adding 1 &lt;&lt; (8 * count) to a lane accumulator, so each byte of a lane counts
+ * the tickets with one amount of correct numbers. That works for up to 7 numbers and
+ * the accumulator is emptied before a byte can overflow.
+ *
+ * This class needs the jdk.incubator.vector module, so it is only used through
+ * {@link Syndicate} when the module is available.
+ *
+ * @author Tapio Malmberg
+ */
+final class VectorMatcher {
+    /**
+     * The most numbers a ticket can have, so that every count has its own byte.
+     */
+    static final int MAX_NUMBER_COUNT = 7;
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * How many vectors are binned before the byte counters of the accumulator could overflow.
+     */
+    private static final int FLUSH_INTERVAL = 255;
+
+    private static final long M1 = 0x5555555555555555L;
+    private static final long M2 = 0x3333333333333333L;
+    private static final long M4 = 0x0f0f0f0f0f0f0f0fL;
+
+    private final long[] masks;
+    private final int ticketCount;
+    private final int vectorEnd;
+    private final LongVector iota;
+    private final long[] bins;
+    private int bestTicket;
+
+    /**
+     * Creates a matcher for the tickets.
+     *
+     * @param masks the single-word masks of the tickets.
+     * @param ticketCount the amount of tickets.
+     */
+    VectorMatcher(long[] masks, int ticketCount) {
+        this.masks = masks;
+        this.ticketCount = ticketCount;
+        this.vectorEnd = SPECIES.loopBound(ticketCount);
+        this.iota = LongVector.zero(SPECIES).addIndex(1);
+        this.bins = new long[SPECIES.length()];
+    }
+
+    /**
+     * Counts the correct numbers of every ticket in a draw.
+     *
+     * @param draw the mask of the drawn numbers.
+     * @param tierCounts the ticket counts indexed by the amount of correct numbers, increased by this match.
+     * @return the most correct numbers any ticket got.
+     */
+    int match(long draw, long[] tierCounts) {
+        LongVector drawVector = LongVector.broadcast(SPECIES, draw);
+        LongVector one = LongVector.broadcast(SPECIES, 1);
+        LongVector accumulator = LongVector.zero(SPECIES);
+        LongVector best = LongVector.broadcast(SPECIES, -1);
+        LongVector bestIndex = LongVector.zero(SPECIES);
+        int binned = 0;
+
+        for (int t = 0; t < vectorEnd; t += SPECIES.length()) {
+            LongVector counts = popcount(LongVector.fromArray(SPECIES, masks, t).and(drawVector));
+
+            accumulator = accumulator.add(one.lanewise(VectorOperators.LSHL, counts.lanewise(VectorOperators.LSHL, 3)));
+            binned++;
+
+            if(binned == FLUSH_INTERVAL) {
+                flush(accumulator, tierCounts);
+                accumulator = LongVector.zero(SPECIES);
+                binned = 0;
+            }
+
+            // Each lane remembers its first ticket with the most correct numbers
+            VectorMask<Long> better = counts.compare(VectorOperators.GT, best);
+            best = best.blend(counts, better);
+            bestIndex = bestIndex.blend(iota.add(t), better);
+        }
+
+        flush(accumulator, tierCounts);
+
+        int bestCount = (int) best.reduceLanes(VectorOperators.MAX);
+        if(bestCount >= 0) {
+            VectorMask<Long> others = best.compare(VectorOperators.NE, bestCount);
+            bestTicket = (int) bestIndex.blend(Long.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+        }
+
+        // The tickets after the last full vector
+        for (int t = vectorEnd; t < ticketCount; t++) {
+            int correct = Long.bitCount(masks[t] & draw);
+            tierCounts[correct]++;
+
+            if(correct > bestCount) {
+                bestCount = correct;
+                bestTicket = t;
+            }
+        }
+
+        return bestCount;
+    }
+
+    /**
+     * Gets the index of the ticket with the most correct numbers in the latest match.
+     *
+     * @return the smallest index of the best tickets.
+     */
+    int getBestTicket() {
+        return bestTicket;
+    }
+
+    private static LongVector popcount(LongVector x) {
+        x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(M1));
+        x = x.and(M2).add(x.lanewise(VectorOperators.LSHR, 2).and(M2));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(M4);
+        x = x.add(x.lanewise(VectorOperators.LSHR, 8));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 16));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 32));
+
+        return x.and(0x7f);
+    }
+
+    private void flush(LongVector accumulator, long[] tierCounts) {
+        accumulator.intoArray(bins, 0);
+
+        for (int lane = 0; lane < bins.length; lane++) {
+            long laneBins = bins[lane];
+
+            for (int correct = 0; laneBins != 0; correct++) {
+                tierCounts[correct] += laneBins & 0xff;
+                laneBins >>>= 8;
+            }
+        }
+    }
+}
@@ -82,6 +82,40 @@ public class Arrays {
         return sameValuesCount;
     }
 
+    /**
+     * Adds two arrays of the same length element by element.
+     *
+     * @param array1 the first array.
+     * @param array2 the second array.
+     * @return a new array with the sums.
+     */
+    public static long[] add(long[] array1, long[] array2) {
+        long[] sums = new long[array1.length];
+
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = array1[i] + array2[i];
+        }
+
+        return sums;
+    }
+
+    /**
+     * Creates an array of consecutive integers.
+     *
+     * @param first the first integer.
+     * @param last the last integer.
+     * @return the integers from first to last in ascending order.
+     */
+    public static int[] range(int first, int last) {
+        int[] output = new int[last - first + 1];
+
+        for (int i = 0; i < output.length; i++) {
+            output[i] = first + i;
+        }
+
+        return output;
+    }
+
     /**
      * Sorts an array of integers into ascending order.
      *
@@ -0,0 +1,157 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+/**
+ * Contains utility methods for storing sets of lottery numbers as bitmasks.
+ *
+ * The number n is stored in the bit (n - 1) % 64 of the word (n - 1) / 64,
+ * so games with numbers up to 64 fit into a single long.
+ *
+ * @author Tapio Malmberg
+ */
+public class Bitmask {
+    /**
+     * The amount of numbers that fit into one word of a mask.
+     */
+    public static final int BITS_PER_WORD = Long.SIZE;
+
+    /**
+     * Returns how many words are needed for a mask of numbers in the range [1, maxNumber].
+     *
+     * @param maxNumber the largest number that can be stored in the mask.
+     * @return the amount of words needed.
+     */
+    public static int wordCount(int maxNumber) {
+        return (maxNumber + BITS_PER_WORD - 1) / BITS_PER_WORD;
+    }
+
+    /**
+     * Returns a single word mask with only the bit for the given number set.
+     *
+     * @param number a number in the range [1, 64].
+     * @return a mask containing the number.
+     */
+    public static long bit(int number) {
+        return 1L << (number - 1);
+    }
+
+    /**
+     * Converts an array of numbers in the range [1, 64] into a single word mask.
+     *
+     * @param numbers the numbers to be stored in the mask.
+     * @return a mask containing the numbers.
+     * @throws IllegalArgumentException if a number is not in the range [1, 64].
+     */
+    public static long toMask(int[] numbers) {
+        long mask = 0;
+
+        for (int i = 0; i < numbers.length; i++) {
+            if(numbers[i] < 1 || numbers[i] > BITS_PER_WORD) {
+                throw new IllegalArgumentException("Number does not fit into a single word mask: " + numbers[i]);
+            }
+
+            mask |= bit(numbers[i]);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Converts an array of numbers in the range [1, maxNumber] into a multi-word mask.
+     *
+     * @param numbers the numbers to be stored in the mask.
+     * @param maxNumber the largest number that can be stored in the mask.
+     * @return a mask containing the numbers.
+     * @throws IllegalArgumentException if a number is not in the range [1, maxNumber].
+     */
+    public static long[] toMasks(int[] numbers, int maxNumber) {
+        long[] masks = new long[wordCount(maxNumber)];
+
+        for (int i = 0; i < numbers.length; i++) {
+            if(numbers[i] < 1 || numbers[i] > maxNumber) {
+                throw new IllegalArgumentException("Number is not in the range [1, " + maxNumber + "]: " + numbers[i]);
+            }
+
+            set(masks, numbers[i]);
+        }
+
+        return masks;
+    }
+
+    /**
+     * Adds a number into a multi-word mask.
+     *
+     * @param masks the mask to be modified.
+     * @param number the number to be added.
+     */
+    public static void set(long[] masks, int number) {
+        masks[(number - 1) / BITS_PER_WORD] |= 1L << ((number - 1) % BITS_PER_WORD);
+    }
+
+    /**
+     * Checks if a number is contained in a multi-word mask.
+     *
+     * @param masks the mask to be searched.
+     * @param number the number that will be searched for.
+     * @return a boolean indicating if the number is in the mask.
+     */
+    public static boolean contains(long[] masks, int number) {
+        return (masks[(number - 1) / BITS_PER_WORD] & (1L << ((number - 1) % BITS_PER_WORD))) != 0;
+    }
+
+    /**
+     * Counts the numbers that are contained in both masks.
+     *
+     * @param masks1 the first mask.
+     * @param masks2 the second mask, at least as long as the first one.
+     * @return the number of same values contained in both masks.
+     */
+    public static int countMatches(long[] masks1, long[] masks2) {
+        int matches = 0;
+
+        for (int i = 0; i < masks1.length; i++) {
+            matches += Long.bitCount(masks1[i] & masks2[i]);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Converts a single word mask into an array of numbers.
+     *
+     * @param mask the mask to be converted.
+     * @return the numbers in the mask in ascending order.
+     */
+    public static int[] toArray(long mask) {
+        return toArray(new long[] { mask });
+    }
+
+    /**
+     * Converts a multi-word mask into an array of numbers.
+     *
+     * @param masks the mask to be converted.
+     * @return the numbers in the mask in ascending order.
+     */
+    public static int[] toArray(long[] masks) {
+        int count = 0;
+        for (int i = 0; i < masks.length; i++) {
+            count += Long.bitCount(masks[i]);
+        }
+
+        int[] numbers = new int[count];
+        int index = 0;
+
+        for (int i = 0; i < masks.length; i++) {
+            long word = masks[i];
+
+            while(word != 0) {
+                numbers[index] = i * BITS_PER_WORD + Long.numberOfTrailingZeros(word) + 1;
+                index++;
+
+                // Clear the lowest set bit
+                word &= word - 1;
+            }
+        }
+
+        return numbers;
+    }
+}
@@ -0,0 +1,142 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+/**
+ * Ranks the combinations of k numbers from 1 to n in colexicographic order.
+ *
+ * In colexicographic order the combinations are compared by their largest
+ * number first. The rank of the ascending numbers x1 &lt; x2 &lt; ... &lt; xk is
+ * C(x1 - 1, 1) + C(x2 - 1, 2) + ... + C(xk - 1, k), so every rank in the range
+ * [0, C(n, k)) belongs to exactly one combination. This allows splitting all the
+ * combinations into ranges of ranks that can be enumerated independently.
+ *
+ * When n is at most 64, the masks of the combinations in colexicographic order
+ * are in ascending order, so the next combination can be found with a few bit operations.
+ *
+ * @author Tapio Malmberg
+ */
+public class Combinations {
+    private final int n;
+    private final int k;
+    private final long[][] binomials;
+
+    /**
+     * Creates the ranking for combinations of k numbers from 1 to n.
+     *
+     * @param n the largest number.
+     * @param k how many numbers are chosen.
+     * @throws IllegalArgumentException if k is not in the range [1, n].
+     * @throws ArithmeticException if there are more than Long.MAX_VALUE combinations.
+     */
+    public Combinations(int n, int k) {
+        if(k < 1 || k > n) {
+            throw new IllegalArgumentException("Cannot choose " + k + " numbers from " + n);
+        }
+
+        this.n = n;
+        this.k = k;
+        this.binomials = new long[n + 1][k + 1];
+
+        // Pascal's triangle, only as wide as needed
+        for (int i = 0; i <= n; i++) {
+            binomials[i][0] = 1;
+
+            for (int j = 1; j <= java.lang.Math.min(i, k); j++) {
+                binomials[i][j] = java.lang.Math.addExact(binomials[i - 1][j - 1], binomials[i - 1][j]);
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of combinations, C(n, k).
+     *
+     * @return the amount of combinations.
+     */
+    public long getCount() {
+        return binomials[n][k];
+    }
+
+    /**
+     * Gets the rank of a combination.
+     *
+     * @param combination the numbers of the combination in ascending order.
+     * @return the rank in the range [0, C(n, k)).
+     */
+    public long rank(int[] combination) {
+        long rank = 0;
+
+        for (int i = 0; i < k; i++) {
+            rank += binomials[combination[i] - 1][i + 1];
+        }
+
+        return rank;
+    }
+
+    /**
+     * Gets the combination with the given rank.
+     *
+     * @param rank the rank in the range [0, C(n, k)).
+     * @param output an array with room for k numbers.
+     * @return the output array with the numbers in ascending order.
+     * @throws IllegalArgumentException if the rank is not in the range.
+     */
+    public int[] unrank(long rank, int[] output) {
+        if(rank < 0 || rank >= getCount()) {
+            throw new IllegalArgumentException("Rank out of range: " + rank);
+        }
+
+        int candidate = n - 1;
+
+        // Find the numbers from the largest down, each is the largest that still fits
+        for (int i = k; i >= 1; i--) {
+            while(binomials[candidate][i] > rank) {
+                candidate--;
+            }
+
+            output[i - 1] = candidate + 1;
+            rank -= binomials[candidate][i];
+            candidate--;
+        }
+
+        return output;
+    }
+
+    /**
+     * Changes a combination into the next one in colexicographic order.
+     *
+     * @param combination the numbers of the combination in ascending order.
+     * @return false if the combination was the last one.
+     */
+    public boolean next(int[] combination) {
+        for (int i = 0; i < k; i++) {
+            int limit = i + 1 < k ? combination[i + 1] : n + 1;
+
+            if(combination[i] + 1 < limit) {
+                combination[i]++;
+
+                for (int j = 0; j < i; j++) {
+                    combination[j] = j + 1;
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the next larger mask with the same amount of bits set.
+     *
+     * For masks created with {@link Bitmask#toMask(int[])} this is the next
+     * combination in colexicographic order.
+     *
+     * @param mask a mask with at least one bit set.
+     * @return the next mask, which is not valid after the last combination.
+     */
+    public static long nextMask(long mask) {
+        long lowest = mask & -mask;
+        long ripple = mask + lowest;
+
+        return (((ripple ^ mask) >>> 2) / lowest) | ripple;
+    }
+}
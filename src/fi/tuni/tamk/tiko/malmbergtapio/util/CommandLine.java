@@ -0,0 +1,126 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+/**
+ * Contains utility methods for reading options from command line arguments.
+ *
+ * Options are given in the format --name=value or just --name.
+ * All other arguments are operands.
+ *
+ * @author Tapio Malmberg
+ */
+public class CommandLine {
+    /**
+     * The prefix that separates options from operands.
+     */
+    public static final String OPTION_PREFIX = "--";
+
+    /**
+     * Returns the arguments that are not options.
+     *
+     * @param args the command line arguments.
+     * @return the operands in the order they were given.
+     */
+    public static String[] getOperands(String[] args) {
+        int count = 0;
+        for (int i = 0; i < args.length; i++) {
+            if(!args[i].startsWith(OPTION_PREFIX)) {
+                count++;
+            }
+        }
+
+        String[] operands = new String[count];
+        int index = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            if(!args[i].startsWith(OPTION_PREFIX)) {
+                operands[index] = args[i];
+                index++;
+            }
+        }
+
+        return operands;
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param args the command line arguments.
+     * @param name the name of the option without the prefix.
+     * @return the value of the option, an empty string if the option has no value
+     *         or null if the option was not given.
+     */
+    public static String getOption(String[] args, String name) {
+        String option = OPTION_PREFIX + name;
+
+        for (int i = 0; i < args.length; i++) {
+            if(args[i].equals(option)) {
+                return "";
+            } else if(args[i].startsWith(option + "=")) {
+                return args[i].substring(option.length() + 1);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks if an option was given.
+     *
+     * @param args the command line arguments.
+     * @param name the name of the option without the prefix.
+     * @return a boolean indicating if the option was found.
+     */
+    public static boolean hasOption(String[] args, String name) {
+        return getOption(args, name) != null;
+    }
+
+    /**
+     * Returns the value of an option as an integer.
+     *
+     * Returns the default value if the option was given without a value. Prints
+     * an error message and returns the default value if the value cannot be
+     * converted into an integer.
+     *
+     * @param args the command line arguments.
+     * @param name the name of the option without the prefix.
+     * @param defaultValue the value returned if the option was not given.
+     * @return the value of the option or the default value.
+     */
+    public static int getInt(String[] args, String name, int defaultValue) {
+        long value = getLong(args, name, defaultValue);
+
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            System.out.println("ERROR: Invalid value for " + OPTION_PREFIX + name + ": " + value);
+            return defaultValue;
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Returns the value of an option as a long.
+     *
+     * Returns the default value if the option was given without a value. Prints
+     * an error message and returns the default value if the value cannot be
+     * converted into a long.
+     *
+     * @param args the command line arguments.
+     * @param name the name of the option without the prefix.
+     * @param defaultValue the value returned if the option was not given.
+     * @return the value of the option or the default value.
+     */
+    public static long getLong(String[] args, String name, long defaultValue) {
+        String value = getOption(args, name);
+
+        if(value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch(NumberFormatException e) {
+            System.out.println("ERROR: Invalid value for " + OPTION_PREFIX + name + ": " + value);
+            return defaultValue;
+        }
+    }
+}
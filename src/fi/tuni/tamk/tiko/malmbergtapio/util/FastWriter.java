@@ -0,0 +1,380 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes text into a channel through large reusable byte buffers.
+ *
+ * Numbers are formatted straight into the buffer, so printing does not create
+ * any strings. The text is written to the channel only when a buffer is full or
+ * the writer is flushed. Optionally the buffers are written by a background thread
+ * while the next buffer is being filled.
+ *
+ * Only ASCII text is supported. A writer is not thread safe.
+ *
+ * @author Tapio Malmberg
+ */
+public class FastWriter implements Closeable {
+    /**
+     * The default size of a buffer in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The amount of buffers used when writing in the background.
+     */
+    private static final int BUFFER_COUNT = 4;
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final BlockingQueue<ByteBuffer> fullBuffers;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final Thread writerThread;
+    private ByteBuffer buffer;
+    private long submitted;
+    private volatile long completed;
+    private volatile IOException failure;
+
+    /**
+     * Creates a writer for a channel.
+     *
+     * @param channel the channel the text is written to.
+     * @param closeChannel if the channel is closed when the writer is closed.
+     * @param bufferSize the size of a buffer in bytes.
+     * @param background if the buffers are written by a background thread.
+     */
+    public FastWriter(WritableByteChannel channel, boolean closeChannel, int bufferSize, boolean background) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+
+        if(background) {
+            this.fullBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+            this.freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+
+            for (int i = 1; i < BUFFER_COUNT; i++) {
+                freeBuffers.add(ByteBuffer.allocate(bufferSize));
+            }
+
+            this.writerThread = new Thread(this::writeInBackground, "FastWriter");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            this.fullBuffers = null;
+            this.freeBuffers = null;
+            this.writerThread = null;
+        }
+    }
+
+    /**
+     * Creates a writer for the standard output stream.
+     *
+     * Closing the writer does not close the standard output stream.
+     *
+     * @param background if the buffers are written by a background thread.
+     * @return a new writer.
+     */
+    public static FastWriter toStandardOutput(boolean background) {
+        System.out.flush();
+
+        FileChannel channel = new FileOutputStream(FileDescriptor.out).getChannel();
+        return new FastWriter(channel, false, DEFAULT_BUFFER_SIZE, background);
+    }
+
+    /**
+     * Creates a writer for a file. An existing file is replaced.
+     *
+     * @param file the file to be written.
+     * @param background if the buffers are written by a background thread.
+     * @return a new writer.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static FastWriter toFile(Path file, boolean background) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+
+        return new FastWriter(channel, true, DEFAULT_BUFFER_SIZE, background);
+    }
+
+    /**
+     * Prints a character.
+     *
+     * @param c an ASCII character.
+     * @return this writer.
+     */
+    public FastWriter print(char c) {
+        ensureCapacity(1);
+        buffer.put((byte) c);
+
+        return this;
+    }
+
+    /**
+     * Prints a string.
+     *
+     * @param str an ASCII string.
+     * @return this writer.
+     */
+    public FastWriter print(String str) {
+        int i = 0;
+
+        while(i < str.length()) {
+            ensureCapacity(1);
+
+            int end = java.lang.Math.min(str.length(), i + buffer.remaining());
+            for (; i < end; i++) {
+                buffer.put((byte) str.charAt(i));
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Prints a string and a line break.
+     *
+     * @param str an ASCII string.
+     * @return this writer.
+     */
+    public FastWriter println(String str) {
+        return print(str).println();
+    }
+
+    /**
+     * Prints a line break.
+     *
+     * @return this writer.
+     */
+    public FastWriter println() {
+        return print('\n');
+    }
+
+    /**
+     * Prints a number.
+     *
+     * @param value the number to be printed.
+     * @return this writer.
+     */
+    public FastWriter print(long value) {
+        return printPadded(value, 0, ' ');
+    }
+
+    /**
+     * Prints a number padded left to the given width.
+     *
+     * @param value the number to be printed.
+     * @param width the minimum amount of characters printed.
+     * @param padChar the character used for the padding.
+     * @return this writer.
+     */
+    public FastWriter printPadded(long value, int width, char padChar) {
+        if(value == Long.MIN_VALUE) {
+            return print(Long.toString(value));
+        }
+
+        boolean negative = value < 0;
+        if(negative) {
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+
+        int length = java.lang.Math.max(width, digits + (negative ? 1 : 0));
+        ensureCapacity(length);
+
+        int start = buffer.position();
+        int end = start + length;
+
+        // Write the digits backwards from the end
+        int position = end;
+        do {
+            position--;
+            buffer.put(position, (byte) ('0' + value % 10));
+            value /= 10;
+        } while(value != 0);
+
+        if(negative) {
+            position--;
+            buffer.put(position, (byte) '-');
+        }
+
+        while(position > start) {
+            position--;
+            buffer.put(position, (byte) padChar);
+        }
+
+        buffer.position(end);
+
+        return this;
+    }
+
+    /**
+     * Prints an array of numbers in the format [01, 02, 03, ...] followed by a line break.
+     *
+     * @param numbers the numbers to be printed.
+     * @param width the width the numbers are padded to with zeros.
+     * @return this writer.
+     */
+    public FastWriter printNumbers(int[] numbers, int width) {
+        print('[');
+
+        for (int i = 0; i < numbers.length; i++) {
+            if(i != 0) {
+                print(", ");
+            }
+
+            printPadded(numbers[i], width, '0');
+        }
+
+        return print(']').println();
+    }
+
+    /**
+     * Prints the numbers of a mask in the format [01, 02, 03, ...] followed by a line break.
+     *
+     * @param masks a mask created with {@link Bitmask#toMasks(int[], int)}.
+     * @param width the width the numbers are padded to with zeros.
+     * @return this writer.
+     */
+    public FastWriter printNumbers(long[] masks, int width) {
+        print('[');
+        boolean first = true;
+
+        for (int i = 0; i < masks.length; i++) {
+            long word = masks[i];
+
+            while(word != 0) {
+                if(!first) {
+                    print(", ");
+                }
+
+                printPadded(i * Bitmask.BITS_PER_WORD + Long.numberOfTrailingZeros(word) + 1, width, '0');
+                first = false;
+
+                word &= word - 1;
+            }
+        }
+
+        return print(']').println();
+    }
+
+    /**
+     * Writes all the printed text into the channel.
+     */
+    public void flush() {
+        submitBuffer();
+
+        if(writerThread != null) {
+            // Wait until the background thread has written every submitted buffer
+            while(completed < submitted && failure == null) {
+                LockSupport.parkNanos(100_000);
+            }
+        }
+
+        checkFailure();
+    }
+
+    /**
+     * Writes all the printed text and stops the background thread.
+     *
+     * The channel is closed if the writer owns it.
+     */
+    @Override
+    public void close() {
+        flush();
+
+        if(writerThread != null) {
+            writerThread.interrupt();
+        }
+
+        if(closeChannel) {
+            try {
+                channel.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if(buffer.remaining() < length) {
+            submitBuffer();
+        }
+    }
+
+    private void submitBuffer() {
+        if(buffer.position() == 0) {
+            return;
+        }
+
+        buffer.flip();
+
+        if(writerThread != null) {
+            checkFailure();
+
+            try {
+                submitted++;
+                fullBuffers.put(buffer);
+                buffer = freeBuffers.take();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while writing", e);
+            }
+        } else {
+            try {
+                writeFully(buffer);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer full) throws IOException {
+        while(full.hasRemaining()) {
+            channel.write(full);
+        }
+    }
+
+    private void writeInBackground() {
+        try {
+            while(true) {
+                ByteBuffer full = fullBuffers.take();
+
+                try {
+                    writeFully(full);
+                } catch(IOException e) {
+                    failure = e;
+                }
+
+                full.clear();
+                freeBuffers.put(full);
+                completed++;
+            }
+        } catch(InterruptedException e) {
+            // The writer was closed
+        }
+    }
+
+    private void checkFailure() {
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+}
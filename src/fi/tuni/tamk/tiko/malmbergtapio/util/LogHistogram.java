@@ -0,0 +1,243 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Histogram of non-negative long values with logarithmic buckets.
+ *
+ * Values below 256 are counted exactly. Larger values are counted in buckets
+ * that split every power of two into 128 parts, so a value read from the histogram
+ * is within 1% of the recorded value. The histogram always uses the same amount of
+ * memory (about 60 kB), no matter how many values are recorded.
+ *
+ * A histogram is not thread safe. Each thread should record into its own histogram,
+ * and the histograms can be combined afterwards with {@link #add(LogHistogram)}.
+ * The mean and the variance are calculated exactly.
+ *
+ * @author Tapio Malmberg
+ */
+public class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private double mean;
+    private double sumOfSquares;
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to be recorded.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void record(long value) {
+        if(value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        counts[getIndex(value)]++;
+        count++;
+        min = java.lang.Math.min(min, value);
+        max = java.lang.Math.max(max, value);
+
+        // Welford's algorithm keeps the variance accurate for large values
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquares += delta * (value - mean);
+    }
+
+    /**
+     * Adds all the values recorded in another histogram into this one.
+     *
+     * @param other the histogram to be added.
+     */
+    public void add(LogHistogram other) {
+        if(other.count == 0) {
+            return;
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+
+        sumOfSquares += other.sumOfSquares + delta * delta * ((double) count * other.count / total);
+        mean += delta * other.count / total;
+        count = total;
+        min = java.lang.Math.min(min, other.min);
+        max = java.lang.Math.max(max, other.max);
+    }
+
+    /**
+     * Gets the amount of recorded values.
+     *
+     * @return the amount of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the smallest recorded value.
+     *
+     * @return the smallest value, or 0 if nothing was recorded.
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return the largest value, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return the mean, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Gets the sample variance of the recorded values.
+     *
+     * @return the variance, or 0 if fewer than two values were recorded.
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : sumOfSquares / (count - 1);
+    }
+
+    /**
+     * Gets the sample standard deviation of the recorded values.
+     *
+     * @return the standard deviation.
+     */
+    public double getStandardDeviation() {
+        return java.lang.Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets the value below which the given percentage of the recorded values are.
+     *
+     * @param percentile the percentage in the range [0, 100].
+     * @return the largest value in the bucket containing the percentile.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(count == 0) {
+            return 0;
+        }
+
+        long rank = java.lang.Math.max(1, (long) java.lang.Math.ceil(percentile / 100 * count));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if(seen >= rank) {
+                return java.lang.Math.min(getHighestValue(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Writes the histogram so that it can be read back with {@link #read(DataInput)}.
+     * Only the buckets that have values are written.
+     *
+     * @param output the output the histogram is written to.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput output) throws IOException {
+        int used = 0;
+        for (long bucket : counts) {
+            if(bucket != 0) {
+                used++;
+            }
+        }
+
+        output.writeLong(count);
+        output.writeLong(min);
+        output.writeLong(max);
+        output.writeDouble(mean);
+        output.writeDouble(sumOfSquares);
+        output.writeInt(used);
+
+        for (int i = 0; i < counts.length; i++) {
+            if(counts[i] != 0) {
+                output.writeShort(i);
+                output.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a histogram written with {@link #write(DataOutput)}.
+     *
+     * @param input the input the histogram is read from.
+     * @return the histogram.
+     * @throws IOException if reading fails or the data is not a histogram.
+     */
+    public static LogHistogram read(DataInput input) throws IOException {
+        LogHistogram histogram = new LogHistogram();
+
+        histogram.count = input.readLong();
+        histogram.min = input.readLong();
+        histogram.max = input.readLong();
+        histogram.mean = input.readDouble();
+        histogram.sumOfSquares = input.readDouble();
+
+        int used = input.readInt();
+        for (int i = 0; i < used; i++) {
+            int index = input.readUnsignedShort();
+
+            if(index >= BUCKET_COUNT) {
+                throw new IOException("Invalid histogram bucket: " + index);
+            }
+
+            histogram.counts[index] = input.readLong();
+        }
+
+        return histogram;
+    }
+
+    private static int getIndex(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF;
+
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_HALF + subBucket;
+    }
+
+    private static long getHighestValue(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int bucket = index - SUB_BUCKET_COUNT;
+        int exponent = SUB_BUCKET_BITS + bucket / SUB_BUCKET_HALF;
+        int shift = exponent - (SUB_BUCKET_BITS - 1);
+        long subBucket = SUB_BUCKET_HALF + bucket % SUB_BUCKET_HALF;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
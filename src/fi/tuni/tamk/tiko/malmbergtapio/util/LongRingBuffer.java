@@ -0,0 +1,165 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of fixed size records of longs for exactly one producer thread
+ * and one consumer thread.
+ *
+ * The records are stored in one preallocated array, so passing them does not create
+ * any objects. Both threads count the records they have handled with a sequence
+ * number. The producer publishes its sequence after writing a batch of records, and
+ * the consumer releases its sequence after reading them. The sequences are the only
+ * shared state, so no locks are needed. They are kept on different cache lines so
+ * that the two threads do not slow each other down.
+ *
+ * Both threads keep their own sequence in a local variable and use {@link #offset(long)}
+ * to find the records in {@link #getArray()}. A waiting thread spins for a moment,
+ * then yields and finally parks for short periods.
+ *
+ * @author Tapio Malmberg
+ */
+public class LongRingBuffer {
+    private static final int PRODUCED = 8;
+    private static final int CONSUMED = 24;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final long[] buffer;
+    private final int capacity;
+    private final int recordSize;
+    private final int mask;
+    private final AtomicLongArray sequences = new AtomicLongArray(32);
+    private volatile boolean closed;
+
+    /**
+     * Creates a ring buffer.
+     *
+     * @param capacity the amount of records, a power of two.
+     * @param recordSize the amount of longs in a record.
+     * @throws IllegalArgumentException if the capacity is not a power of two.
+     */
+    public LongRingBuffer(int capacity, int recordSize) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+
+        this.buffer = new long[capacity * recordSize];
+        this.capacity = capacity;
+        this.recordSize = recordSize;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Gets the array the records are stored in.
+     *
+     * @return the array shared by the producer and the consumer.
+     */
+    public long[] getArray() {
+        return buffer;
+    }
+
+    /**
+     * Gets the amount of records that fit into the buffer.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the index of the first long of a record in the array.
+     *
+     * @param sequence the sequence number of the record.
+     * @return the index in the array.
+     */
+    public int offset(long sequence) {
+        return ((int) sequence & mask) * recordSize;
+    }
+
+    /**
+     * Makes the records before a sequence number visible to the consumer.
+     * Called only by the producer.
+     *
+     * @param produced the amount of records written so far.
+     */
+    public void publish(long produced) {
+        sequences.setRelease(PRODUCED, produced);
+    }
+
+    /**
+     * Gives the records before a sequence number back to the producer.
+     * Called only by the consumer.
+     *
+     * @param consumed the amount of records read so far.
+     */
+    public void release(long consumed) {
+        sequences.setRelease(CONSUMED, consumed);
+    }
+
+    /**
+     * Waits until the consumer has read at least the given amount of records.
+     * Called only by the producer.
+     *
+     * @param consumed the amount of records that must have been read.
+     * @return the amount of records read, less than requested if the buffer was closed.
+     */
+    public long awaitConsumed(long consumed) {
+        return await(CONSUMED, consumed);
+    }
+
+    /**
+     * Waits until the producer has written at least the given amount of records.
+     * Called only by the consumer.
+     *
+     * @param produced the amount of records that must have been written.
+     * @return the amount of records written, less than requested if the buffer was closed.
+     */
+    public long awaitProduced(long produced) {
+        return await(PRODUCED, produced);
+    }
+
+    /**
+     * Wakes up the waiting thread for good. Either thread can close the buffer
+     * when it stops, so that the other one does not wait forever.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Empties the buffer so that it can be used again. Neither thread may be using it.
+     */
+    public void reset() {
+        sequences.set(PRODUCED, 0);
+        sequences.set(CONSUMED, 0);
+        closed = false;
+    }
+
+    private long await(int index, long sequence) {
+        long current;
+        int tries = 0;
+
+        while((current = sequences.getAcquire(index)) < sequence) {
+            if(closed) {
+                // The other thread may have published just before closing
+                return sequences.getAcquire(index);
+            }
+
+            if(tries < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if(tries < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+
+            tries++;
+        }
+
+        return current;
+    }
+}
@@ -1,5 +1,7 @@
 package fi.tuni.tamk.tiko.malmbergtapio.util;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
 * Contains methods for basic mathematic operations.
 *
@@ -9,11 +11,233 @@ public class Math {
     /**
     * Returns a random number in the range [min, max]
     *
+    * The numbers come from the ThreadLocalRandom of the calling thread.
+    *
     * @param min the inclusive lower bound for the random number.
     * @param max the inclusive upper bound for the random number.
     * @return a random integer between min and max.
     */
     public static int getRandom(int min, int max) {
-        return min + (int) (java.lang.Math.random() * ((max - min) + 1));
+        return ThreadLocalRandom.current().nextInt(min, max + 1);
+    }
+
+    /**
+    * Returns the binomial coefficient C(n, k), the number of ways to choose
+    * k items from n items.
+    *
+    * The result is calculated as a double so that it does not overflow
+    * for large games.
+    *
+    * @param n the number of items to choose from.
+    * @param k the number of items chosen.
+    * @return the binomial coefficient, or 0 if k is not in the range [0, n].
+    */
+    public static double binomial(int n, int k) {
+        if(k < 0 || k > n) {
+            return 0;
+        }
+
+        k = java.lang.Math.min(k, n - k);
+        double result = 1;
+
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+
+        return result;
+    }
+
+    /**
+    * Returns the binomial coefficient C(n, k) exactly.
+    *
+    * @param n the number of items to choose from.
+    * @param k the number of items chosen.
+    * @return the binomial coefficient, or 0 if k is not in the range [0, n].
+    * @throws ArithmeticException if the result does not fit in a long.
+    */
+    public static long binomialExact(int n, int k) {
+        if(k < 0 || k > n) {
+            return 0;
+        }
+
+        k = java.lang.Math.min(k, n - k);
+        long result = 1;
+
+        // Every partial result C(n - k + i, i) is an integer, so the division is exact
+        for (int i = 1; i <= k; i++) {
+            long gcd = gcd(result, i);
+            result = java.lang.Math.multiplyExact(result / gcd, (n - k + i) / (i / gcd));
+        }
+
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while(b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return a;
+    }
+
+    /**
+    * Returns the probability that exactly the given amount of numbers
+    * of a ticket are drawn (the hypergeometric distribution).
+    *
+    * @param maxNumber the largest number in the game.
+    * @param drawCount how many numbers are drawn.
+    * @param ticketCount how many numbers are on the ticket.
+    * @param correct the amount of correct numbers.
+    * @return the probability of getting exactly that many numbers right.
+    */
+    public static double hypergeometric(int maxNumber, int drawCount, int ticketCount, int correct) {
+        return binomial(ticketCount, correct)
+            * binomial(maxNumber - ticketCount, drawCount - correct)
+            / binomial(maxNumber, drawCount);
+    }
+
+    /**
+    * Returns a random number of trials until the first success, when each trial
+    * succeeds with the given probability (the geometric distribution).
+    *
+    * @param random the random source.
+    * @param probability the probability of success in each trial.
+    * @return the number of the first successful trial, starting from 1.
+    */
+    public static long getGeometric(RandomSource random, double probability) {
+        if(probability >= 1) {
+            return 1;
+        }
+
+        // 1 - nextDouble() is in the range (0, 1], so the logarithm is finite
+        double u = 1 - random.nextDouble();
+
+        return 1 + (long) (java.lang.Math.log(u) / java.lang.Math.log1p(-probability));
+    }
+
+    /**
+    * Returns the two-sample Kolmogorov-Smirnov statistic, the largest distance
+    * between the empirical distribution functions of two samples.
+    *
+    * @param sample1 the first sample.
+    * @param sample2 the second sample.
+    * @return the statistic in the range [0, 1].
+    */
+    public static double kolmogorovSmirnov(long[] sample1, long[] sample2) {
+        long[] sorted1 = java.util.Arrays.copyOf(sample1, sample1.length);
+        long[] sorted2 = java.util.Arrays.copyOf(sample2, sample2.length);
+        java.util.Arrays.sort(sorted1);
+        java.util.Arrays.sort(sorted2);
+
+        int i = 0;
+        int j = 0;
+        double distance = 0;
+
+        while(i < sorted1.length && j < sorted2.length) {
+            long value = java.lang.Math.min(sorted1[i], sorted2[j]);
+
+            // Step over all equal values before comparing the distribution functions
+            while(i < sorted1.length && sorted1[i] == value) {
+                i++;
+            }
+            while(j < sorted2.length && sorted2[j] == value) {
+                j++;
+            }
+
+            double difference = java.lang.Math.abs((double) i / sorted1.length - (double) j / sorted2.length);
+            distance = java.lang.Math.max(distance, difference);
+        }
+
+        return distance;
+    }
+
+    /**
+    * Returns the probability that a chi-square distributed value with the given
+    * degrees of freedom is at least the given statistic, the p-value of a
+    * chi-square test.
+    *
+    * @param statistic the value of the statistic.
+    * @param degreesOfFreedom the degrees of freedom.
+    * @return the probability in the range [0, 1].
+    */
+    public static double chiSquarePValue(double statistic, double degreesOfFreedom) {
+        if(statistic <= 0) {
+            return 1;
+        }
+
+        return upperRegularizedGamma(degreesOfFreedom / 2, statistic / 2);
+    }
+
+    /**
+    * Returns the upper regularized incomplete gamma function Q(a, x).
+    *
+    * The series converges quickly below a + 1 and the continued fraction above it.
+    */
+    private static double upperRegularizedGamma(double a, double x) {
+        double logPrefix = a * java.lang.Math.log(x) - x - logGamma(a);
+
+        if(x < a + 1) {
+            double term = 1 / a;
+            double sum = term;
+
+            for (int n = 1; n < 100_000 && java.lang.Math.abs(term) > java.lang.Math.abs(sum) * 1e-15; n++) {
+                term *= x / (a + n);
+                sum += term;
+            }
+
+            return java.lang.Math.max(0, 1 - sum * java.lang.Math.exp(logPrefix));
+        }
+
+        // Lentz's method for the continued fraction
+        double tiny = 1e-300;
+        double b = x + 1 - a;
+        double c = 1 / tiny;
+        double d = 1 / b;
+        double fraction = d;
+
+        for (int n = 1; n < 100_000; n++) {
+            double an = -n * (n - a);
+            b += 2;
+            d = an * d + b;
+            d = java.lang.Math.abs(d) < tiny ? tiny : d;
+            c = b + an / c;
+            c = java.lang.Math.abs(c) < tiny ? tiny : c;
+            d = 1 / d;
+
+            double delta = d * c;
+            fraction *= delta;
+
+            if(java.lang.Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+
+        return java.lang.Math.exp(logPrefix) * fraction;
+    }
+
+    /**
+    * Returns the natural logarithm of the gamma function with the Lanczos approximation.
+    */
+    private static double logGamma(double x) {
+        double[] coefficients = { 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+            -176.61502916214059, 12.507343278686905, -0.13857109526572012,
+            9.9843695780195716e-6, 1.5056327351493116e-7 };
+
+        if(x < 0.5) {
+            return java.lang.Math.log(java.lang.Math.PI / java.lang.Math.sin(java.lang.Math.PI * x)) - logGamma(1 - x);
+        }
+
+        x -= 1;
+        double sum = 0.99999999999980993;
+        for (int i = 0; i < coefficients.length; i++) {
+            sum += coefficients[i] / (x + i + 1);
+        }
+
+        double t = x + coefficients.length - 0.5;
+
+        return 0.5 * java.lang.Math.log(2 * java.lang.Math.PI) + (x + 0.5) * java.lang.Math.log(t) - t
+            + java.lang.Math.log(sum);
     }
-}
\ No newline at end of file
+}
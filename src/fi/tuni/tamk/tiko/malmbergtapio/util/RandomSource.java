@@ -0,0 +1,215 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+import java.util.stream.Stream;
+
+/**
+ * A seedable source of random numbers that uses a random generator selected by name.
+ *
+ * The supported algorithms are SplittableRandom, ThreadLocalRandom, Random and
+ * all the algorithms of java.util.random, for example L64X128MixRandom and
+ * Xoshiro256PlusPlus. ThreadLocalRandom cannot be seeded, so runs that use it
+ * cannot be repeated.
+ *
+ * A source is not thread safe unless it uses ThreadLocalRandom. Each thread
+ * should use its own stream created with {@link #forStream(long)}.
+ *
+ * @author Tapio Malmberg
+ */
+public class RandomSource {
+    /**
+     * The algorithm used when no algorithm is chosen.
+     */
+    public static final String DEFAULT_ALGORITHM = "SplittableRandom";
+
+    /**
+     * The name of the algorithm that uses ThreadLocalRandom.
+     */
+    public static final String THREAD_LOCAL = "ThreadLocalRandom";
+
+    private final String algorithm;
+    private final long seed;
+    private final RandomGenerator generator;
+
+    private RandomSource(String algorithm, long seed, RandomGenerator generator) {
+        this.algorithm = algorithm;
+        this.seed = seed;
+        this.generator = generator;
+    }
+
+    /**
+     * Creates a random source with the given algorithm and seed.
+     *
+     * @param algorithm the name of the algorithm.
+     * @param seed the seed for the random generator.
+     * @return a new random source.
+     * @throws IllegalArgumentException if the algorithm is not supported.
+     */
+    public static RandomSource create(String algorithm, long seed) {
+        RandomGenerator generator;
+
+        if(algorithm.equals("SplittableRandom")) {
+            generator = new SplittableRandom(seed);
+        } else if(algorithm.equals(THREAD_LOCAL)) {
+            generator = new CurrentThreadRandom();
+        } else if(algorithm.equals("Random")) {
+            generator = new Random(seed);
+        } else {
+            generator = RandomGeneratorFactory.of(algorithm).create(seed);
+        }
+
+        return new RandomSource(algorithm, seed, generator);
+    }
+
+    /**
+     * Creates a random source with the given algorithm and a random seed.
+     *
+     * @param algorithm the name of the algorithm.
+     * @return a new random source.
+     * @throws IllegalArgumentException if the algorithm is not supported.
+     */
+    public static RandomSource create(String algorithm) {
+        return create(algorithm, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Returns the names of all the supported algorithms.
+     *
+     * @return an array of algorithm names.
+     */
+    public static String[] getAlgorithms() {
+        Stream<String> factoryNames = RandomGeneratorFactory.all()
+            .map(RandomGeneratorFactory::name)
+            .filter(name -> !name.equals("SecureRandom"));
+
+        return Stream.concat(factoryNames, Stream.of(THREAD_LOCAL))
+            .sorted()
+            .toArray(String[]::new);
+    }
+
+    /**
+     * Returns a seed for a numbered stream derived from another seed.
+     *
+     * The seed is scrambled so that neighboring streams do not start from
+     * overlapping positions of the same random sequence.
+     *
+     * @param seed the seed the stream is derived from.
+     * @param stream the number of the stream.
+     * @return the seed for the stream.
+     */
+    public static long mixSeed(long seed, long stream) {
+        long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Creates an independent source for a numbered stream.
+     *
+     * The same seed and stream number always give the same random numbers,
+     * no matter which thread uses the stream or in which order the streams are created.
+     *
+     * @param stream the number of the stream.
+     * @return a new random source with the same algorithm.
+     */
+    public RandomSource forStream(long stream) {
+        return create(algorithm, mixSeed(seed, stream));
+    }
+
+    /**
+     * Gets the name of the algorithm.
+     *
+     * @return the name of the algorithm.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Gets the seed the source was created with.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns a random number in the range [min, max]
+     *
+     * @param min the inclusive lower bound for the random number.
+     * @param max the inclusive upper bound for the random number.
+     * @return a random integer between min and max.
+     */
+    public int nextInt(int min, int max) {
+        return generator.nextInt(min, max + 1);
+    }
+
+    /**
+     * Returns a random long.
+     *
+     * @return a random long.
+     */
+    public long nextLong() {
+        return generator.nextLong();
+    }
+
+    /**
+     * Returns a random double in the range [0, 1).
+     *
+     * @return a random double.
+     */
+    public double nextDouble() {
+        return generator.nextDouble();
+    }
+
+    /**
+     * Chooses random values from an array without duplicates.
+     *
+     * The chosen values are moved to the start of the array with a partial
+     * Fisher-Yates shuffle. The rest of the array contains the values that were
+     * not chosen, so the array can be used again for the next sample.
+     *
+     * @param values the values to choose from.
+     * @param count the amount of values to choose.
+     */
+    public void sample(int[] values, int count) {
+        int bound = values.length;
+
+        for (int i = 0; i < count; i++) {
+            int randomIndex = generator.nextInt(i, bound);
+
+            // Swap the values to prevent duplicates
+            int temp = values[i];
+            values[i] = values[randomIndex];
+            values[randomIndex] = temp;
+        }
+    }
+
+    /**
+     * Uses the ThreadLocalRandom of the calling thread for every number, because
+     * the instance returned by ThreadLocalRandom.current() must not be shared
+     * with other threads.
+     */
+    private static class CurrentThreadRandom implements RandomGenerator {
+        @Override
+        public long nextLong() {
+            return ThreadLocalRandom.current().nextLong();
+        }
+
+        @Override
+        public int nextInt(int origin, int bound) {
+            return ThreadLocalRandom.current().nextInt(origin, bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+    }
+}
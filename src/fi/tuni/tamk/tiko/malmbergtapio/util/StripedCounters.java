@@ -0,0 +1,121 @@
+package fi.tuni.tamk.tiko.malmbergtapio.util;
+
+/**
+ * A fixed set of long counters with a separate stripe for every thread.
+ *
+ * All the stripes are stored in one preallocated array. Each stripe starts on its
+ * own cache line and is followed by a cache line of padding, so threads counting
+ * into neighbouring stripes do not slow each other down. A stripe must only be
+ * updated by one thread at a time; the thread finds its counters in
+ * {@link #getArray()} with {@link #offset(int)} and increments them without any
+ * atomic operations. The stripes are added together with {@link #sum(int)} after
+ * the threads are done.
+ *
+ * @author Tapio Malmberg
+ */
+public class StripedCounters {
+    private static final int LONGS_PER_CACHE_LINE = 8;
+
+    private final long[] counts;
+    private final int counterCount;
+    private final int stripeCount;
+    private final int stride;
+
+    /**
+     * Creates counters that are all zero.
+     *
+     * @param counterCount the amount of counters in a stripe.
+     * @param stripeCount the amount of stripes, usually one per thread.
+     * @throws IllegalArgumentException if either amount is not positive.
+     */
+    public StripedCounters(int counterCount, int stripeCount) {
+        if(counterCount < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("The amounts must be positive: " + counterCount + ", " + stripeCount);
+        }
+
+        int lines = (counterCount + LONGS_PER_CACHE_LINE - 1) / LONGS_PER_CACHE_LINE;
+
+        this.counterCount = counterCount;
+        this.stripeCount = stripeCount;
+        this.stride = (lines + 1) * LONGS_PER_CACHE_LINE;
+
+        // The padding before the first stripe keeps it away from the array header
+        this.counts = new long[LONGS_PER_CACHE_LINE + stripeCount * stride];
+    }
+
+    /**
+     * Gets the array the counters are stored in.
+     *
+     * @return the array shared by all the stripes.
+     */
+    public long[] getArray() {
+        return counts;
+    }
+
+    /**
+     * Gets the index of the first counter of a stripe in the array.
+     *
+     * @param stripe the index of the stripe.
+     * @return the index in the array.
+     */
+    public int offset(int stripe) {
+        return LONGS_PER_CACHE_LINE + stripe * stride;
+    }
+
+    /**
+     * Gets the amount of counters in a stripe.
+     *
+     * @return the amount of counters.
+     */
+    public int getCounterCount() {
+        return counterCount;
+    }
+
+    /**
+     * Gets the amount of stripes.
+     *
+     * @return the amount of stripes.
+     */
+    public int getStripeCount() {
+        return stripeCount;
+    }
+
+    /**
+     * Adds a counter of every stripe together.
+     *
+     * The stripes must not be updated at the same time.
+     *
+     * @param counter the index of the counter.
+     * @return the total count.
+     */
+    public long sum(int counter) {
+        long total = 0;
+
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            total += counts[offset(stripe) + counter];
+        }
+
+        return total;
+    }
+
+    /**
+     * Adds every counter of every stripe together.
+     *
+     * The stripes must not be updated at the same time.
+     *
+     * @return the total of each counter.
+     */
+    public long[] sums() {
+        long[] totals = new long[counterCount];
+
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            int offset = offset(stripe);
+
+            for (int counter = 0; counter < counterCount; counter++) {
+                totals[counter] += counts[offset + counter];
+            }
+        }
+
+        return totals;
+    }
+}